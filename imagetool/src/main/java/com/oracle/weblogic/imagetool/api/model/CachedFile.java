@@ -15,6 +15,7 @@ import com.oracle.weblogic.imagetool.cachestore.CacheStore;
 import com.oracle.weblogic.imagetool.installer.InstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.BuildReport;
 import com.oracle.weblogic.imagetool.util.Utils;
 
 /**
@@ -89,8 +90,10 @@ public class CachedFile {
         logger.entering(key);
         String filePath = cacheStore.getValueFromCache(key);
         if (!isFileOnDisk(filePath)) {
+            BuildReport.count("cacheMisses", 1);
             throw new FileNotFoundException(Utils.getMessage("IMG-0011", key));
         }
+        BuildReport.count("cacheHits", 1);
 
         logger.exiting(filePath);
         return filePath;
@@ -103,13 +106,27 @@ public class CachedFile {
      * @return the path of the file copied to the Docker build context directory
      */
     public Path copyFile(CacheStore cacheStore, String buildContextDir) throws IOException {
+        return copyFile(cacheStore, buildContextDir, false);
+    }
+
+    /**
+     * Copy file from cacheStore to Docker build context directory, or link to it.
+     * @param cacheStore cache to copy file from
+     * @param buildContextDir directory to copy file to
+     * @param link create a symbolic link to the cached file instead of a copy (for a streamed build context)
+     * @return the path of the file in the Docker build context directory
+     */
+    public Path copyFile(CacheStore cacheStore, String buildContextDir, boolean link) throws IOException {
         logger.entering();
         Path result;
         String sourceFile = resolve(cacheStore);
         logger.info("IMG-0043", sourceFile);
         String targetFilename = new File(sourceFile).getName();
-        try {
-            result = Files.copy(Paths.get(sourceFile), Paths.get(buildContextDir, targetFilename));
+        try (BuildReport.Phase phase = BuildReport.phase("CachedFile.copyFile")) {
+            result = Utils.linkOrCopyFile(Paths.get(sourceFile), Paths.get(buildContextDir, targetFilename), link);
+            if (!Files.isSymbolicLink(result)) {
+                phase.bytes(Files.size(result));
+            }
         } catch (Exception ee) {
             String msg = Utils.getMessage("IMG-0064", sourceFile, buildContextDir);
             logger.severe(msg);
@@ -63,6 +63,9 @@ public class CommandResponse {
      * @return message to the user
      */
     public String getMessage() {
+        if (message == null) {
+            return null;
+        }
         return Utils.getMessage(message, messageParams);
     }
 
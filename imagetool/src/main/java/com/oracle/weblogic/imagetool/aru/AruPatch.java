@@ -36,6 +36,8 @@ public class AruPatch implements Comparable<AruPatch> {
     private String fileName;
     private String access;
     private String lifecycle;
+    private long fileSize = -1;
+    private String sha256;
 
     public String patchId() {
         return patchId;
@@ -145,6 +147,45 @@ public class AruPatch implements Comparable<AruPatch> {
         return "Open access".equals(access);
     }
 
+    /**
+     * Set the size of the patch file, as published by ARU.
+     * @param value size in bytes, or an empty value if ARU did not provide the size
+     * @return this
+     */
+    public AruPatch fileSize(String value) {
+        fileSize = -1;
+        if (!Utils.isEmptyString(value)) {
+            try {
+                fileSize = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                // the size is not verified when it is unknown
+                logger.fine("Ignoring invalid ARU file size {0}", value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * The size of the patch file in bytes, as published by ARU.
+     * @return the expected file size, or -1 if unknown
+     */
+    public long fileSize() {
+        return fileSize;
+    }
+
+    public AruPatch sha256(String value) {
+        sha256 = Utils.isEmptyString(value) ? null : value.trim();
+        return this;
+    }
+
+    /**
+     * The SHA-256 digest of the patch file (hex), as published by ARU.
+     * @return the expected digest, or null if unknown
+     */
+    public String sha256() {
+        return sha256;
+    }
+
     public AruPatch lifecycle(String value) {
         lifecycle = value;
         return this;
@@ -197,7 +238,9 @@ public class AruPatch implements Comparable<AruPatch> {
                     .access(XPathUtil.string(nodeList.item(i), "./access"))
                     .lifecycle(XPathUtil.string(nodeList.item(i), "./life_cycle"))
                     .downloadHost(XPathUtil.string(nodeList.item(i), "./files/file/download_url/@host"))
-                    .downloadPath(XPathUtil.string(nodeList.item(i), "./files/file/download_url/text()"));
+                    .downloadPath(XPathUtil.string(nodeList.item(i), "./files/file/download_url/text()"))
+                    .fileSize(XPathUtil.string(nodeList.item(i), "./files/file/size"))
+                    .sha256(XPathUtil.string(nodeList.item(i), "./files/file/digest[@type='SHA-256']"));
 
                 int index = patch.downloadPath().indexOf("patch_file=");
                 if (index < 0) {
@@ -205,14 +248,16 @@ public class AruPatch implements Comparable<AruPatch> {
                 }
                 patch.fileName(patch.downloadPath().substring(index + "patch_file=".length()));
 
-                logger.fine("AruPatch created id:" + patch.patchId()
+                logger.fine(() -> "AruPatch created id:" + patch.patchId()
                     + "  ver:" + patch.version()
                     + "  desc:" + patch.description()
                     + "  rel:" + patch.release()
                     + "  product:" + patch.product()
                     + "  relName:" + patch.releaseName()
                     + "  psu:" + patch.psuBundle()
-                    + "  url:" + patch.downloadUrl());
+                    + "  url:" + patch.downloadUrl()
+                    + "  size:" + patch.fileSize()
+                    + "  sha256:" + patch.sha256());
                 result.add(patch);
             }
         }
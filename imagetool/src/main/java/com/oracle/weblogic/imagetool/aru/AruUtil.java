@@ -5,19 +5,35 @@ package com.oracle.weblogic.imagetool.aru;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import javax.xml.xpath.XPathExpressionException;
 
 import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.BuildReport;
 import com.oracle.weblogic.imagetool.util.HttpUtil;
 import com.oracle.weblogic.imagetool.util.Utils;
 import com.oracle.weblogic.imagetool.util.XPathUtil;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.fluent.Request;
 import org.w3c.dom.Document;
@@ -37,6 +53,18 @@ public class AruUtil {
 
     private static final String BUG_SEARCH_URL = ARU_REST_URL + "/search?bug=%s";
 
+    private static final int DOWNLOAD_ATTEMPTS = 3;
+
+    // limits the number of patches downloaded at the same time, when images are built concurrently
+    private static volatile Semaphore downloadLimit = null;
+
+    // bug search results are reused when the same bug is resolved by more than one build
+    private final Map<String, Document> bugSearchResults = new ConcurrentHashMap<>();
+
+    // recommended patches are requested once for each product release, when more than one build needs them
+    private final Map<String, Document> recommendations = new ConcurrentHashMap<>();
+    private final Map<String, Object> recommendationLocks = new ConcurrentHashMap<>();
+
     private int restRetries = 10;
     private int restInterval = 500;
 
@@ -44,7 +72,7 @@ public class AruUtil {
      * Get ARU HTTP helper instance.
      * @return ARU helper.
      */
-    public static AruUtil rest() {
+    public static synchronized AruUtil rest() {
         if (instance == null) {
             instance = new AruUtil();
         }
@@ -130,10 +158,11 @@ public class AruUtil {
         try {
             logger.info("IMG-0019", product.description());
             String releaseNumber = getReleaseNumber(product, version, userId, password);
-            Document aruRecommendations = retry(
-                () -> getRecommendedPatchesMetadata(product, releaseNumber, userId, password));
+            Document aruRecommendations = recommendedPatchesMetadata(product, releaseNumber, userId, password);
             logger.exiting();
-            return AruPatch.removeStackPatchBundle(AruPatch.getPatches(aruRecommendations, "[./psu_bundle]"));
+            synchronized (aruRecommendations) {
+                return AruPatch.removeStackPatchBundle(AruPatch.getPatches(aruRecommendations, "[./psu_bundle]"));
+            }
         } catch (NoPatchesFoundException | ReleaseNotFoundException ex) {
             logger.exiting();
             return Collections.emptyList();
@@ -182,9 +211,11 @@ public class AruUtil {
         try {
             logger.info("IMG-0067", product.description());
             String releaseNumber = getReleaseNumber(product, version, userId, password);
-            Document aruRecommendations = retry(
-                () -> getRecommendedPatchesMetadata(product, releaseNumber, userId, password));
-            List<AruPatch> patches = AruPatch.removeStackPatchBundle(AruPatch.getPatches(aruRecommendations));
+            Document aruRecommendations = recommendedPatchesMetadata(product, releaseNumber, userId, password);
+            List<AruPatch> patches;
+            synchronized (aruRecommendations) {
+                patches = AruPatch.removeStackPatchBundle(AruPatch.getPatches(aruRecommendations));
+            }
             String psuVersion = getPsuVersion(patches);
             if (!Utils.isEmptyString(psuVersion)) {
                 patches.forEach(p -> logger.fine("Discarding recommended patch {0} {1}", p.patchId(), p.description()));
@@ -193,10 +224,10 @@ public class AruUtil {
                 // get release number for PSU
                 String psuReleaseNumber = getReleaseNumber(product, psuVersion, userId, password);
                 // get recommended patches for PSU release (Overlay patches are only recommended on the PSU release)
-                Document psuOverrides = retry(
-                    () -> getRecommendedPatchesMetadata(product, psuReleaseNumber, userId, password));
-
-                patches = AruPatch.removeStackPatchBundle(AruPatch.getPatches(psuOverrides));
+                Document psuOverrides = recommendedPatchesMetadata(product, psuReleaseNumber, userId, password);
+                synchronized (psuOverrides) {
+                    patches = AruPatch.removeStackPatchBundle(AruPatch.getPatches(psuOverrides));
+                }
             }
             patches.forEach(p -> logger.info("IMG-0068", product.description(), p.patchId(), p.description()));
             logger.exiting(patches);
@@ -233,7 +264,9 @@ public class AruUtil {
      */
     public static void validatePatches(List<InstalledPatch> installedPatches, List<AruPatch> patches, String userId,
                                        String password) throws IOException {
-        validatePatches(installedPatches, patches, new AruHttpHelper(userId, password));
+        try (BuildReport.Phase phase = BuildReport.phase("validatePatches")) {
+            validatePatches(installedPatches, patches, new AruHttpHelper(userId, password));
+        }
     }
 
     /**
@@ -307,7 +340,7 @@ public class AruUtil {
      * @return the XML document from ARU with releases metadata
      * @throws AruException when ARU could not be reached or returns an error
      */
-    Document getAllReleases(String userId, String password) throws AruException {
+    synchronized Document getAllReleases(String userId, String password) throws AruException {
         if (allReleasesDocument == null) {
             logger.fine("Getting all releases document from ARU...");
             try {
@@ -319,6 +352,24 @@ public class AruUtil {
         return allReleasesDocument;
     }
 
+    /**
+     * The recommended patches of a product release, from ARU or from a previous request for the same release.
+     * DOM documents are not thread-safe, callers synchronize on the returned document to read it.
+     */
+    private Document recommendedPatchesMetadata(AruProduct product, String releaseNumber, String userId,
+                                                String password) throws AruException, RetryFailedException {
+        String key = product.productId() + "_" + releaseNumber;
+        // a build that needs the same release waits for the first request, instead of sending its own
+        synchronized (recommendationLocks.computeIfAbsent(key, k -> new Object())) {
+            Document response = recommendations.get(key);
+            if (response == null) {
+                response = retry(() -> getRecommendedPatchesMetadata(product, releaseNumber, userId, password));
+                recommendations.put(key, response);
+            }
+            return response;
+        }
+    }
+
     // could be private, but leaving as protected for unit testing
     Document getRecommendedPatchesMetadata(AruProduct product, String releaseNumber, String userId, String password)
         throws IOException, AruException, XPathExpressionException {
@@ -353,7 +404,9 @@ public class AruUtil {
         String expression = String.format("string(/results/release[starts-with(text(), '%s %s')]/@id)",
             product.description(), version);
         try {
-            result = XPathUtil.string(allReleases, expression);
+            synchronized (allReleases) {
+                result = XPathUtil.string(allReleases, expression);
+            }
             logger.fine("Release number for {0} is {1}", product.description(), result);
         } catch (XPathExpressionException xpe) {
             throw new AruException("Could not extract release number with XPath", xpe);
@@ -436,8 +489,15 @@ public class AruUtil {
         String url = String.format(BUG_SEARCH_URL, bugNumber);
         logger.info("IMG-0063", bugNumber);
         try {
-            Document response = retry(() -> getAndVerify(url, userId, password));
-            return AruPatch.getPatches(response);
+            Document response = bugSearchResults.get(url);
+            if (response == null) {
+                response = retry(() -> getAndVerify(url, userId, password));
+                bugSearchResults.put(url, response);
+            }
+            // DOM documents are not thread-safe, even for read access
+            synchronized (response) {
+                return AruPatch.getPatches(response);
+            }
         } catch (NoPatchesFoundException patchEx) {
             throw new NoPatchesFoundException(Utils.getMessage("IMG-0086", bugNumber), patchEx);
         } catch (RetryFailedException retryEx) {
@@ -447,6 +507,8 @@ public class AruUtil {
 
     /**
      * Download a patch file from ARU.
+     * The file is verified against the size and SHA-256 digest published by ARU while it is being written,
+     * and downloaded again if the verification fails.
      *
      * @param aruPatch ARU metadata for the patch
      * @param username userid for support account
@@ -462,19 +524,110 @@ public class AruUtil {
 
         // download the remote patch file to the local target directory
         String filename = targetDir + File.separator + aruPatch.fileName();
+        Semaphore limit = downloadLimit;
+        if (limit != null) {
+            limit.acquireUninterruptibly();
+        }
+        try (BuildReport.Phase phase = BuildReport.phase("downloadAruPatch")) {
+            String result = download(aruPatch, filename, username, password);
+            phase.bytes(Files.size(Paths.get(result)));
+            return result;
+        } finally {
+            if (limit != null) {
+                limit.release();
+            }
+        }
+    }
+
+    /**
+     * Limit the number of patch downloads that run at the same time.
+     * @param max the maximum number of concurrent downloads, or 0 for no limit
+     */
+    public static void limitConcurrentDownloads(int max) {
+        downloadLimit = max > 0 ? new Semaphore(max, true) : null;
+    }
+
+    private String download(AruPatch aruPatch, String filename, String username, String password)
+        throws IOException {
+
+        Path target = Paths.get(filename);
         logger.info("IMG-0018", aruPatch.patchId());
-        try {
-            HttpUtil.getHttpExecutor(username, password)
-                .execute(Request.Get(aruPatch.downloadUrl()).connectTimeout(30000)
-                    .socketTimeout(30000))
-                .saveContent(new File(filename));
-        } catch (Exception ex) {
-            String message = Utils.getMessage("IMG-0107", filename, aruPatch.downloadUrl(), ex.getLocalizedMessage());
-            logger.severe(message);
-            throw new IOException(message, ex);
-        }
-        logger.exiting(filename);
-        return filename;
+        for (int attempt = 1; attempt <= DOWNLOAD_ATTEMPTS; attempt++) {
+            boolean verified;
+            try {
+                verified = HttpUtil.getHttpExecutor(username, password)
+                    .execute(Request.Get(aruPatch.downloadUrl()).connectTimeout(30000)
+                        .socketTimeout(30000))
+                    .handleResponse(response -> saveContent(response, target, aruPatch));
+            } catch (Exception ex) {
+                String message = Utils.getMessage("IMG-0107", filename, aruPatch.downloadUrl(),
+                    ex.getLocalizedMessage());
+                logger.severe(message);
+                throw new IOException(message, ex);
+            }
+            if (verified) {
+                logger.exiting(filename);
+                return filename;
+            }
+            if (attempt < DOWNLOAD_ATTEMPTS) {
+                BuildReport.count("downloadRetries", 1);
+                logger.info("IMG-0116", aruPatch.patchId(), attempt + 1, DOWNLOAD_ATTEMPTS);
+            }
+        }
+        Files.deleteIfExists(target);
+        throw logger.throwing(
+            new IOException(Utils.getMessage("IMG-0117", filename, aruPatch.downloadUrl(), DOWNLOAD_ATTEMPTS)));
+    }
+
+    private static boolean saveContent(HttpResponse response, Path target, AruPatch aruPatch) throws IOException {
+        StatusLine statusLine = response.getStatusLine();
+        if (statusLine.getStatusCode() >= 300) {
+            throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new ClientProtocolException("Response contains no content");
+        }
+        try (InputStream content = entity.getContent()) {
+            return saveContent(content, target, aruPatch);
+        }
+    }
+
+    /**
+     * Write the content stream to the target file, and verify the bytes written against the file size and
+     * SHA-256 digest published by ARU.  The digest is computed as the content is written, so that the
+     * downloaded file does not have to be read a second time.
+     *
+     * @param content  the stream to save
+     * @param target   the file to write
+     * @param aruPatch ARU metadata for the patch, including the expected size and digest (if known)
+     * @return true if the saved file matched the ARU metadata, or if ARU did not provide the metadata
+     * @throws IOException if the content could not be saved
+     */
+    static boolean saveContent(InputStream content, Path target, AruPatch aruPatch) throws IOException {
+        MessageDigest digest = null;
+        InputStream source = content;
+        if (aruPatch.sha256() != null) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+            source = new DigestInputStream(content, digest);
+        }
+
+        long bytesWritten = Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        String actualDigest = digest == null ? null : Utils.toHexString(digest.digest());
+
+        boolean sizeMatches = aruPatch.fileSize() < 0 || aruPatch.fileSize() == bytesWritten;
+        boolean digestMatches = digest == null || aruPatch.sha256().equalsIgnoreCase(actualDigest);
+        if (sizeMatches && digestMatches) {
+            logger.fine("Verified {0}, {1} bytes, SHA-256 {2}", target, bytesWritten, actualDigest);
+            return true;
+        }
+        logger.warning("IMG-0115", target, aruPatch.fileSize(), aruPatch.sha256(), bytesWritten, actualDigest);
+        Files.deleteIfExists(target);
+        return false;
     }
 
     /**
@@ -509,6 +662,7 @@ public class AruUtil {
             } catch (UnknownHostException e) {
                 throw new AruException(e.getLocalizedMessage(), e);
             } catch (IOException | XPathExpressionException e) {
+                BuildReport.count("aruRetries", 1);
                 logger.info("IMG-0106", e.getMessage(), (i + 1), rest().getMaxRetries());
             }
             try {
@@ -3,44 +3,102 @@
 
 package com.oracle.weblogic.imagetool.builder;
 
-import java.io.BufferedReader;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
-import com.oracle.weblogic.imagetool.util.CloseableList;
+import com.oracle.weblogic.imagetool.util.BuildReport;
 import com.oracle.weblogic.imagetool.util.Utils;
+import org.json.JSONObject;
 
 public class BuildCommand {
     private static final LoggingFacade logger = LoggingFactory.getLogger(BuildCommand.class);
 
-    private final List<String> command;
+    // limits the number of builds run at the same time, when images are built concurrently
+    private static volatile Semaphore buildLimit = null;
+
+    // number of steps listed in the summary of the slowest build steps
+    private static final int SLOWEST_STEPS = 5;
+    // builder output is written to the console and log file at this interval, instead of for every line
+    private static final long FLUSH_INTERVAL_MS = 250;
+
+    /**
+     * What the build writes to the console while the builder is running.
+     */
+    public enum ConsoleMode {
+        // the complete builder output
+        FULL,
+        // one line for each completed build step
+        PROGRESS,
+        // nothing, the builder output is only written to the log file, if any
+        QUIET
+    }
+
+    private final Builder builder;
+    private final boolean useBuildCache;
+    // the options for the build command, without the builder command itself
+    private final List<String> command = new ArrayList<>();
+    private final List<String> cacheFrom = new ArrayList<>();
+    private final Map<String, String> labels = new LinkedHashMap<>();
+    private String cacheTo;
+    // the same options, as query parameters for the Engine API
+    private final Map<String, String> apiParameters = new LinkedHashMap<>();
     private final List<BuildArg> buildArgs;
     private final String context;
+    private boolean useBuildKit = false;
+    private boolean streamContext = false;
+    private final BuildProgress progress = new BuildProgress();
+    private ConsoleMode consoleMode = ConsoleMode.FULL;
+    private EngineClient engineClient;
 
     /**
-     * Create a build command for creating an image.  At some point, it might
-     * be beneficial to subclass this with separate classes for each builder (docker or podman).
-     * For now, the differences do not justify the extra complexity.
+     * Create a build command for creating an image.
+     * The builder is selected by the name of the executable, see {@link Builders#named(String)}.
      */
     public BuildCommand(String buildEngine, String contextFolder) {
+        this(buildEngine, contextFolder, false);
+    }
+
+    /**
+     * Create a build command for creating an image.
+     * @param buildEngine   the executable to use for the build (docker, podman, or buildah)
+     * @param contextFolder the build context folder
+     * @param useBuildCache if false, the build is run with --no-cache
+     */
+    public BuildCommand(String buildEngine, String contextFolder, boolean useBuildCache) {
+        this(Builders.named(buildEngine), contextFolder, useBuildCache);
+    }
+
+    /**
+     * Create a build command for creating an image.
+     * @param builder       the builder to use, with the options that are specific to the builder
+     * @param contextFolder the build context folder
+     * @param useBuildCache if false, the build is run without the build cache
+     */
+    public BuildCommand(Builder builder, String contextFolder, boolean useBuildCache) {
         Objects.requireNonNull(contextFolder);
+        this.builder = builder;
+        this.useBuildCache = useBuildCache;
         buildArgs = new ArrayList<>();
-        command = Stream.of(buildEngine, "build", "--no-cache").collect(Collectors.toList());
+        if (!useBuildCache) {
+            apiParameters.put("nocache", "1");
+        }
         context = contextFolder;
     }
 
@@ -55,6 +113,7 @@ public class BuildCommand {
         }
         command.add("--tag");
         command.add(value);
+        apiParameters.put("t", value);
         return this;
     }
 
@@ -67,6 +126,7 @@ public class BuildCommand {
     public BuildCommand forceRm(boolean value) {
         if (value) {
             command.add("--force-rm");
+            apiParameters.put("forcerm", "1");
         }
         return this;
     }
@@ -99,6 +159,34 @@ public class BuildCommand {
         return this;
     }
 
+    /**
+     * Add a --label to the image, without changing the Dockerfile.
+     * @param key   the label name
+     * @param value the label value
+     * @return this
+     */
+    public BuildCommand label(String key, String value) {
+        command.add("--label");
+        command.add(key + "=" + value);
+        labels.put(key, value);
+        return this;
+    }
+
+    /**
+     * Build the stages of the Dockerfile up to and including the target stage.
+     * @param value the name of the target stage
+     * @return this
+     */
+    public BuildCommand target(String value) {
+        if (Utils.isEmptyString(value)) {
+            return this;
+        }
+        command.add("--target");
+        command.add(value);
+        apiParameters.put("target", value);
+        return this;
+    }
+
     /**
      * Add a --network to the Docker build command.
      * @param value the Docker network to use
@@ -109,6 +197,7 @@ public class BuildCommand {
         }
         command.add("--network");
         command.add(value);
+        apiParameters.put("networkmode", value);
         return this;
     }
 
@@ -119,10 +208,104 @@ public class BuildCommand {
     public BuildCommand pull(boolean value) {
         if (value) {
             command.add("--pull");
+            apiParameters.put("pull", "1");
+        }
+        return this;
+    }
+
+    /**
+     * Run the build with BuildKit, which is required for Dockerfiles that use RUN --mount.
+     * BuildKit writes its progress to stderr, so the plain progress output is requested and merged with stdout.
+     * @param value true to enable BuildKit for this build
+     * @return this
+     */
+    public BuildCommand buildKit(boolean value) {
+        useBuildKit = value;
+        if (value) {
+            command.add("--progress=plain");
         }
         return this;
     }
 
+    /**
+     * Stream the build context to the builder as a tar archive on stdin (docker build -), instead of passing
+     * the context directory.  Symbolic links in the context directory are resolved while streaming.
+     * @param value true to stream the build context
+     * @return this
+     */
+    public BuildCommand streamContext(boolean value) {
+        streamContext = value;
+        return this;
+    }
+
+    /**
+     * Import the build cache from the given location, with --cache-from.
+     * @param value a BuildKit cache specification, like type=local,src=/path
+     * @return this
+     */
+    public BuildCommand cacheFrom(String value) {
+        cacheFrom.add(value);
+        return this;
+    }
+
+    /**
+     * Export the build cache to the given location, with --cache-to.
+     * Only builders that support cache export can use this option, see {@link Builder#supportsCacheExport()}.
+     * @param value a BuildKit cache specification, like type=local,dest=/path,mode=max
+     * @return this
+     */
+    public BuildCommand cacheTo(String value) {
+        cacheTo = value;
+        return this;
+    }
+
+    /**
+     * Select what is written to the console while the builder is running.
+     * @param value the console mode, FULL by default
+     * @return this
+     */
+    public BuildCommand consoleMode(ConsoleMode value) {
+        consoleMode = value;
+        return this;
+    }
+
+    /**
+     * Send the build to the engine with the Engine API, instead of running the builder executable.
+     * The build context is always streamed to the engine, and BuildKit is not used.
+     * @param value the Engine API client, or null to run the builder executable
+     * @return this
+     */
+    public BuildCommand engineClient(EngineClient value) {
+        engineClient = value;
+        return this;
+    }
+
+    /**
+     * The values of the build arguments.
+     * @return build argument values, by name
+     */
+    public Map<String, String> buildArgs() {
+        Map<String, String> result = new LinkedHashMap<>();
+        buildArgs.forEach(arg -> result.put(arg.key, arg.value));
+        return result;
+    }
+
+    /**
+     * The builder that runs this build.
+     * @return the builder
+     */
+    public Builder builder() {
+        return builder;
+    }
+
+    /**
+     * Limit the number of build processes that run at the same time.
+     * @param max the maximum number of concurrent builds, or 0 for no limit
+     */
+    public static void limitConcurrentBuilds(int max) {
+        buildLimit = max > 0 ? new Semaphore(max, true) : null;
+    }
+
     /**
      * Executes the given docker command and writes the process stdout to log.
      *
@@ -132,31 +315,165 @@ public class BuildCommand {
      */
     public BuildCommand run(Path dockerLog)
         throws IOException, InterruptedException {
+        Semaphore limit = buildLimit;
+        if (limit != null) {
+            limit.acquire();
+        }
+        try (BuildReport.Phase phase = BuildReport.phase("BuildCommand.run")) {
+            return execute(dockerLog);
+        } finally {
+            if (limit != null) {
+                limit.release();
+            }
+        }
+    }
+
+    private BuildCommand execute(Path dockerLog) throws IOException, InterruptedException {
+        if (engineClient != null) {
+            return executeWithEngine(dockerLog);
+        }
         // process builder
         logger.entering(getCommand(false), dockerLog);
         Path dockerLogPath = createFile(dockerLog);
         logger.finer("Docker log: {0}", dockerLogPath);
-        List<OutputStream> outputStreams = new ArrayList<>();
-
-        outputStreams.add(System.out);
+        List<OutputTee.Sink> stdoutSinks = new ArrayList<>();
+        List<OutputTee.Sink> stderrSinks = new ArrayList<>();
+        if (consoleMode == ConsoleMode.FULL) {
+            stdoutSinks.add(new OutputTee.Sink(System.out, false));
+            stderrSinks.add(new OutputTee.Sink(System.err, false));
+        } else if (consoleMode == ConsoleMode.PROGRESS) {
+            progress.onStep(step -> System.out.println("    " + step));
+        }
 
         if (dockerLogPath != null) {
             logger.info("dockerLog: " + dockerLog);
-            outputStreams.add(new FileOutputStream(dockerLogPath.toFile()));
+            OutputTee.Sink logFile = new OutputTee.Sink(new FileOutputStream(dockerLogPath.toFile()), true);
+            stdoutSinks.add(logFile);
+            stderrSinks.add(logFile);
         }
 
         ProcessBuilder processBuilder = new ProcessBuilder(getCommand(true));
+        if (useBuildKit) {
+            processBuilder.environment().put("DOCKER_BUILDKIT", "1");
+            processBuilder.redirectErrorStream(true);
+        }
         logger.finer("Starting docker process...");
         final Process process = processBuilder.start();
         logger.finer("Docker process started");
-        writeFromInputToOutputStreams(process.getInputStream(), outputStreams);
-        logger.finer("Waiting for Docker to finish");
-        if (process.waitFor() != 0) {
-            Utils.processError(process);
+        // stdout and stderr are drained concurrently, so that the builder never blocks on a full pipe
+        OutputTee stdout = new OutputTee("imagetool-build-stdout", process.getInputStream(), stdoutSinks,
+            progress::accept);
+        OutputTee stderr = new OutputTee("imagetool-build-stderr", process.getErrorStream(), stderrSinks, null);
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "imagetool-build-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            stdout.flush();
+            stderr.flush();
+        }, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        int exitCode;
+        try {
+            if (streamContext) {
+                try (OutputStream stdin = process.getOutputStream()) {
+                    TarContextWriter.write(Paths.get(context), stdin);
+                } catch (IOException e) {
+                    // the builder stopped reading, the reason will be in the builder error output
+                    logger.fine("Unable to stream build context", e);
+                }
+            }
+            logger.finer("Waiting for Docker to finish");
+            exitCode = process.waitFor();
+            // the remaining output is read before the build is summarized
+            stdout.join();
+            stderr.join();
+        } finally {
+            flusher.shutdownNow();
+            stdoutSinks.forEach(OutputTee.Sink::close);
+            stderrSinks.forEach(OutputTee.Sink::close);
+        }
+        reportProgress();
+        if (exitCode != 0) {
+            // with BuildKit, errors are written to stdout
+            String errors = stderr.tail().trim().isEmpty() ? stdout.tail() : stderr.tail();
+            throw new IOException(Utils.getMessage("IMG-0088", errors));
         }
         return this;
     }
 
+    private BuildCommand executeWithEngine(Path dockerLog) throws IOException {
+        logger.entering(apiParameters, dockerLog);
+        List<OutputTee.Sink> sinks = new ArrayList<>();
+        if (consoleMode == ConsoleMode.FULL) {
+            sinks.add(new OutputTee.Sink(System.out, false));
+        } else if (consoleMode == ConsoleMode.PROGRESS) {
+            progress.onStep(step -> System.out.println("    " + step));
+        }
+        Path dockerLogPath = createFile(dockerLog);
+        if (dockerLogPath != null) {
+            logger.info("dockerLog: " + dockerLog);
+            sinks.add(new OutputTee.Sink(new FileOutputStream(dockerLogPath.toFile()), true));
+        }
+
+        Map<String, String> parameters = new LinkedHashMap<>(apiParameters);
+        if (!buildArgs.isEmpty()) {
+            JSONObject args = new JSONObject();
+            buildArgs.forEach(arg -> args.put(arg.key, arg.value));
+            parameters.put("buildargs", args.toString());
+        }
+        if (!labels.isEmpty()) {
+            parameters.put("labels", new JSONObject(labels).toString());
+        }
+        long[] lastFlush = {System.currentTimeMillis()};
+        try {
+            // the engine output is read on this thread, so the sinks are flushed here instead of by a flusher thread
+            engineClient.build(context, parameters, line -> {
+                byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+                for (OutputTee.Sink sink : sinks) {
+                    try {
+                        sink.write(bytes, bytes.length);
+                    } catch (IOException e) {
+                        logger.fine("Unable to write builder output", e);
+                    }
+                }
+                progress.accept(line);
+                long now = System.currentTimeMillis();
+                if (now - lastFlush[0] >= FLUSH_INTERVAL_MS) {
+                    sinks.forEach(OutputTee.Sink::flush);
+                    lastFlush[0] = now;
+                }
+            });
+        } finally {
+            sinks.forEach(OutputTee.Sink::close);
+            reportProgress();
+        }
+        return this;
+    }
+
+    /**
+     * The progress of each step, as reported by the builder.
+     * @return the steps of the last build
+     */
+    public BuildProgress progress() {
+        return progress;
+    }
+
+    private void reportProgress() {
+        progress.finish(Instant.now());
+        List<BuildProgress.Step> slowest = progress.slowest(SLOWEST_STEPS);
+        if (slowest.isEmpty()) {
+            return;
+        }
+        logger.info("IMG-0128");
+        slowest.forEach(step -> logger.info("    {0}", step));
+        BuildReport report = BuildReport.current();
+        if (report != null) {
+            report.attribute("slowestSteps", progress.toJson(SLOWEST_STEPS));
+        }
+    }
+
     /**
      * Create a file with the given path.
      *
@@ -187,41 +504,22 @@ public class BuildCommand {
         return logFilePath;
     }
 
-    private void writeFromInputToOutputStreams(InputStream inputStream, List<OutputStream> outputStreams) {
-        Thread readerThread = new Thread(() -> {
-            try (
-                BufferedReader processReader = new BufferedReader(new InputStreamReader(inputStream));
-                CloseableList<PrintWriter> printWriters = createPrintWriters(outputStreams)
-            ) {
-                if (!printWriters.isEmpty()) {
-                    String line;
-                    while ((line = processReader.readLine()) != null) {
-                        String finalLine = line;
-                        printWriters.forEach(x -> x.println(finalLine));
-                    }
-                }
-            } catch (IOException e) {
-                logger.severe(e.getMessage());
-            }
-        });
-        readerThread.setDaemon(true);
-        readerThread.start();
-    }
-
-    private CloseableList<PrintWriter> createPrintWriters(List<OutputStream> outputStreams) {
-        CloseableList<PrintWriter> retVal = new CloseableList<>();
-        for (OutputStream outputStream : outputStreams) {
-            retVal.add(new PrintWriter(new OutputStreamWriter(outputStream), true));
-        }
-        return retVal;
-    }
-
     private List<String> getCommand(boolean showPasswords) {
-        List<String> result = new ArrayList<>(command);
+        List<String> result = new ArrayList<>(cacheTo == null
+            ? builder.buildCommand(useBuildCache) : builder.exportCacheCommand(useBuildCache));
+        result.addAll(command);
+        for (String value : cacheFrom) {
+            result.add("--cache-from");
+            result.add(value);
+        }
+        if (cacheTo != null) {
+            result.add("--cache-to");
+            result.add(cacheTo);
+        }
         for (BuildArg arg : buildArgs) {
             result.addAll(arg.toList(showPasswords));
         }
-        result.add(context);
+        result.add(streamContext ? "-" : context);
         return result;
     }
 
@@ -0,0 +1,259 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Follows the output of the builder, and records the start, duration, and cache use of each Dockerfile step.
+ * Understands the classic Docker output (Step 1/9 : ...), Podman and Buildah output (STEP 1/9: ...),
+ * and BuildKit output with --progress=plain or --progress=rawjson.
+ */
+public class BuildProgress {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(BuildProgress.class);
+
+    private static final int MAX_INSTRUCTION_LENGTH = 120;
+
+    // Step 3/12 : RUN yum -y update
+    private static final Pattern CLASSIC_STEP = Pattern.compile("^Step \\d+/\\d+ : (.*)$");
+    // STEP 3/12: RUN yum -y update  or  [2/3] STEP 3/12: RUN yum -y update
+    private static final Pattern PODMAN_STEP = Pattern.compile("^(?:\\[\\d+/\\d+] )?STEP \\d+(?:/\\d+)?: (.*)$");
+    //  ---> Using cache  or  --> Using cache
+    private static final Pattern USING_CACHE = Pattern.compile("^\\s*-{2,3}> Using cache.*$");
+    // Successfully built / tagged, or the podman commit of the final image
+    private static final Pattern CLASSIC_END = Pattern.compile("^(Successfully (built|tagged)|COMMIT) ?.*$");
+    // FROM image AS stage
+    private static final Pattern FROM_STAGE = Pattern.compile("^(?i:FROM)\\s+\\S+(?:\\s+(?i:AS)\\s+(\\S+))?.*$");
+    // #7 [os_update 2/4] RUN yum -y update
+    private static final Pattern BUILDKIT_STEP = Pattern.compile("^#(\\d+) \\[(?:(\\S+) )?\\d+/\\d+] (.*)$");
+    // #7 DONE 12.3s, #7 CACHED, #7 ERROR: ...
+    private static final Pattern BUILDKIT_END = Pattern.compile("^#(\\d+) (?:DONE ([\\d.]+)s|(CACHED)|ERROR.*)$");
+    // name of a BuildKit vertex in rawjson output, [os_update 2/4] RUN yum -y update
+    private static final Pattern VERTEX_NAME = Pattern.compile("^\\[(?:(\\S+) )?\\d+/\\d+] (.*)$");
+
+    private final List<Step> completed = new ArrayList<>();
+    private final Map<String, Step> running = new HashMap<>();
+    private Step current;
+    private Consumer<Step> listener;
+    private String stage;
+
+    /**
+     * A Dockerfile step, as reported by the builder.
+     */
+    public static class Step {
+        private final String stage;
+        private final String instruction;
+        private final Instant start;
+        private Duration duration;
+        private boolean cached;
+
+        Step(String stage, String instruction, Instant start) {
+            this.stage = stage;
+            this.instruction = instruction.length() > MAX_INSTRUCTION_LENGTH
+                ? instruction.substring(0, MAX_INSTRUCTION_LENGTH) + "..." : instruction;
+            this.start = start;
+        }
+
+        public String stage() {
+            return stage;
+        }
+
+        public String instruction() {
+            return instruction;
+        }
+
+        public Instant start() {
+            return start;
+        }
+
+        public Duration duration() {
+            return duration;
+        }
+
+        public boolean cached() {
+            return cached;
+        }
+
+        JSONObject toJson() {
+            return new JSONObject()
+                .put("stage", stage == null ? "" : stage)
+                .put("instruction", instruction)
+                .put("start", start.toString())
+                .put("millis", duration.toMillis())
+                .put("cached", cached);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1fs [%s] %s%s", duration.toMillis() / 1000.0, stage == null ? "" : stage,
+                instruction, cached ? " (cached)" : "");
+        }
+    }
+
+    /**
+     * Process the next line of builder output.
+     * @param line a line of output from the builder
+     */
+    public synchronized void accept(String line) {
+        accept(line, Instant.now());
+    }
+
+    synchronized void accept(String line, Instant now) {
+        if (line.startsWith("{")) {
+            acceptJson(line);
+            return;
+        }
+        Matcher matcher = BUILDKIT_END.matcher(line);
+        if (matcher.matches()) {
+            Step step = running.remove(matcher.group(1));
+            if (step != null) {
+                step.cached = matcher.group(3) != null;
+                step.duration = matcher.group(2) != null
+                    ? Duration.ofMillis((long) (Double.parseDouble(matcher.group(2)) * 1000))
+                    : Duration.between(step.start, now);
+                complete(step);
+            }
+            return;
+        }
+        matcher = BUILDKIT_STEP.matcher(line);
+        if (matcher.matches()) {
+            running.putIfAbsent(matcher.group(1), new Step(matcher.group(2), matcher.group(3), now));
+            return;
+        }
+        matcher = CLASSIC_STEP.matcher(line);
+        if (!matcher.matches()) {
+            matcher = PODMAN_STEP.matcher(line);
+        }
+        if (matcher.matches()) {
+            endCurrent(now);
+            String instruction = matcher.group(1);
+            Matcher from = FROM_STAGE.matcher(instruction);
+            if (from.matches()) {
+                stage = from.group(1);
+            }
+            current = new Step(stage, instruction, now);
+        } else if (current != null && USING_CACHE.matcher(line).matches()) {
+            current.cached = true;
+        } else if (CLASSIC_END.matcher(line).matches()) {
+            endCurrent(now);
+        }
+    }
+
+    private void acceptJson(String line) {
+        try {
+            JSONArray vertexes = new JSONObject(line).optJSONArray("vertexes");
+            if (vertexes == null) {
+                return;
+            }
+            for (int i = 0; i < vertexes.length(); i++) {
+                JSONObject vertex = vertexes.getJSONObject(i);
+                Matcher matcher = VERTEX_NAME.matcher(vertex.optString("name"));
+                if (!matcher.matches() || !vertex.has("started")) {
+                    continue;
+                }
+                String digest = vertex.optString("digest");
+                Instant started = parseTime(vertex.getString("started"));
+                Step step = running.computeIfAbsent(digest, k -> new Step(matcher.group(1), matcher.group(2), started));
+                if (vertex.has("completed")) {
+                    running.remove(digest);
+                    step.cached = vertex.optBoolean("cached");
+                    step.duration = Duration.between(step.start, parseTime(vertex.getString("completed")));
+                    complete(step);
+                }
+            }
+        } catch (JSONException | DateTimeParseException e) {
+            logger.finest("Ignoring builder output that is not a BuildKit status: {0}", line);
+        }
+    }
+
+    private static Instant parseTime(String value) {
+        return OffsetDateTime.parse(value).toInstant();
+    }
+
+    private void endCurrent(Instant now) {
+        if (current != null) {
+            current.duration = Duration.between(current.start, now);
+            complete(current);
+            current = null;
+        }
+    }
+
+    private void complete(Step step) {
+        completed.add(step);
+        logger.fine("Build step completed: {0}", step);
+        if (listener != null) {
+            listener.accept(step);
+        }
+    }
+
+    /**
+     * Receive each step when it completes.
+     * @param value the consumer of completed steps
+     */
+    public synchronized void onStep(Consumer<Step> value) {
+        listener = value;
+    }
+
+    /**
+     * End the steps that were still running when the builder exited.
+     * @param now the time that the builder exited
+     */
+    public synchronized void finish(Instant now) {
+        endCurrent(now);
+        for (Step step : running.values()) {
+            step.duration = Duration.between(step.start, now);
+            complete(step);
+        }
+        running.clear();
+    }
+
+    /**
+     * All steps that have completed, in the order that they completed.
+     * @return list of steps
+     */
+    public synchronized List<Step> steps() {
+        return new ArrayList<>(completed);
+    }
+
+    /**
+     * The steps that took the longest.
+     * @param count the maximum number of steps to return
+     * @return the slowest steps, slowest first
+     */
+    public synchronized List<Step> slowest(int count) {
+        return completed.stream()
+            .sorted(Comparator.comparing(Step::duration).reversed())
+            .limit(count)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The slowest steps as JSON, for the build timing report.
+     * @param count the maximum number of steps to include
+     * @return JSON array of steps, slowest first
+     */
+    public JSONArray toJson(int count) {
+        JSONArray result = new JSONArray();
+        slowest(count).forEach(s -> result.put(s.toJson()));
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+
+/**
+ * Buildah.  Without the build cache, each stage is committed once instead of once per instruction.
+ * Buildah cannot run an image directly, so probes use a working container that is removed afterwards.
+ */
+class BuildahBuilder implements Builder {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(BuildahBuilder.class);
+
+    private final String executable;
+
+    BuildahBuilder(String executable) {
+        this.executable = executable;
+    }
+
+    @Override
+    public String name() {
+        return "buildah";
+    }
+
+    @Override
+    public String executable() {
+        return executable;
+    }
+
+    @Override
+    public List<String> buildCommand(boolean useBuildCache) {
+        List<String> result = new ArrayList<>(Arrays.asList(executable, "build", "--layers=" + useBuildCache));
+        if (!useBuildCache) {
+            result.add("--no-cache");
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supportsBuildKit() {
+        return false;
+    }
+
+    @Override
+    public Properties probe(String image, String command) throws IOException, InterruptedException {
+        String container = Builders.run(Arrays.asList(executable, "from", "--quiet", image)).trim();
+        try {
+            Properties result = new Properties();
+            result.load(new StringReader(Builders.run(Arrays.asList(executable, "run", container, "--",
+                "/bin/sh", "-c", command))));
+            return result;
+        } finally {
+            try {
+                Builders.run(Arrays.asList(executable, "rm", container));
+            } catch (IOException e) {
+                logger.fine("Unable to remove probe container " + container, e);
+            }
+        }
+    }
+
+    @Override
+    public void removeIntermediateImages(String label) throws IOException, InterruptedException {
+        // like image prune, tagged images are kept
+        List<String> images = Builders.lines(Builders.run(Arrays.asList(executable, "images", "--quiet", "--no-trunc",
+            "--filter", "label=" + label, "--filter", "dangling=true")));
+        if (images.isEmpty()) {
+            return;
+        }
+        List<String> command = new ArrayList<>(Arrays.asList(executable, "rmi", "--force"));
+        command.addAll(images);
+        Builders.run(command);
+        logger.fine("Intermediate images removed: {0}", images.size());
+    }
+
+    @Override
+    public ImageInfo inspectImage(String image) {
+        String output = Builders.output(Arrays.asList(executable, "inspect", "--type", "image", "--format",
+            "{{.FromImageID}} {{json .OCIv1.Config.Labels}} {{json .OCIv1.Config.Env}}", image));
+        return output == null ? null : ImageInfo.parse(output);
+    }
+
+    @Override
+    public List<String> findImages(String label) throws IOException, InterruptedException {
+        return Builders.lines(Builders.run(Arrays.asList(executable, "images", "--quiet", "--no-trunc",
+            "--filter", "label=" + label)));
+    }
+
+    @Override
+    public List<String> findTaggedImages(String label) throws IOException, InterruptedException {
+        return Builders.lines(Builders.run(Arrays.asList(executable, "images", "--quiet", "--no-trunc",
+            "--filter", "label=" + label, "--filter", "dangling=false")));
+    }
+
+    @Override
+    public void tagImage(String image, String tag) throws IOException, InterruptedException {
+        Builders.run(Arrays.asList(executable, "tag", image, tag));
+    }
+
+    @Override
+    public List<String> saveCommand(String image) {
+        return Arrays.asList(executable, "push", image, "docker-archive:/dev/stdout");
+    }
+
+    @Override
+    public String toString() {
+        return name() + " (" + executable + ")";
+    }
+}
@@ -0,0 +1,120 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A container image builder, like Docker, Podman, or Buildah.
+ * Each implementation uses the options that are fastest for its engine, so that users do not need to tune
+ * the builder options.  Use {@link Builders#detect(String)} to get the builder for an executable.
+ */
+public interface Builder {
+
+    /**
+     * The name of this kind of builder, like docker, docker-buildx, podman, or buildah.
+     * @return the builder type
+     */
+    String name();
+
+    /**
+     * The executable used to run this builder.
+     * @return the executable, as provided by the user
+     */
+    String executable();
+
+    /**
+     * The command to build an image, and the options that this builder always uses.
+     * @param useBuildCache true if layers from previous builds can be reused
+     * @return the build command, without the context folder
+     */
+    List<String> buildCommand(boolean useBuildCache);
+
+    /**
+     * The command to build an image, when the build cache is exported with --cache-to.
+     * @param useBuildCache true if layers from previous builds can be reused
+     * @return the build command, without the context folder
+     */
+    default List<String> exportCacheCommand(boolean useBuildCache) {
+        return buildCommand(useBuildCache);
+    }
+
+    /**
+     * Determine if this builder can use BuildKit features like RUN --mount.
+     * @return true if the builder supports BuildKit
+     */
+    boolean supportsBuildKit();
+
+    /**
+     * Determine if this builder can import and export the build cache with --cache-from and --cache-to.
+     * @return true if the builder can export the build cache
+     */
+    default boolean supportsCacheExport() {
+        return false;
+    }
+
+    /**
+     * Run a shell command in a new container, and return its output as properties.
+     * The container is removed when the command completes.
+     *
+     * @param image   the image to run
+     * @param command the shell command
+     * @return the output of the command, parsed as properties
+     * @throws IOException          if the container cannot be run, or the command fails
+     * @throws InterruptedException if interrupted while waiting for the command
+     */
+    Properties probe(String image, String command) throws IOException, InterruptedException;
+
+    /**
+     * Remove the intermediate images of a build.
+     * @param label the label that identifies the images of the build, like key=value
+     * @throws IOException          if the images cannot be removed
+     * @throws InterruptedException if interrupted while waiting for the builder
+     */
+    void removeIntermediateImages(String label) throws IOException, InterruptedException;
+
+    /**
+     * Get the ID and labels of a local image.
+     * @param image the image name or ID
+     * @return the image information, or null if the image is not available locally
+     */
+    ImageInfo inspectImage(String image);
+
+    /**
+     * Find the local images that have a label.
+     * @param label the label filter, like key=value
+     * @return the IDs of the images
+     * @throws IOException          if the images cannot be listed
+     * @throws InterruptedException if interrupted while waiting for the builder
+     */
+    List<String> findImages(String label) throws IOException, InterruptedException;
+
+    /**
+     * Find the local images that have a label and a tag.  Dangling images, like the intermediate images of a build
+     * and the images that lost their tag to a newer build, are left out.
+     * @param label the label filter, like key=value
+     * @return the IDs of the images
+     * @throws IOException          if the images cannot be listed
+     * @throws InterruptedException if interrupted while waiting for the builder
+     */
+    List<String> findTaggedImages(String label) throws IOException, InterruptedException;
+
+    /**
+     * Add a tag to a local image.
+     * @param image the image name or ID
+     * @param tag   the new tag
+     * @throws IOException          if the image cannot be tagged
+     * @throws InterruptedException if interrupted while waiting for the builder
+     */
+    void tagImage(String image, String tag) throws IOException, InterruptedException;
+
+    /**
+     * The command that writes a local image to stdout as an image archive, like docker save.
+     * @param image the image name or ID
+     * @return the command
+     */
+    List<String> saveCommand(String image);
+}
@@ -0,0 +1,162 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * Selects the {@link Builder} implementation for a builder executable.
+ */
+public class Builders {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(Builders.class);
+
+    // detected builders, by executable and engine host
+    private static final Map<String, Builder> detected = new ConcurrentHashMap<>();
+
+    private Builders() {
+        // static methods only
+    }
+
+    /**
+     * Get the builder for an executable, based on the name of the executable only.
+     * @param executable the builder executable, like docker or /usr/bin/podman
+     * @return the builder
+     */
+    public static Builder named(String executable) {
+        switch (baseName(executable)) {
+            case "podman":
+                return new PodmanBuilder(executable);
+            case "buildah":
+                return new BuildahBuilder(executable);
+            default:
+                return new DockerBuilder(executable);
+        }
+    }
+
+    /**
+     * Get the builder for an executable, and detect the features of the engine that it uses.
+     * Docker is checked for the buildx plugin (BuildKit), and for the Podman docker command.
+     * The result is cached for each executable and DOCKER_HOST, so the engine is only checked once.
+     * @param executable the builder executable, like docker or /usr/bin/podman
+     * @return the builder
+     */
+    public static Builder detect(String executable) {
+        String host = System.getenv("DOCKER_HOST");
+        return detected.computeIfAbsent(executable + "@" + (host == null ? "" : host), k -> detectBuilder(executable));
+    }
+
+    private static Builder detectBuilder(String executable) {
+        Builder result = named(executable);
+        if (result instanceof DockerBuilder && !(result instanceof PodmanBuilder)) {
+            String version = output(Arrays.asList(executable, "--version"));
+            if (version != null && version.toLowerCase(Locale.ROOT).contains("podman")) {
+                result = new PodmanBuilder(executable);
+            } else if (supportsBuildx(executable)) {
+                result = new BuildxBuilder(executable);
+            }
+        }
+        logger.fine("Builder for {0}: {1}", executable, result.name());
+        return result;
+    }
+
+    private static boolean supportsBuildx(String executable) {
+        if ("0".equals(System.getenv("DOCKER_BUILDKIT"))) {
+            logger.fine("BuildKit disabled by DOCKER_BUILDKIT=0");
+            return false;
+        }
+        if (!"docker".equals(baseName(executable))) {
+            logger.fine("BuildKit detection is not supported for {0}", executable);
+            return false;
+        }
+        // only the exit code matters
+        return output(Arrays.asList(executable, "buildx", "version")) != null;
+    }
+
+    /**
+     * Run a builder command and return its output.
+     * @param command the command to run
+     * @return the standard output of the command
+     * @throws IOException          if the command fails, with the error output of the command
+     * @throws InterruptedException if interrupted while waiting for the command
+     */
+    static String run(List<String> command) throws IOException, InterruptedException {
+        logger.entering(command);
+        Process process = new ProcessBuilder(command).start();
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append(System.lineSeparator());
+            }
+        }
+        if (process.waitFor() != 0) {
+            Utils.processError(process);
+        }
+        logger.exiting();
+        return output.toString();
+    }
+
+    /**
+     * Split command output into lines, without empty lines.
+     * @param output the command output
+     * @return the non-empty lines
+     */
+    static List<String> lines(String output) {
+        return Arrays.stream(output.split("\\R"))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Run a command and return its output.
+     * @return the output of the command, or null if the command failed
+     */
+    static String output(List<String> command) {
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (InputStream in = process.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            }
+            boolean success = process.waitFor(30, TimeUnit.SECONDS) && process.exitValue() == 0;
+            logger.finer("{0} succeeded: {1}", command, success);
+            return success ? new String(output.toByteArray(), StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            logger.fine("Unable to run " + command, e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static String baseName(String executable) {
+        Path fileName = Paths.get(executable).getFileName();
+        String result = fileName == null ? "" : fileName.toString().toLowerCase(Locale.ROOT);
+        return result.endsWith(".exe") ? result.substring(0, result.length() - 4) : result;
+    }
+}
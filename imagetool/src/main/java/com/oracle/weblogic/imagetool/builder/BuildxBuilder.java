@@ -0,0 +1,46 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Docker with the buildx plugin.  Builds use BuildKit, which can skip unused stages, run stages concurrently,
+ * and mount installers instead of copying them into the image.
+ */
+class BuildxBuilder extends DockerBuilder {
+
+    BuildxBuilder(String executable) {
+        super(executable);
+    }
+
+    @Override
+    public String name() {
+        return "docker-buildx";
+    }
+
+    @Override
+    public boolean supportsBuildKit() {
+        return true;
+    }
+
+    /**
+     * Only buildx can export the cache, and the image is loaded from the buildx builder when the build completes.
+     */
+    @Override
+    public List<String> exportCacheCommand(boolean useBuildCache) {
+        List<String> result = new ArrayList<>(Arrays.asList(executable(), "buildx", "build", "--load"));
+        if (!useBuildCache) {
+            result.add("--no-cache");
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supportsCacheExport() {
+        return true;
+    }
+}
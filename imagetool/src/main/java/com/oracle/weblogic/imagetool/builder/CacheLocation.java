@@ -0,0 +1,174 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * A place to import or export the BuildKit layer cache, for builders that do not keep their cache between builds.
+ * The location is a local directory, a registry repository, or a BuildKit cache specification (type=...).
+ * Local directories and repositories are divided by a cache key, so that each combination of installers and
+ * patches has its own cache.  The most recent other cache in a local directory is also imported, so that
+ * stages that did not change, like the OS update and JDK install, are restored when the patches change.
+ */
+public class CacheLocation {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(CacheLocation.class);
+
+    // number of caches kept in a local cache directory
+    static final int GENERATIONS = 3;
+    private static final int KEY_LENGTH = 16;
+    // the file that BuildKit writes last when it exports a local cache
+    private static final String INDEX_FILE = "index.json";
+
+    private final String spec;
+    private final Path directory;
+    private final String repository;
+
+    private CacheLocation(String spec, Path directory, String repository) {
+        this.spec = spec;
+        this.directory = directory;
+        this.repository = repository;
+    }
+
+    /**
+     * Parse a cache location provided by the user.
+     * A value that starts with type= is passed to the builder as-is.  An existing directory, an absolute path,
+     * or a path that starts with a dot is a local directory.  Any other value is a registry repository.
+     * @param value the cache location
+     * @return the location
+     */
+    public static CacheLocation parse(String value) {
+        if (value.startsWith("type=")) {
+            return new CacheLocation(value, null, null);
+        }
+        Path path = Paths.get(value);
+        if (path.isAbsolute() || value.startsWith(".") || Files.isDirectory(path)) {
+            return new CacheLocation(null, path.toAbsolutePath(), null);
+        }
+        return new CacheLocation(null, null, value);
+    }
+
+    /**
+     * Derive a cache key from the Dockerfile, which names the base image, the installers, and the patches.
+     * @param dockerfile the Dockerfile, without values that change for every build like the build ID
+     * @return the cache key
+     */
+    public static String key(String dockerfile) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(dockerfile.getBytes(StandardCharsets.UTF_8));
+            return Utils.toHexString(digest).substring(0, KEY_LENGTH).toLowerCase();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The cache specifications to import, for --cache-from.
+     * @param key the cache key of this build
+     * @return the caches to import, most specific first
+     */
+    public List<String> importSpecs(String key) {
+        List<String> result = new ArrayList<>();
+        if (spec != null) {
+            result.add(spec);
+        } else if (repository != null) {
+            result.add("type=registry,ref=" + reference(key));
+        } else {
+            Path exact = directory.resolve(key);
+            if (Files.exists(exact.resolve(INDEX_FILE))) {
+                result.add("type=local,src=" + exact);
+            }
+            // the most recent cache for other installers or patches still has the unchanged stages
+            generations().stream()
+                .filter(p -> !p.equals(exact))
+                .findFirst()
+                .ifPresent(p -> result.add("type=local,src=" + p));
+        }
+        return result;
+    }
+
+    /**
+     * The cache specification to export, for --cache-to.  All stages are exported (mode=max).
+     * @param key the cache key of this build
+     * @return the cache to export
+     */
+    public String exportSpec(String key) {
+        if (spec != null) {
+            return spec;
+        } else if (repository != null) {
+            return "type=registry,ref=" + reference(key) + ",mode=max";
+        }
+        return "type=local,dest=" + directory.resolve(key) + ",mode=max";
+    }
+
+    private String reference(String key) {
+        // a repository with a tag is used as-is
+        int slash = repository.lastIndexOf('/');
+        return repository.indexOf(':', slash + 1) >= 0 ? repository : repository + ":" + key;
+    }
+
+    /**
+     * Remove the oldest caches in a local cache directory, keeping the most recent {@link #GENERATIONS}.
+     */
+    public void rotate() {
+        if (directory == null) {
+            return;
+        }
+        List<Path> caches = generations();
+        for (Path old : caches.subList(Math.min(GENERATIONS, caches.size()), caches.size())) {
+            try {
+                logger.fine("Removing build cache {0}", old);
+                Utils.deleteFilesRecursively(old.toString());
+            } catch (IOException e) {
+                logger.warning("Unable to remove build cache " + old, e);
+            }
+        }
+    }
+
+    /**
+     * The complete caches in the local cache directory, newest first.
+     */
+    private List<Path> generations() {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.filter(p -> Files.exists(p.resolve(INDEX_FILE)))
+                .sorted(Comparator.comparing(CacheLocation::lastModified).reversed())
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.fine("Unable to list build caches in " + directory, e);
+            return new ArrayList<>();
+        }
+    }
+
+    private static FileTime lastModified(Path cache) {
+        try {
+            return Files.getLastModifiedTime(cache.resolve(INDEX_FILE));
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec != null ? spec : directory != null ? directory.toString() : repository;
+    }
+}
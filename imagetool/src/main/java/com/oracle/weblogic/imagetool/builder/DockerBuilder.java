@@ -0,0 +1,97 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * The classic Docker builder, without BuildKit.
+ */
+class DockerBuilder implements Builder {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(DockerBuilder.class);
+
+    private final String executable;
+
+    DockerBuilder(String executable) {
+        this.executable = executable;
+    }
+
+    @Override
+    public String name() {
+        return "docker";
+    }
+
+    @Override
+    public String executable() {
+        return executable;
+    }
+
+    @Override
+    public List<String> buildCommand(boolean useBuildCache) {
+        List<String> result = new ArrayList<>(Arrays.asList(executable, "build"));
+        if (!useBuildCache) {
+            result.add("--no-cache");
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supportsBuildKit() {
+        return false;
+    }
+
+    @Override
+    public Properties probe(String image, String command) throws IOException, InterruptedException {
+        return Utils.runDockerCommand(Arrays.asList(executable, "run", "--rm", image, "/bin/sh", "-c", command));
+    }
+
+    @Override
+    public void removeIntermediateImages(String label) throws IOException, InterruptedException {
+        Properties result = Utils.runDockerCommand(
+            Arrays.asList(executable, "image", "prune", "-f", "--filter", "label=" + label));
+        logger.fine("Intermediate images removed: {0}", result.get("Total"));
+    }
+
+    @Override
+    public ImageInfo inspectImage(String image) {
+        String output = Builders.output(Arrays.asList(executable, "image", "inspect", "--format",
+            "{{.Id}} {{json .Config.Labels}} {{json .Config.Env}}", image));
+        return output == null ? null : ImageInfo.parse(output);
+    }
+
+    @Override
+    public List<String> findImages(String label) throws IOException, InterruptedException {
+        return Builders.lines(Builders.run(Arrays.asList(executable, "images", "--quiet", "--no-trunc",
+            "--filter", "label=" + label)));
+    }
+
+    @Override
+    public List<String> findTaggedImages(String label) throws IOException, InterruptedException {
+        return Builders.lines(Builders.run(Arrays.asList(executable, "images", "--quiet", "--no-trunc",
+            "--filter", "label=" + label, "--filter", "dangling=false")));
+    }
+
+    @Override
+    public void tagImage(String image, String tag) throws IOException, InterruptedException {
+        Builders.run(Arrays.asList(executable, "tag", image, tag));
+    }
+
+    @Override
+    public List<String> saveCommand(String image) {
+        return Arrays.asList(executable, "save", image);
+    }
+
+    @Override
+    public String toString() {
+        return name() + " (" + executable + ")";
+    }
+}
@@ -0,0 +1,687 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A minimal client for the Docker Engine REST API, which is also provided by Podman.
+ * The client is used instead of the builder executable when --engineApi is set, so that builds, image probes,
+ * and the removal of intermediate images do not need a new CLI process.
+ * The engine is selected with DOCKER_HOST, unix:///var/run/docker.sock by default.  Unix domain sockets require
+ * Java 16 or later, and tcp:// can be used with any Java version.
+ */
+public class EngineClient {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(EngineClient.class);
+
+    private static final String DEFAULT_HOST = "unix:///var/run/docker.sock";
+
+    private final String unixSocket;
+    private final String host;
+    private final int port;
+    // registry credentials, read when the first build or pull needs them
+    private RegistryAuth registryAuth;
+
+    private EngineClient(String unixSocket, String host, int port) {
+        this.unixSocket = unixSocket;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Create a client for the engine at the given address.
+     * @param engineHost address of the engine, like unix:///var/run/docker.sock or tcp://localhost:2375
+     * @return a new client
+     * @throws IllegalArgumentException if the address is not a unix or tcp address
+     */
+    public static EngineClient of(String engineHost) {
+        URI uri = URI.create(engineHost);
+        if ("unix".equals(uri.getScheme())) {
+            return new EngineClient(uri.getPath(), null, -1);
+        } else if ("tcp".equals(uri.getScheme()) || "http".equals(uri.getScheme())) {
+            return new EngineClient(null, uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 2375);
+        }
+        throw new IllegalArgumentException(Utils.getMessage("IMG-0129", engineHost));
+    }
+
+    /**
+     * Create a client for the engine selected by DOCKER_HOST, or the default Docker socket.
+     * @return a new client
+     */
+    public static EngineClient fromEnvironment() {
+        String engineHost = System.getenv("DOCKER_HOST");
+        return of(Utils.isEmptyString(engineHost) ? DEFAULT_HOST : engineHost);
+    }
+
+    /**
+     * Use the given registry credentials instead of the Docker client configuration of the current user.
+     */
+    synchronized EngineClient registryAuth(RegistryAuth value) {
+        registryAuth = value;
+        return this;
+    }
+
+    private synchronized RegistryAuth registryAuth() {
+        if (registryAuth == null) {
+            registryAuth = RegistryAuth.fromEnvironment();
+        }
+        return registryAuth;
+    }
+
+    /**
+     * Check that the engine is reachable.
+     * @throws IOException if the engine does not respond to a ping
+     */
+    public void ping() throws IOException {
+        try (Response response = request("GET", "/_ping", null, null)) {
+            response.verify();
+        }
+    }
+
+    /**
+     * Build an image.  The build context is streamed to the engine as a tar archive.
+     *
+     * @param contextDir the build context directory
+     * @param parameters query parameters for the build, like t (tag), nocache, and buildargs
+     * @param output     receives each line of build output
+     * @return the ID of the new image, if reported by the engine
+     * @throws IOException if the build fails
+     */
+    public String build(String contextDir, Map<String, String> parameters, Consumer<String> output)
+        throws IOException {
+        logger.entering(contextDir, parameters);
+        String imageId = null;
+        // the engine pulls the base images of the build with these credentials
+        Map<String, String> headers = new LinkedHashMap<>();
+        String registryConfig = registryAuth().registryConfig();
+        if (registryConfig != null) {
+            headers.put("X-Registry-Config", registryConfig);
+        }
+        try (Response response = request("POST", "/build" + query(parameters), "application/x-tar", headers,
+            out -> TarContextWriter.write(Paths.get(contextDir), out))) {
+            response.verify();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(response.body, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JSONObject message = new JSONObject(line);
+                if (message.has("error")) {
+                    throw new IOException(Utils.getMessage("IMG-0088", message.getString("error")));
+                }
+                if (message.has("stream")) {
+                    // stream text can contain more than one line, and might not end with a line feed
+                    BufferedReader text = new BufferedReader(new StringReader(message.getString("stream")));
+                    String textLine;
+                    while ((textLine = text.readLine()) != null) {
+                        output.accept(textLine);
+                    }
+                }
+                JSONObject aux = message.optJSONObject("aux");
+                if (aux != null && aux.has("ID")) {
+                    imageId = aux.getString("ID");
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        logger.exiting(imageId);
+        return imageId;
+    }
+
+    /**
+     * Run a shell command in a new container, and return its output as properties.
+     * The image is pulled if it is not available, and the container is removed when the command completes.
+     *
+     * @param image   the image to run
+     * @param command the shell command
+     * @return the output of the command, parsed as properties
+     * @throws IOException if the container cannot be run, or the command fails
+     */
+    public Properties runProbe(String image, String command) throws IOException {
+        logger.entering(image);
+        JSONObject config = new JSONObject()
+            .put("Image", image)
+            .put("Cmd", new JSONArray().put("/bin/sh").put("-c").put(command))
+            .put("Tty", false)
+            .put("AttachStdout", true)
+            .put("AttachStderr", true);
+
+        String containerId = createContainer(config, image);
+        try {
+            post("/containers/" + containerId + "/start", null);
+            int exitCode;
+            try (Response response = request("POST", "/containers/" + containerId + "/wait", null, null)) {
+                response.verify();
+                exitCode = new JSONObject(response.bodyAsString()).getInt("StatusCode");
+            }
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            try (Response response = request("GET", "/containers/" + containerId + "/logs?stdout=1&stderr=1",
+                null, null)) {
+                response.verify();
+                demultiplex(response.body, stdout, stderr);
+            }
+            if (exitCode != 0) {
+                throw new IOException(Utils.getMessage("IMG-0088", new String(stderr.toByteArray(),
+                    StandardCharsets.UTF_8)));
+            }
+            Properties result = new Properties();
+            result.load(new StringReader(new String(stdout.toByteArray(), StandardCharsets.UTF_8)));
+            logger.exiting(result);
+            return result;
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            try (Response response = request("DELETE", "/containers/" + containerId + "?force=1", null, null)) {
+                response.verify();
+            } catch (IOException e) {
+                logger.fine("Unable to remove probe container " + containerId, e);
+            }
+        }
+    }
+
+    private String createContainer(JSONObject config, String image) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try (Response response = request("POST", "/containers/create", "application/json",
+                out -> out.write(config.toString().getBytes(StandardCharsets.UTF_8)))) {
+                if (response.status == 404 && attempt == 0) {
+                    // the image is not available locally, pull it and try again (like docker run)
+                    response.bodyAsString();
+                    pull(image);
+                    continue;
+                }
+                response.verify();
+                return new JSONObject(response.bodyAsString()).getString("Id");
+            }
+        }
+        throw new IOException(Utils.getMessage("IMG-0130", image));
+    }
+
+    private void pull(String image) throws IOException {
+        logger.info("IMG-0131", image);
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("fromImage", image);
+        Map<String, String> headers = new LinkedHashMap<>();
+        String auth = registryAuth().registryAuth(image);
+        if (auth != null) {
+            headers.put("X-Registry-Auth", auth);
+        }
+        try (Response response = request("POST", "/images/create" + query(parameters), null, headers, null)) {
+            response.verify();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(response.body, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains("\"error\"")) {
+                    throw new IOException(new JSONObject(line).optString("error", line));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove dangling images with the given label, like the intermediate images of a build.
+     * @param label label filter, like key=value
+     * @return the number of images deleted
+     * @throws IOException if the engine fails to prune the images
+     */
+    public int pruneImages(String label) throws IOException {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("filters", new JSONObject().put("label", new JSONArray().put(label)).toString());
+        try (Response response = request("POST", "/images/prune" + query(parameters), null, null)) {
+            response.verify();
+            JSONArray deleted = new JSONObject(response.bodyAsString()).optJSONArray("ImagesDeleted");
+            return deleted == null ? 0 : deleted.length();
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the ID, labels, and environment of a local image.
+     * @param image the image name or ID
+     * @return the image information, or null if the image is not available locally
+     * @throws IOException if the engine fails to inspect the image
+     */
+    public ImageInfo inspectImage(String image) throws IOException {
+        try (Response response = request("GET", "/images/" + image + "/json", null, null)) {
+            if (response.status == 404) {
+                return null;
+            }
+            response.verify();
+            JSONObject result = new JSONObject(response.bodyAsString());
+            JSONObject config = result.optJSONObject("Config");
+            return new ImageInfo(result.getString("Id"), config == null ? null : config.optJSONObject("Labels"),
+                config == null ? null : config.optJSONArray("Env"));
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find the local images that have a label.
+     * @param label the label filter, like key=value
+     * @return the IDs of the images
+     * @throws IOException if the engine fails to list the images
+     */
+    public List<String> findImages(String label) throws IOException {
+        return listImages(new JSONObject().put("label", new JSONArray().put(label)));
+    }
+
+    /**
+     * Find the local images that have a label and a tag, leaving out dangling images.
+     * @param label the label filter, like key=value
+     * @return the IDs of the images
+     * @throws IOException if the engine fails to list the images
+     */
+    public List<String> findTaggedImages(String label) throws IOException {
+        return listImages(new JSONObject().put("label", new JSONArray().put(label))
+            .put("dangling", new JSONArray().put("false")));
+    }
+
+    private List<String> listImages(JSONObject filters) throws IOException {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("filters", filters.toString());
+        try (Response response = request("GET", "/images/json" + query(parameters), null, null)) {
+            response.verify();
+            JSONArray images = new JSONArray(response.bodyAsString());
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < images.length(); i++) {
+                result.add(images.getJSONObject(i).getString("Id"));
+            }
+            return result;
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Add a tag to a local image.
+     * @param image the image name or ID
+     * @param tag   the new tag, like repository:tag
+     * @throws IOException if the engine fails to tag the image
+     */
+    public void tagImage(String image, String tag) throws IOException {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        int colon = tag.lastIndexOf(':');
+        if (colon > tag.lastIndexOf('/')) {
+            parameters.put("repo", tag.substring(0, colon));
+            parameters.put("tag", tag.substring(colon + 1));
+        } else {
+            parameters.put("repo", tag);
+        }
+        post("/images/" + image + "/tag" + query(parameters), null);
+    }
+
+    private void post(String path, String json) throws IOException {
+        try (Response response = request("POST", path, json == null ? null : "application/json",
+            json == null ? null : out -> out.write(json.getBytes(StandardCharsets.UTF_8)))) {
+            response.verify();
+            response.bodyAsString();
+        }
+    }
+
+    /**
+     * Split the multiplexed stdout and stderr of a container without a TTY.
+     * Each frame has an 8 byte header, the stream type (1 = stdout, 2 = stderr) and the big-endian frame size.
+     */
+    static void demultiplex(InputStream in, OutputStream stdout, OutputStream stderr) throws IOException {
+        byte[] header = new byte[8];
+        while (readFully(in, header)) {
+            int size = ((header[4] & 0xFF) << 24) | ((header[5] & 0xFF) << 16)
+                | ((header[6] & 0xFF) << 8) | (header[7] & 0xFF);
+            byte[] frame = new byte[size];
+            if (!readFully(in, frame)) {
+                throw new IOException("Incomplete container log frame");
+            }
+            (header[0] == 2 ? stderr : stdout).write(frame);
+        }
+    }
+
+    private static boolean readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                if (offset == 0) {
+                    return false;
+                }
+                throw new IOException("Unexpected end of stream");
+            }
+            offset += read;
+        }
+        return true;
+    }
+
+    private static String query(Map<String, String> parameters) throws UnsupportedEncodingException {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            result.append(result.length() == 0 ? '?' : '&')
+                .append(entry.getKey()).append('=')
+                .append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+        }
+        return result.toString();
+    }
+
+    @FunctionalInterface
+    interface BodyWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    Response request(String method, String path, String contentType, BodyWriter body) throws IOException {
+        return request(method, path, contentType, Collections.emptyMap(), body);
+    }
+
+    Response request(String method, String path, String contentType, Map<String, String> headers, BodyWriter body)
+        throws IOException {
+        logger.finer("Engine API request {0} {1}", method, path);
+        Connection connection = connect();
+        try {
+            OutputStream out = new BufferedOutputStream(connection.output, 64 * 1024);
+            StringBuilder head = new StringBuilder()
+                .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                .append("Host: docker\r\n")
+                .append("Connection: close\r\n");
+            if (contentType != null) {
+                head.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+            if (body != null) {
+                head.append("Transfer-Encoding: chunked\r\n");
+            } else if (!"GET".equals(method) && !"DELETE".equals(method)) {
+                head.append("Content-Length: 0\r\n");
+            }
+            head.append("\r\n");
+            out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+            if (body != null) {
+                // buffer the body so that each chunk is large, even when the body is written in small pieces
+                ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+                OutputStream buffered = new BufferedOutputStream(chunked, 64 * 1024);
+                body.write(buffered);
+                buffered.flush();
+                chunked.finish();
+            }
+            out.flush();
+            return new Response(connection);
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private Connection connect() throws IOException {
+        if (unixSocket == null) {
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), 30000);
+            return new Connection(socket.getInputStream(), socket.getOutputStream(), socket);
+        }
+        SocketChannel channel = openUnixSocket(unixSocket);
+        return new Connection(Channels.newInputStream(channel), Channels.newOutputStream(channel), channel);
+    }
+
+    /**
+     * Unix domain socket channels were added in Java 16, and are opened with reflection so that the tool
+     * can still be compiled and run with Java 8.
+     */
+    private static SocketChannel openUnixSocket(String path) throws IOException {
+        try {
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            SocketAddress address = (SocketAddress) addressClass.getMethod("of", String.class).invoke(null, path);
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            SocketChannel channel = (SocketChannel) SocketChannel.class.getMethod("open", ProtocolFamily.class)
+                .invoke(null, unix);
+            channel.connect(address);
+            return channel;
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            throw new IOException(Utils.getMessage("IMG-0132", path), e);
+        } catch (ReflectiveOperationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private static class Connection implements Closeable {
+        final InputStream input;
+        final OutputStream output;
+        final Closeable resource;
+
+        Connection(InputStream input, OutputStream output, Closeable resource) {
+            this.input = new BufferedInputStream(input, 64 * 1024);
+            this.output = output;
+            this.resource = resource;
+        }
+
+        @Override
+        public void close() {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                logger.finest("Unable to close engine connection", e);
+            }
+        }
+    }
+
+    static class Response implements Closeable {
+        final int status;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        final InputStream body;
+        private final Connection connection;
+
+        Response(Connection connection) throws IOException {
+            this.connection = connection;
+            String statusLine = readLine(connection.input);
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new IOException("Invalid response from engine: " + statusLine);
+            }
+            status = Integer.parseInt(parts[1]);
+            String line;
+            while (!(line = readLine(connection.input)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+                }
+            }
+            if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+                body = new ChunkedInputStream(connection.input);
+            } else if (headers.containsKey("content-length")) {
+                body = new BoundedInputStream(connection.input, Long.parseLong(headers.get("content-length")));
+            } else {
+                body = connection.input;
+            }
+        }
+
+        void verify() throws IOException {
+            if (status >= 300) {
+                String message = bodyAsString();
+                try {
+                    message = new JSONObject(message).optString("message", message);
+                } catch (JSONException e) {
+                    // not a JSON error, use the text of the response
+                }
+                throw new IOException(Utils.getMessage("IMG-0133", status, message.trim()));
+            }
+        }
+
+        String bodyAsString() throws IOException {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                result.write(buffer, 0, read);
+            }
+            return new String(result.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            connection.close();
+        }
+    }
+
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder result = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                result.append((char) b);
+            }
+        }
+        if (b == -1 && result.length() == 0) {
+            throw new IOException("Connection closed by engine");
+        }
+        return result.toString();
+    }
+
+    private static class ChunkedOutputStream extends FilterOutputStream {
+        ChunkedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > 0) {
+                out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(bytes, offset, length);
+                out.write(new byte[] {'\r', '\n'});
+            }
+        }
+
+        void finish() throws IOException {
+            out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the connection is closed with the response
+            flush();
+        }
+    }
+
+    static class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining = 0;
+        private boolean eof = false;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            if (remaining == 0) {
+                String size = readLine(in);
+                int extension = size.indexOf(';');
+                remaining = Long.parseLong((extension >= 0 ? size.substring(0, extension) : size).trim(), 16);
+                if (remaining == 0) {
+                    // skip trailers
+                    while (!readLine(in).isEmpty()) {
+                        // ignore
+                    }
+                    eof = true;
+                    return -1;
+                }
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read == -1) {
+                throw new IOException("Unexpected end of chunked response");
+            }
+            remaining -= read;
+            if (remaining == 0) {
+                readLine(in);
+            }
+            return read;
+        }
+    }
+
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read != -1) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * The ID, labels, and environment of a local image, as reported by the builder or the Engine API.
+ */
+public class ImageInfo {
+    private final String id;
+    private final Map<String, String> labels;
+    private final Map<String, String> env;
+
+    /**
+     * Create the image information.
+     * @param id     the image ID
+     * @param labels the image labels, or null if the image has no labels
+     */
+    public ImageInfo(String id, JSONObject labels) {
+        this(id, labels, null);
+    }
+
+    /**
+     * Create the image information.
+     * @param id     the image ID
+     * @param labels the image labels, or null if the image has no labels
+     * @param env    the environment variables of the image as NAME=value, or null if the image has none
+     */
+    public ImageInfo(String id, JSONObject labels, JSONArray env) {
+        this.id = id;
+        Map<String, String> values = new HashMap<>();
+        if (labels != null) {
+            labels.keySet().forEach(k -> values.put(k, labels.optString(k)));
+        }
+        this.labels = Collections.unmodifiableMap(values);
+        Map<String, String> variables = new TreeMap<>();
+        if (env != null) {
+            for (int i = 0; i < env.length(); i++) {
+                String variable = env.optString(i);
+                int equals = variable.indexOf('=');
+                if (equals > 0) {
+                    variables.put(variable.substring(0, equals), variable.substring(equals + 1));
+                }
+            }
+        }
+        this.env = Collections.unmodifiableMap(variables);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public Map<String, String> labels() {
+        return labels;
+    }
+
+    /**
+     * The environment variables of the image.
+     * @return the variables, sorted by name
+     */
+    public Map<String, String> env() {
+        return env;
+    }
+
+    /**
+     * The value of a label.
+     * @param name the name of the label
+     * @return the value, or null if the image does not have the label
+     */
+    public String label(String name) {
+        return labels.get(name);
+    }
+
+    /**
+     * Parse the output of an inspect command with the format "{{.Id}} {{json .Config.Labels}} {{json .Config.Env}}".
+     * The environment is optional.
+     * @param output the inspect output
+     * @return the image information
+     */
+    static ImageInfo parse(String output) {
+        String value = output.trim();
+        int space = value.indexOf(' ');
+        if (space < 0) {
+            return new ImageInfo(value, null);
+        }
+        JSONTokener tokener = new JSONTokener(value.substring(space + 1));
+        Object labels = tokener.nextValue();
+        Object env = tokener.more() ? tokener.nextValue() : null;
+        return new ImageInfo(value.substring(0, space),
+            labels instanceof JSONObject ? (JSONObject) labels : null,
+            env instanceof JSONArray ? (JSONArray) env : null);
+    }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.oracle.weblogic.imagetool.util.BuildReport;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * A hash of everything that goes into an image build: the Dockerfile, the files in the build context,
+ * the IDs of the images used by FROM instructions, and the build arguments.
+ * The hash is stored as a label on the image, so that a build with the same inputs can be skipped.
+ */
+public class InputHash {
+    public static final String LABEL = "com.oracle.weblogic.imagetool.inputs";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private InputHash() {
+        // static methods only
+    }
+
+    /**
+     * Compute the input hash of a build.
+     *
+     * @param dockerfile  the rendered Dockerfile, without values that change for every build like the build ID
+     * @param contextDir  the build context directory
+     * @param buildArgs   the build arguments
+     * @param imageIds    returns the ID of a local image, or null if the image is not available
+     * @return the hash, or null if an image used by the Dockerfile is not available locally
+     * @throws IOException if a file in the build context cannot be read
+     */
+    public static String compute(String dockerfile, Path contextDir, Map<String, String> buildArgs,
+                                 Function<String, String> imageIds) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, "dockerfile", dockerfile);
+
+        for (String image : baseImages(dockerfile)) {
+            String id = imageIds.apply(image);
+            if (id == null) {
+                return null;
+            }
+            update(digest, "image " + image, id);
+        }
+
+        for (Map.Entry<String, String> arg : new TreeMap<>(buildArgs).entrySet()) {
+            update(digest, "arg " + arg.getKey(), arg.getValue());
+        }
+
+        for (Map.Entry<String, String> file : fileDigests(contextDir).entrySet()) {
+            // the Dockerfile in the context has the build ID, the rendered Dockerfile is already included
+            if (!file.getKey().equals("Dockerfile")) {
+                update(digest, "file " + file.getKey(), file.getValue());
+            }
+        }
+        return Utils.toHexString(digest.digest()).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The SHA-256 digest of each file in the build context.
+     * @param contextDir the build context directory
+     * @return hexadecimal digests, by the path of the file relative to the context directory
+     * @throws IOException if a file cannot be read
+     */
+    public static Map<String, String> fileDigests(Path contextDir) throws IOException {
+        Map<String, String> result = new TreeMap<>();
+        try (BuildReport.Phase phase = BuildReport.phase("inputHash")) {
+            long bytes = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (Path file : contextFiles(contextDir)) {
+                MessageDigest fileDigest = sha256();
+                try (InputStream in = Files.newInputStream(file)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        fileDigest.update(buffer, 0, read);
+                        bytes += read;
+                    }
+                }
+                result.put(contextDir.relativize(file).toString().replace('\\', '/'),
+                    Utils.toHexString(fileDigest.digest()));
+            }
+            phase.bytes(bytes);
+        }
+        return result;
+    }
+
+    /**
+     * The images used by the FROM instructions of a Dockerfile, excluding earlier stages.
+     * @param dockerfile the rendered Dockerfile
+     * @return image names, in the order of the Dockerfile
+     */
+    static Set<String> baseImages(String dockerfile) {
+        Set<String> stages = new LinkedHashSet<>();
+        Set<String> result = new LinkedHashSet<>();
+        for (String line : dockerfile.split("\\R")) {
+            String[] words = line.trim().split("\\s+");
+            if (words.length < 2 || !"FROM".equalsIgnoreCase(words[0])) {
+                continue;
+            }
+            int index = 1;
+            while (index < words.length && words[index].startsWith("--")) {
+                index++;
+            }
+            if (index >= words.length) {
+                continue;
+            }
+            String image = words[index];
+            if (!stages.contains(image) && !"scratch".equals(image)) {
+                result.add(image);
+            }
+            if (index + 2 < words.length && "AS".equalsIgnoreCase(words[index + 1])) {
+                stages.add(words[index + 2]);
+            }
+        }
+        return result;
+    }
+
+    private static List<Path> contextFiles(Path contextDir) throws IOException {
+        try (Stream<Path> walk = Files.walk(contextDir, FileVisitOption.FOLLOW_LINKS)) {
+            return walk.filter(Files::isRegularFile).sorted().collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    static void update(MessageDigest digest, String name, String value) {
+        digest.update((name + "=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
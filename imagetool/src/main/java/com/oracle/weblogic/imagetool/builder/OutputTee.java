@@ -0,0 +1,190 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+
+/**
+ * Copies the output of a process to one or more streams, like the console and a log file, without decoding it.
+ * The output is read in large blocks and written to buffered sinks.  The sinks are flushed by {@link #flush()},
+ * which the caller invokes periodically, instead of on every line.
+ * Lines are only decoded when a line listener is set and the line could be a build progress line.
+ * The end of the output is kept, so that it can be included in an error message when the process fails.
+ */
+public class OutputTee {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(OutputTee.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+    private static final int TAIL_SIZE = 8 * 1024;
+    // the first character of lines that BuildProgress can use, all other lines are not decoded
+    private static final String PROGRESS_LINE_START = "S#{[ -C";
+
+    private final List<Sink> sinks;
+    private final Consumer<String> lineListener;
+    private final Thread thread;
+
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+    private int lineLength = 0;
+    private boolean lineTooLong = false;
+    private final byte[] tail = new byte[TAIL_SIZE];
+    private long total = 0;
+
+    /**
+     * A buffered output stream that can be shared by more than one tee, like a log file for stdout and stderr.
+     */
+    public static class Sink {
+        private final OutputStream out;
+        private final boolean close;
+
+        /**
+         * Create a sink.
+         * @param out   the stream to write to
+         * @param close true if the stream should be closed by {@link #close()}, false for System.out
+         */
+        public Sink(OutputStream out, boolean close) {
+            this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+            this.close = close;
+        }
+
+        synchronized void write(byte[] bytes, int length) throws IOException {
+            out.write(bytes, 0, length);
+        }
+
+        /**
+         * Write buffered output to the underlying stream.
+         */
+        public synchronized void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                logger.fine("Unable to flush builder output", e);
+            }
+        }
+
+        /**
+         * Flush the sink, and close the underlying stream if this sink owns it.
+         */
+        public synchronized void close() {
+            flush();
+            if (close) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    logger.fine("Unable to close builder output", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start copying a stream to the sinks on a new daemon thread.
+     * @param name         name of the thread
+     * @param in           the process output
+     * @param sinks        where to write the output
+     * @param lineListener receives the lines that could be build progress, or null
+     */
+    public OutputTee(String name, InputStream in, List<Sink> sinks, Consumer<String> lineListener) {
+        this.sinks = new ArrayList<>(sinks);
+        this.lineListener = lineListener;
+        thread = new Thread(() -> pump(in), name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void pump(InputStream in) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = in) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                for (Sink sink : sinks) {
+                    sink.write(buffer, read);
+                }
+                keepTail(buffer, read);
+                if (lineListener != null) {
+                    splitLines(buffer, read);
+                }
+            }
+            if (lineListener != null && lineLength > 0) {
+                emitLine();
+            }
+        } catch (IOException e) {
+            logger.severe(e.getMessage());
+        } finally {
+            flush();
+        }
+    }
+
+    private synchronized void keepTail(byte[] buffer, int length) {
+        if (length >= TAIL_SIZE) {
+            System.arraycopy(buffer, length - TAIL_SIZE, tail, 0, TAIL_SIZE);
+        } else {
+            // shift the tail left, and append the new bytes
+            System.arraycopy(tail, length, tail, 0, TAIL_SIZE - length);
+            System.arraycopy(buffer, 0, tail, TAIL_SIZE - length, length);
+        }
+        total += length;
+    }
+
+    private void splitLines(byte[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            byte b = buffer[i];
+            if (b == '\n') {
+                emitLine();
+            } else if (lineLength < MAX_LINE_LENGTH) {
+                line[lineLength++] = b;
+            } else {
+                lineTooLong = true;
+            }
+        }
+    }
+
+    private void emitLine() {
+        int length = lineLength;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (!lineTooLong && length > 0 && PROGRESS_LINE_START.indexOf(line[0]) >= 0) {
+            lineListener.accept(new String(line, 0, length, Charset.defaultCharset()));
+        }
+        lineLength = 0;
+        lineTooLong = false;
+    }
+
+    /**
+     * Write all buffered output to the sinks.
+     */
+    public void flush() {
+        sinks.forEach(Sink::flush);
+    }
+
+    /**
+     * Wait until all the output of the process has been copied.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void join() throws InterruptedException {
+        thread.join();
+    }
+
+    /**
+     * The last part of the output, up to 8 KB.
+     * @return the end of the output, decoded with the default charset
+     */
+    public synchronized String tail() {
+        int length = (int) Math.min(total, TAIL_SIZE);
+        byte[] result = Arrays.copyOfRange(tail, TAIL_SIZE - length, TAIL_SIZE);
+        return new String(result, Charset.defaultCharset());
+    }
+}
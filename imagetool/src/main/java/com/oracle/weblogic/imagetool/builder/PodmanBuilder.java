@@ -0,0 +1,30 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.util.List;
+
+/**
+ * Podman, including the podman-docker package that installs Podman as docker.
+ * Podman commits an image for every instruction when layers are enabled.  When the build cache is not used,
+ * those layer images are never reused, so only the final image of each stage is committed.
+ */
+class PodmanBuilder extends DockerBuilder {
+
+    PodmanBuilder(String executable) {
+        super(executable);
+    }
+
+    @Override
+    public String name() {
+        return "podman";
+    }
+
+    @Override
+    public List<String> buildCommand(boolean useBuildCache) {
+        List<String> result = super.buildCommand(useBuildCache);
+        result.add(2, "--layers=" + useBuildCache);
+        return result;
+    }
+}
@@ -0,0 +1,243 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Registry credentials from the Docker client configuration, $DOCKER_CONFIG/config.json or ~/.docker/config.json,
+ * which the builder executable also uses.  Credentials are read from the auths section, or from the credential
+ * helpers named by credHelpers and credsStore.  The Engine API expects the credentials in the X-Registry-Config
+ * header of a build, and in the X-Registry-Auth header of a pull.
+ */
+public class RegistryAuth {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(RegistryAuth.class);
+
+    static final String DOCKER_HUB = "https://index.docker.io/v1/";
+    private static final String HELPER_TOKEN_USER = "<token>";
+
+    private final JSONObject auths;
+    private final JSONObject credHelpers;
+    private final String credsStore;
+    // credentials by server address as listed in the configuration, null if the server has no credentials
+    private final Map<String, JSONObject> credentials = new LinkedHashMap<>();
+
+    RegistryAuth(JSONObject config) {
+        auths = config.optJSONObject("auths") == null ? new JSONObject() : config.getJSONObject("auths");
+        credHelpers = config.optJSONObject("credHelpers") == null
+            ? new JSONObject() : config.getJSONObject("credHelpers");
+        credsStore = config.optString("credsStore", null);
+    }
+
+    /**
+     * Read the Docker client configuration of the current user.
+     * @return the registry credentials, empty if there is no configuration
+     */
+    public static RegistryAuth fromEnvironment() {
+        String configDir = System.getenv("DOCKER_CONFIG");
+        Path config = Utils.isEmptyString(configDir)
+            ? Paths.get(System.getProperty("user.home"), ".docker", "config.json")
+            : Paths.get(configDir, "config.json");
+        return of(config);
+    }
+
+    /**
+     * Read a Docker client configuration file.
+     * @param config the config.json file
+     * @return the registry credentials, empty if the file does not exist or cannot be read
+     */
+    public static RegistryAuth of(Path config) {
+        if (Files.isRegularFile(config)) {
+            try {
+                return new RegistryAuth(new JSONObject(new String(Files.readAllBytes(config),
+                    StandardCharsets.UTF_8)));
+            } catch (IOException | JSONException e) {
+                logger.fine("Ignoring Docker configuration {0}: {1}", config, e.getMessage());
+            }
+        }
+        return new RegistryAuth(new JSONObject());
+    }
+
+    /**
+     * The value of the X-Registry-Config header for a build, the credentials of every configured registry.
+     * @return the encoded credentials, or null if no registry has credentials
+     */
+    public synchronized String registryConfig() {
+        JSONObject result = new JSONObject();
+        for (String server : servers()) {
+            JSONObject value = credentials(server);
+            if (value != null) {
+                result.put(server, value);
+            }
+        }
+        return result.length() == 0 ? null : encode(result);
+    }
+
+    /**
+     * The value of the X-Registry-Auth header for a pull, the credentials of the registry of the image.
+     * @param image the image name, like container-registry.oracle.com/java/serverjre:8
+     * @return the encoded credentials, or null if the registry of the image has no credentials
+     */
+    public synchronized String registryAuth(String image) {
+        String registry = registry(image);
+        for (String server : servers()) {
+            if (registry.equals(hostName(server))) {
+                JSONObject value = credentials(server);
+                if (value != null) {
+                    return encode(value);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The registry of an image, docker.io when the image name does not start with a registry host.
+     * @param image the image name
+     * @return the registry host name, with the port if there is one
+     */
+    static String registry(String image) {
+        int slash = image.indexOf('/');
+        if (slash > 0) {
+            String first = image.substring(0, slash);
+            if (first.contains(".") || first.contains(":") || "localhost".equals(first)) {
+                return hostName(first);
+            }
+        }
+        return "docker.io";
+    }
+
+    /**
+     * The host name of a configured server address, like docker.io for https://index.docker.io/v1/.
+     */
+    static String hostName(String server) {
+        String result = server.toLowerCase(Locale.ROOT);
+        int scheme = result.indexOf("://");
+        if (scheme >= 0) {
+            result = result.substring(scheme + 3);
+        }
+        int slash = result.indexOf('/');
+        if (slash >= 0) {
+            result = result.substring(0, slash);
+        }
+        if ("index.docker.io".equals(result) || "registry-1.docker.io".equals(result)) {
+            return "docker.io";
+        }
+        return result;
+    }
+
+    private Set<String> servers() {
+        Set<String> result = new TreeSet<>(auths.keySet());
+        result.addAll(credHelpers.keySet());
+        if (!Utils.isEmptyString(credsStore)) {
+            JSONObject listed = helper(credsStore, "list", null);
+            if (listed != null) {
+                result.addAll(listed.keySet());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The credentials of a server, from the auths section, or from the credential helper of the server.
+     */
+    private JSONObject credentials(String server) {
+        if (!credentials.containsKey(server)) {
+            credentials.put(server, lookup(server));
+        }
+        return credentials.get(server);
+    }
+
+    private JSONObject lookup(String server) {
+        JSONObject entry = auths.optJSONObject(server);
+        if (entry != null) {
+            JSONObject result = new JSONObject().put("serveraddress", server);
+            if (!Utils.isEmptyString(entry.optString("identitytoken"))) {
+                return result.put("identitytoken", entry.getString("identitytoken"));
+            }
+            String auth = entry.optString("auth");
+            if (!Utils.isEmptyString(auth)) {
+                String decoded = new String(Base64.getMimeDecoder().decode(auth), StandardCharsets.UTF_8);
+                int colon = decoded.indexOf(':');
+                if (colon > 0) {
+                    return result.put("username", decoded.substring(0, colon))
+                        .put("password", decoded.substring(colon + 1));
+                }
+            }
+        }
+        String helper = credHelpers.optString(server, credsStore);
+        if (Utils.isEmptyString(helper)) {
+            return null;
+        }
+        JSONObject found = helper(helper, "get", server);
+        if (found == null || Utils.isEmptyString(found.optString("Secret"))) {
+            return null;
+        }
+        JSONObject result = new JSONObject().put("serveraddress", server);
+        if (HELPER_TOKEN_USER.equals(found.optString("Username"))) {
+            return result.put("identitytoken", found.getString("Secret"));
+        }
+        return result.put("username", found.optString("Username")).put("password", found.getString("Secret"));
+    }
+
+    /**
+     * Run a Docker credential helper, docker-credential-NAME, and parse its JSON output.
+     * @return the output, or null if the helper failed
+     */
+    JSONObject helper(String name, String action, String input) {
+        try {
+            Process process = new ProcessBuilder("docker-credential-" + name, action).start();
+            try (OutputStream stdin = process.getOutputStream()) {
+                if (input != null) {
+                    stdin.write(input.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            String output = readAll(process.getInputStream());
+            if (process.waitFor() != 0) {
+                logger.fine("Credential helper {0} {1} failed: {2}", name, action, output.trim());
+                return null;
+            }
+            return new JSONObject(output);
+        } catch (IOException | JSONException e) {
+            logger.fine("Credential helper {0} {1} failed: {2}", name, action, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            result.write(buffer, 0, count);
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String encode(JSONObject value) {
+        return Base64.getUrlEncoder().encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
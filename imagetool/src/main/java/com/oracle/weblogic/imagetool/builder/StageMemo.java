@@ -0,0 +1,216 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * Memoized build stages.  The stages that install OS packages, the JDK, and the middleware take most of the
+ * build time, and only change when their inputs change.  Each of these stages is built once as a local image,
+ * named with a hash of the stage instructions, the base image ID, the files that the stage uses, and the
+ * stages that it depends on.  Later builds start from the memoized image instead of running the stage again.
+ */
+public class StageMemo {
+    public static final String LABEL = "com.oracle.weblogic.imagetool.stage";
+    public static final String REPOSITORY = "imagetool-stage";
+    static final List<String> STAGES = Collections.unmodifiableList(
+        Arrays.asList("os_update", "jdk_build", "wls_build"));
+
+    private static final int KEY_LENGTH = 16;
+
+    private final String preamble;
+    // stage text, by stage name, in the order of the Dockerfile
+    private final Map<String, String> stages = new LinkedHashMap<>();
+    // memoized image, by stage name
+    private final Map<String, String> images = new LinkedHashMap<>();
+
+    private StageMemo(String preamble) {
+        this.preamble = preamble;
+    }
+
+    /**
+     * Find the stages of a Dockerfile that can be memoized, and the image name for each of them.
+     * A stage can be memoized if it is one of {@link #STAGES}, and only depends on external images
+     * and other memoized stages.
+     *
+     * @param dockerfile  the rendered Dockerfile
+     * @param buildId     the build ID, which is not an input of a stage
+     * @param contextDir  the build context directory
+     * @param imageIds    returns the ID of a local image, or null if the image is not available
+     * @return the memoized stages
+     * @throws IOException if a file in the build context cannot be read
+     */
+    public static StageMemo of(String dockerfile, String buildId, Path contextDir,
+                               Function<String, String> imageIds) throws IOException {
+        List<String> names = new ArrayList<>();
+        StageMemo result = split(dockerfile, names);
+        Map<String, String> fileDigests = InputHash.fileDigests(contextDir);
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (String name : names) {
+            if (!STAGES.contains(name)) {
+                continue;
+            }
+            String text = result.preamble + result.stages.get(name);
+            String key = key(text.replace(buildId, ""), keys, names, fileDigests, imageIds);
+            if (key != null) {
+                keys.put(name, key);
+                result.images.put(name, REPOSITORY + "/" + name.replace('_', '-') + ":" + key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Split a Dockerfile at the FROM instructions.
+     * @param dockerfile the Dockerfile
+     * @param names      the stage names, in the order of the Dockerfile
+     * @return the stages, without memoized images
+     */
+    static StageMemo split(String dockerfile, List<String> names) {
+        StringBuilder preamble = new StringBuilder();
+        StringBuilder current = preamble;
+        String name = null;
+        Map<String, String> found = new LinkedHashMap<>();
+        int unnamed = 0;
+        for (String line : dockerfile.split("\\R")) {
+            List<String> words = Arrays.asList(line.trim().split("\\s+"));
+            if ("FROM".equalsIgnoreCase(words.get(0))) {
+                if (name != null) {
+                    found.put(name, current.toString());
+                }
+                int as = indexOfIgnoreCase(words, "AS");
+                name = as > 0 && as + 1 < words.size() ? words.get(as + 1) : "#" + unnamed++;
+                names.add(name);
+                current = new StringBuilder();
+            }
+            current.append(line).append('\n');
+        }
+        if (name != null) {
+            found.put(name, current.toString());
+        }
+        StageMemo result = new StageMemo(preamble.toString());
+        result.stages.putAll(found);
+        return result;
+    }
+
+    private static String key(String text, Map<String, String> keys, List<String> names,
+                              Map<String, String> fileDigests, Function<String, String> imageIds) {
+        MessageDigest digest = InputHash.sha256();
+        InputHash.update(digest, "stage", text);
+        for (String dependency : dependencies(text)) {
+            if (keys.containsKey(dependency)) {
+                InputHash.update(digest, "stage " + dependency, keys.get(dependency));
+            } else if (names.contains(dependency)) {
+                // depends on a stage that is not memoized
+                return null;
+            } else {
+                String id = imageIds.apply(dependency);
+                if (id == null) {
+                    return null;
+                }
+                InputHash.update(digest, "image " + dependency, id);
+            }
+        }
+        for (Map.Entry<String, String> file : fileDigests.entrySet()) {
+            if (references(text, file.getKey())) {
+                InputHash.update(digest, "file " + file.getKey(), file.getValue());
+            }
+        }
+        return Utils.toHexString(digest.digest()).substring(0, KEY_LENGTH).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The images and stages used by a stage, from FROM instructions and COPY --from options.
+     */
+    private static Set<String> dependencies(String text) {
+        Set<String> result = new TreeSet<>();
+        for (String line : text.split("\\R")) {
+            String[] words = line.trim().split("\\s+");
+            if ("FROM".equalsIgnoreCase(words[0])) {
+                for (int i = 1; i < words.length; i++) {
+                    if (!words[i].startsWith("--")) {
+                        result.add(words[i]);
+                        break;
+                    }
+                }
+            }
+            for (String word : words) {
+                if (word.startsWith("--from=")) {
+                    result.add(word.substring("--from=".length()));
+                }
+            }
+        }
+        result.remove("scratch");
+        return result;
+    }
+
+    /**
+     * A stage uses a file in the build context if the stage refers to the file, the file name,
+     * or the top-level directory of the file, like patches/ for all patches.
+     */
+    private static boolean references(String text, String file) {
+        if (file.equals("Dockerfile")) {
+            return false;
+        }
+        int slash = file.indexOf('/');
+        String name = file.substring(file.lastIndexOf('/') + 1);
+        return text.contains(file) || text.contains(name) || (slash > 0
+            && Pattern.compile("(^|[\\s/])" + Pattern.quote(file.substring(0, slash)) + "([\\s/]|$)",
+            Pattern.MULTILINE).matcher(text).find());
+    }
+
+    private static int indexOfIgnoreCase(List<String> words, String value) {
+        for (int i = 0; i < words.size(); i++) {
+            if (value.equalsIgnoreCase(words.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The memoized image for each stage that can be memoized, in the order of the Dockerfile.
+     * @return image names, by stage name
+     */
+    public Map<String, String> images() {
+        return Collections.unmodifiableMap(images);
+    }
+
+    /**
+     * Render the Dockerfile with some stages replaced by their memoized image.
+     * @param memoized the stages that start from the memoized image
+     * @param target   the last stage to include, or null for all stages
+     * @return the Dockerfile
+     */
+    public String dockerfile(Set<String> memoized, String target) {
+        StringBuilder result = new StringBuilder(preamble);
+        for (Map.Entry<String, String> stage : stages.entrySet()) {
+            if (memoized.contains(stage.getKey())) {
+                result.append("FROM ").append(images.get(stage.getKey())).append(" as ")
+                    .append(stage.getKey()).append("\n\n");
+            } else {
+                result.append(stage.getValue());
+            }
+            if (stage.getKey().equals(target)) {
+                break;
+            }
+        }
+        return result.toString();
+    }
+}
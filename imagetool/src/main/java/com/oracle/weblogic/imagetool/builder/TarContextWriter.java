@@ -0,0 +1,176 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+
+/**
+ * Writes a build context directory as a tar stream, so that the context can be piped to the builder
+ * (docker build -) without creating a copy of the context on disk.
+ * Symbolic links in the context directory are followed, and the content of the linked file is written to the
+ * stream.  That allows large installers and patches to be added to the context as links into the cache.
+ */
+public class TarContextWriter {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(TarContextWriter.class);
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    // largest size that fits in the 11 octal digits of the ustar size field
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+
+    private TarContextWriter() {
+        // static methods only
+    }
+
+    /**
+     * Write the content of the context directory to the output stream as a tar archive.
+     * The output stream is not closed.
+     *
+     * @param contextDir the build context directory
+     * @param out        the stream to write to, like the stdin of the build process
+     * @throws IOException if a file cannot be read or the stream cannot be written
+     */
+    public static void write(Path contextDir, OutputStream out) throws IOException {
+        logger.entering(contextDir);
+        List<Path> entries;
+        try (Stream<Path> walk = Files.walk(contextDir, FileVisitOption.FOLLOW_LINKS)) {
+            entries = walk.filter(p -> !p.equals(contextDir)).sorted().collect(Collectors.toList());
+        }
+
+        long total = 0;
+        for (Path entry : entries) {
+            String name = contextDir.relativize(entry).toString().replace('\\', '/');
+            if (Files.isDirectory(entry)) {
+                writeHeader(out, name + "/", 0, 040755, '5', Files.getLastModifiedTime(entry).toMillis());
+            } else {
+                long size = Files.size(entry);
+                int mode = Files.isExecutable(entry) ? 0100755 : 0100644;
+                writeHeader(out, name, size, mode, '0', Files.getLastModifiedTime(entry).toMillis());
+                try (InputStream in = Files.newInputStream(entry)) {
+                    long copied = copy(in, out);
+                    if (copied != size) {
+                        throw new IOException("File changed while writing build context: " + entry);
+                    }
+                }
+                pad(out, size);
+                total += size;
+            }
+        }
+        // end of archive is marked by two empty blocks
+        out.write(new byte[BLOCK_SIZE * 2]);
+        out.flush();
+        logger.exiting(total);
+    }
+
+    private static void writeHeader(OutputStream out, String name, long size, int mode, char type, long mtime)
+        throws IOException {
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        StringBuilder pax = new StringBuilder();
+        if (nameBytes.length > NAME_LENGTH) {
+            pax.append(paxRecord("path", name));
+        }
+        if (size > MAX_USTAR_SIZE) {
+            pax.append(paxRecord("size", Long.toString(size)));
+        }
+        if (pax.length() > 0) {
+            // extended header with the values that do not fit in the ustar header
+            byte[] paxBytes = pax.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(header("PaxHeaders/" + truncate(name), paxBytes.length, 0100644, 'x', mtime));
+            out.write(paxBytes);
+            pad(out, paxBytes.length);
+        }
+        out.write(header(truncate(name), Math.min(size, MAX_USTAR_SIZE), mode, type, mtime));
+    }
+
+    private static byte[] header(String name, long size, int mode, char type, long mtime) {
+        byte[] header = new byte[BLOCK_SIZE];
+        put(header, 0, NAME_LENGTH, name.getBytes(StandardCharsets.UTF_8));
+        putOctal(header, 100, 8, mode);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, mtime / 1000);
+        header[156] = (byte) type;
+        put(header, 257, 6, "ustar\0".getBytes(StandardCharsets.US_ASCII));
+        put(header, 263, 2, "00".getBytes(StandardCharsets.US_ASCII));
+
+        // checksum is calculated with the checksum field set to spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        putOctal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /**
+     * Format a PAX extended header record, "length key=value\n", where length includes itself.
+     */
+    static String paxRecord(String key, String value) {
+        int payload = key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int length = payload + Integer.toString(payload).length();
+        if (Integer.toString(length).length() != Integer.toString(payload).length()) {
+            length++;
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+
+    private static String truncate(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= NAME_LENGTH) {
+            return name;
+        }
+        return new String(bytes, bytes.length - NAME_LENGTH, NAME_LENGTH, StandardCharsets.UTF_8);
+    }
+
+    private static void put(byte[] header, int offset, int length, byte[] value) {
+        System.arraycopy(value, 0, header, offset, Math.min(length, value.length));
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        // zero padded octal, terminated by NUL
+        String octal = Long.toOctalString(value);
+        StringBuilder field = new StringBuilder();
+        for (int i = octal.length(); i < length - 1; i++) {
+            field.append('0');
+        }
+        field.append(octal);
+        put(header, offset, length - 1, field.toString().getBytes(StandardCharsets.US_ASCII));
+        header[offset + length - 1] = 0;
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long count = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            count += read;
+        }
+        return count;
+    }
+
+    private static void pad(OutputStream out, long size) throws IOException {
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder != 0) {
+            out.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+}
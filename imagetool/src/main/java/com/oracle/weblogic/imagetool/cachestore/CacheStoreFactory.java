@@ -18,7 +18,7 @@ public class CacheStoreFactory {
      * Get the cache store.
      * @return the cached instance of the file cache store
      */
-    public static CacheStore cache() throws CacheStoreException {
+    public static synchronized CacheStore cache() throws CacheStoreException {
         if (store == null) {
             store = new FileCacheStore();
         }
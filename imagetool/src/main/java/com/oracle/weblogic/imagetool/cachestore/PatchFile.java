@@ -5,18 +5,24 @@ package com.oracle.weblogic.imagetool.cachestore;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.oracle.weblogic.imagetool.api.model.CachedFile;
 import com.oracle.weblogic.imagetool.aru.AruPatch;
 import com.oracle.weblogic.imagetool.aru.AruUtil;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.BuildReport;
 import com.oracle.weblogic.imagetool.util.Utils;
 
 public class PatchFile extends CachedFile {
 
     private static final LoggingFacade logger = LoggingFactory.getLogger(PatchFile.class);
 
+    // one lock per cache key, so that concurrent builds do not download the same patch twice
+    private static final Map<String, Object> resolveLocks = new ConcurrentHashMap<>();
+
     private final AruPatch aruPatch;
     private final String userId;
     private final String password;
@@ -60,18 +66,24 @@ public class PatchFile extends CachedFile {
         String filePath;
         boolean fileExists;
 
-        filePath = cacheStore.getValueFromCache(cacheKey);
-        fileExists = isFileOnDisk(filePath);
-
-        if (fileExists) {
-            logger.info("IMG-0017", getKey(), filePath);
-        } else {
-            logger.info("IMG-0061", getKey(), aruPatch.patchId());
-
-            if (offlineMode()) {
-                throw new FileNotFoundException(Utils.getMessage("IMG-0056", getKey()));
+        try (BuildReport.Phase phase = BuildReport.phase("PatchFile.resolve")) {
+            synchronized (resolveLocks.computeIfAbsent(cacheKey, k -> new Object())) {
+                filePath = cacheStore.getValueFromCache(cacheKey);
+                fileExists = isFileOnDisk(filePath);
+
+                if (fileExists) {
+                    BuildReport.count("cacheHits", 1);
+                    logger.info("IMG-0017", getKey(), filePath);
+                } else {
+                    BuildReport.count("cacheMisses", 1);
+                    logger.info("IMG-0061", getKey(), aruPatch.patchId());
+
+                    if (offlineMode()) {
+                        throw new FileNotFoundException(Utils.getMessage("IMG-0056", getKey()));
+                    }
+                    filePath = downloadPatch(cacheStore);
+                }
             }
-            filePath = downloadPatch(cacheStore);
         }
 
         logger.exiting(filePath);
@@ -0,0 +1,111 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Properties;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+
+/**
+ * Results of image probes, stored in the cache directory.
+ * Images are immutable, so the result of a probe script only depends on the image ID and the script.
+ * When a tag is moved to a new image, the image ID changes, and the image is probed again.
+ */
+public class ProbeCache {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(ProbeCache.class);
+    private static final String DIRECTORY = "probes";
+    private static final int SCRIPT_HASH_LENGTH = 16;
+
+    private final Path directory;
+
+    /**
+     * Probe results stored in the given directory.
+     * @param directory the directory for the probe results
+     */
+    public ProbeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Probe results stored in the probes folder of the cache directory.
+     * @return the probe cache, or null if the cache directory is not available
+     */
+    public static ProbeCache fromCacheStore() {
+        try {
+            return new ProbeCache(Paths.get(CacheStoreFactory.cache().getCacheDir(), DIRECTORY));
+        } catch (CacheStoreException e) {
+            logger.fine("Probe results are not cached", e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the stored result of a probe.
+     * @param imageId the ID of the image
+     * @param script  the probe command
+     * @return the result of the probe, or null if the probe has not been run for this image
+     */
+    public Properties get(String imageId, String script) {
+        Path file = file(imageId, script);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        Properties result = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            result.load(in);
+            return result;
+        } catch (IOException e) {
+            logger.fine("Unable to read probe result " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the result of a probe.  Failures are logged and ignored, the image is probed again next time.
+     * @param imageId the ID of the image
+     * @param script  the probe command
+     * @param result  the result of the probe
+     */
+    public void put(String imageId, String script, Properties result) {
+        Path file = file(imageId, script);
+        try {
+            Files.createDirectories(directory);
+            // concurrent runs of the tool may probe the same image, the file is replaced atomically
+            Path temp = Files.createTempFile(directory, "probe", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                result.store(out, imageId);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.fine("Unable to store probe result " + file, e);
+        }
+    }
+
+    private Path file(String imageId, String script) {
+        String id = imageId.substring(imageId.indexOf(':') + 1);
+        return directory.resolve(id + "-" + hash(script) + ".properties");
+    }
+
+    private static String hash(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(script.getBytes(StandardCharsets.UTF_8));
+            return Utils.toHexString(digest).substring(0, SCRIPT_HASH_LENGTH).toLowerCase(Locale.ROOT);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -7,11 +7,15 @@ import java.io.PrintWriter;
 
 import com.oracle.weblogic.imagetool.api.model.CommandResponse;
 import com.oracle.weblogic.imagetool.cli.cache.CacheCLI;
+import com.oracle.weblogic.imagetool.cli.menu.BuildAll;
 import com.oracle.weblogic.imagetool.cli.menu.CreateAuxImage;
 import com.oracle.weblogic.imagetool.cli.menu.CreateImage;
+import com.oracle.weblogic.imagetool.cli.menu.DiffImages;
 import com.oracle.weblogic.imagetool.cli.menu.InspectImage;
 import com.oracle.weblogic.imagetool.cli.menu.RebaseImage;
+import com.oracle.weblogic.imagetool.cli.menu.ScanImages;
 import com.oracle.weblogic.imagetool.cli.menu.UpdateImage;
+import com.oracle.weblogic.imagetool.logging.AsyncHandler;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import picocli.CommandLine;
@@ -32,7 +36,10 @@ import static picocli.CommandLine.ExitCode;
             CreateAuxImage.class,
             UpdateImage.class,
             RebaseImage.class,
-            InspectImage.class
+            InspectImage.class,
+            ScanImages.class,
+            DiffImages.class,
+            BuildAll.class
         },
         requiredOptionMarker = '*',
         abbreviateSynopsis = true,
@@ -48,6 +55,8 @@ public class ImageTool {
       * @param args command line arguments.
      */
     public static void main(String[] args) {
+        // write the records queued by asynchronous log handlers before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncHandler::closeAll, "imagetool-log-shutdown"));
         CommandResponse response = run(ImageTool.class,
             new PrintWriter(System.out, true),
             new PrintWriter(System.err, true),
@@ -83,7 +92,10 @@ public class ImageTool {
         } else {
             CommandLine commandLine = getSubcommand(cmd);
             response = commandLine.getExecutionResult();
-            if (response == null) {
+            if (response == null && exit != ExitCode.OK) {
+                // the command failed with an exception that was reported by picocli
+                response = new CommandResponse(exit, null);
+            } else if (response == null) {
                 logger.fine("User requested usage by using help command");
                 response = CommandResponse.success(null);
             }
@@ -0,0 +1,368 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.aru.AruUtil;
+import com.oracle.weblogic.imagetool.builder.BuildCommand;
+import com.oracle.weblogic.imagetool.cli.ImageTool;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+@Command(
+    name = "buildAll",
+    description = "Build a set of images, described in a build specification file, concurrently",
+    requiredOptionMarker = '*',
+    abbreviateSynopsis = true
+)
+public class BuildAll implements Callable<CommandResponse> {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(BuildAll.class);
+
+    private static final List<String> PROXY_OPTIONS =
+        Arrays.asList("--httpProxyUrl", "--httpsProxyUrl", "--nonProxyHosts");
+
+    private final Object diskMonitor = new Object();
+    private int running = 0;
+
+    @Override
+    public CommandResponse call() throws Exception {
+        logger.entering(specFile);
+        List<Job> jobs;
+        try {
+            jobs = parseSpec(new String(Files.readAllBytes(specFile), StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException | JSONException e) {
+            return CommandResponse.error("IMG-0119", specFile, e.getMessage());
+        }
+        CommandResponse response = runJobs(jobs, new PrintWriter(System.out, true));
+        logger.exiting(response.getStatus());
+        return response;
+    }
+
+    /**
+     * Run the jobs, and print a summary when the last job completes.
+     * A job that fails, or throws, only affects the jobs that depend on it.
+     * @param jobs the jobs to run, sorted by {@link #parseSpec(String)}
+     * @param out  where the summary is printed
+     * @return an error if any job did not succeed
+     */
+    CommandResponse runJobs(List<Job> jobs, PrintWriter out) {
+        BuildCommand.limitConcurrentBuilds(maxBuilds);
+        AruUtil.limitConcurrentDownloads(maxDownloads);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallel));
+        try {
+            Map<String, CompletableFuture<Job>> futures = new ConcurrentHashMap<>();
+            for (Job job : jobs) {
+                // jobs are sorted, so the futures of the dependencies have already been created
+                CompletableFuture<?>[] dependencies = job.dependsOn.stream()
+                    .map(futures::get)
+                    .toArray(CompletableFuture<?>[]::new);
+                futures.put(job.name, CompletableFuture.allOf(dependencies)
+                    .thenApplyAsync(v -> execute(job, futures), executor));
+            }
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            executor.shutdownNow();
+            BuildCommand.limitConcurrentBuilds(0);
+            AruUtil.limitConcurrentDownloads(0);
+        }
+
+        printSummary(jobs, out);
+        long failed = jobs.stream().filter(j -> j.status != Status.SUCCEEDED).count();
+        if (failed > 0) {
+            return CommandResponse.error("IMG-0124", failed, jobs.size());
+        }
+        return CommandResponse.success("IMG-0125", jobs.size());
+    }
+
+    private Job execute(Job job, Map<String, CompletableFuture<Job>> futures) {
+        for (String dependency : job.dependsOn) {
+            if (futures.get(dependency).join().status != Status.SUCCEEDED) {
+                logger.warning("IMG-0122", job.name, dependency);
+                job.status = Status.SKIPPED;
+                job.message = Utils.getMessage("IMG-0122", job.name, dependency);
+                return job;
+            }
+        }
+
+        try {
+            reserveDiskSpace(job);
+        } catch (IOException | IllegalStateException e) {
+            job.status = Status.FAILED;
+            job.message = e.getMessage();
+            return job;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.status = Status.SKIPPED;
+            return job;
+        }
+
+        logger.info("IMG-0120", job.name, job.command, String.join(" ", job.args));
+        long start = System.nanoTime();
+        try {
+            CommandResponse response = runCommand(job);
+            job.status = response.getStatus() == 0 ? Status.SUCCEEDED : Status.FAILED;
+            job.message = response.getMessage();
+        } catch (RuntimeException e) {
+            logger.fine("**ERROR**", e);
+            job.status = Status.FAILED;
+            job.message = e.getMessage();
+        } finally {
+            job.seconds = (System.nanoTime() - start) / 1000000000L;
+            releaseDiskSpace();
+        }
+        logger.info("IMG-0121", job.name, job.status, job.seconds);
+        return job;
+    }
+
+    /**
+     * Run the command of a job in this process.
+     * @param job the job to run
+     * @return the response of the command
+     */
+    CommandResponse runCommand(Job job) {
+        return ImageTool.run(job.newCommand(),
+            new PrintWriter(System.out, true),
+            new PrintWriter(System.err, true),
+            job.args.toArray(new String[0]));
+    }
+
+    /**
+     * Wait until there is enough free space in the build directory to start another job.
+     * Builds that are already running release space when they finish, so the wait ends when the space is
+     * available, or when no other build is running.
+     */
+    private void reserveDiskSpace(Job job) throws IOException, InterruptedException {
+        synchronized (diskMonitor) {
+            if (minFreeSpace > 0) {
+                Path buildDir = Paths.get(Utils.getBuildWorkingDir());
+                while (freeSpace(buildDir) < minFreeSpace && running > 0) {
+                    diskMonitor.wait();
+                }
+                if (freeSpace(buildDir) < minFreeSpace) {
+                    throw new IllegalStateException(Utils.getMessage("IMG-0123", buildDir, job.name, minFreeSpace));
+                }
+            }
+            running++;
+        }
+    }
+
+    private void releaseDiskSpace() {
+        synchronized (diskMonitor) {
+            running--;
+            diskMonitor.notifyAll();
+        }
+    }
+
+    private static long freeSpace(Path dir) {
+        try {
+            // free space in gigabytes
+            return Files.getFileStore(dir).getUsableSpace() / (1024L * 1024L * 1024L);
+        } catch (IOException e) {
+            logger.fine("Unable to determine free space for " + dir, e);
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void printSummary(List<Job> jobs, PrintWriter out) {
+        int nameWidth = "NAME".length();
+        for (Job job : jobs) {
+            nameWidth = Math.max(nameWidth, job.name.length());
+        }
+        String format = "%-" + nameWidth + "s  %-14s  %-9s  %8s  %s%n";
+        out.printf(format, "NAME", "COMMAND", "STATUS", "SECONDS", "MESSAGE");
+        for (Job job : jobs) {
+            out.printf(format, job.name, job.command, job.status,
+                job.status == Status.SKIPPED ? "-" : Long.toString(job.seconds),
+                job.message == null ? "" : job.message);
+        }
+        out.flush();
+    }
+
+    /**
+     * Parse and validate the build specification.
+     * @param json the content of the build specification file
+     * @return the jobs in the specification, sorted so that every job follows the jobs it depends on
+     * @throws IllegalArgumentException if the specification contains an unknown command, an unknown or
+     *     circular dependency, duplicate job names, or jobs with different proxy settings
+     */
+    static List<Job> parseSpec(String json) {
+        JSONArray array = new JSONObject(json).getJSONArray("jobs");
+        Map<String, Job> jobs = new LinkedHashMap<>();
+        Job first = null;
+        for (int i = 0; i < array.length(); i++) {
+            Job job = new Job(array.getJSONObject(i));
+            if (jobs.put(job.name, job) != null) {
+                throw new IllegalArgumentException("duplicate job name " + job.name);
+            }
+            // the proxy settings are system properties, shared by all the jobs that run in this process
+            if (first == null) {
+                first = job;
+            } else if (!first.proxyOptions().equals(job.proxyOptions())) {
+                throw new IllegalArgumentException("jobs " + first.name + " and " + job.name
+                    + " use different proxy settings, use the same " + String.join(", ", PROXY_OPTIONS)
+                    + " for all jobs");
+            }
+        }
+
+        // sort the jobs so that dependencies come first, and detect cycles (Kahn's algorithm)
+        Map<String, Integer> waitingOn = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (Job job : jobs.values()) {
+            for (String dependency : job.dependsOn) {
+                if (!jobs.containsKey(dependency)) {
+                    throw new IllegalArgumentException("job " + job.name + " depends on unknown job " + dependency);
+                }
+                dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(job.name);
+            }
+            waitingOn.put(job.name, job.dependsOn.size());
+        }
+        Deque<String> ready = new ArrayDeque<>();
+        jobs.values().stream().filter(j -> j.dependsOn.isEmpty()).forEach(j -> ready.add(j.name));
+        List<Job> result = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String name = ready.remove();
+            result.add(jobs.get(name));
+            for (String dependent : dependents.getOrDefault(name, Collections.emptyList())) {
+                if (waitingOn.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (result.size() != jobs.size()) {
+            List<String> cycle = new ArrayList<>(jobs.keySet());
+            result.forEach(j -> cycle.remove(j.name));
+            throw new IllegalArgumentException("circular dependency between jobs " + cycle);
+        }
+        return result;
+    }
+
+    enum Status {
+        SKIPPED,
+        SUCCEEDED,
+        FAILED
+    }
+
+    static class Job {
+        final String name;
+        final String command;
+        final List<String> args = new ArrayList<>();
+        final List<String> dependsOn = new ArrayList<>();
+        Status status = Status.SKIPPED;
+        String message;
+        long seconds;
+
+        Job(JSONObject json) {
+            name = json.getString("name");
+            command = json.getString("command");
+            // validate the command name
+            newCommand();
+            JSONArray jsonArgs = json.optJSONArray("args");
+            if (jsonArgs != null) {
+                for (int i = 0; i < jsonArgs.length(); i++) {
+                    args.add(jsonArgs.getString(i));
+                }
+            }
+            JSONArray jsonDependsOn = json.optJSONArray("dependsOn");
+            if (jsonDependsOn != null) {
+                for (int i = 0; i < jsonDependsOn.length(); i++) {
+                    dependsOn.add(jsonDependsOn.getString(i));
+                }
+            }
+        }
+
+        /**
+         * The proxy options of this job, like --httpsProxyUrl, with their values.
+         */
+        Map<String, String> proxyOptions() {
+            Map<String, String> result = new HashMap<>();
+            for (int i = 0; i < args.size(); i++) {
+                String arg = args.get(i);
+                int equals = arg.indexOf('=');
+                String name = equals < 0 ? arg : arg.substring(0, equals);
+                if (PROXY_OPTIONS.contains(name) && equals > 0) {
+                    result.put(name, arg.substring(equals + 1));
+                } else if (PROXY_OPTIONS.contains(name)) {
+                    result.put(name, i + 1 < args.size() ? args.get(++i) : null);
+                }
+            }
+            return result;
+        }
+
+        Object newCommand() {
+            switch (command) {
+                case "create":
+                    return new CreateImage();
+                case "createAuxImage":
+                    return new CreateAuxImage();
+                case "update":
+                    return new UpdateImage();
+                case "rebase":
+                    return new RebaseImage();
+                default:
+                    throw new IllegalArgumentException("unsupported command " + command + " for job " + name);
+            }
+        }
+    }
+
+    @Parameters(
+        index = "0",
+        paramLabel = "SPEC_FILE",
+        description = "JSON file with the list of jobs to run, and the dependencies between them"
+    )
+    private Path specFile;
+
+    @Option(
+        names = {"--parallel"},
+        description = "Maximum number of jobs to run at the same time. Default: ${DEFAULT-VALUE}"
+    )
+    private int parallel = 4;
+
+    @Option(
+        names = {"--maxBuilds"},
+        description = "Maximum number of image builds to run at the same time. Default: ${DEFAULT-VALUE}"
+    )
+    private int maxBuilds = 2;
+
+    @Option(
+        names = {"--maxDownloads"},
+        description = "Maximum number of patches to download at the same time. Default: ${DEFAULT-VALUE}"
+    )
+    private int maxDownloads = 2;
+
+    @Option(
+        names = {"--minFreeSpace"},
+        paramLabel = "<GB>",
+        description = "Free space, in gigabytes, required in the build directory to start a job. Default: none"
+    )
+    private long minFreeSpace = 0;
+}
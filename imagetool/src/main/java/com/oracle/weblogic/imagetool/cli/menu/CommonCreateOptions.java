@@ -3,19 +3,24 @@
 
 package com.oracle.weblogic.imagetool.cli.menu;
 
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
-import javax.xml.xpath.XPathExpressionException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.oracle.weblogic.imagetool.api.model.CachedFile;
-import com.oracle.weblogic.imagetool.aru.AruException;
+import com.oracle.weblogic.imagetool.aru.AruPatch;
+import com.oracle.weblogic.imagetool.inspect.ImageMetadata;
 import com.oracle.weblogic.imagetool.installer.InstallerType;
 import com.oracle.weblogic.imagetool.installer.MiddlewareInstall;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import com.oracle.weblogic.imagetool.util.Constants;
+import com.oracle.weblogic.imagetool.util.TaskGraph;
 import com.oracle.weblogic.imagetool.util.Utils;
 import picocli.CommandLine.Option;
 
@@ -27,33 +32,71 @@ public class CommonCreateOptions extends CommonPatchingOptions {
 
     /**
      * Copy the Java and Middleware installers into the build context directory and set Dockerfile options accordingly.
+     * The base image is probed first, to find out which installers and patches are needed.  The installers are then
+     * staged while ARU patches are resolved and downloaded.  The tasks only stage files, the Dockerfile options are
+     * set by this thread once all the tasks have completed.
      */
-    void prepareNewImage() throws IOException, InterruptedException, XPathExpressionException, AruException {
+    void prepareNewImage() throws Exception {
 
         logger.entering();
+        // create the build context directory before any of the tasks need it
+        String contextDir = buildDir();
         copyOptionsFromImage();
-
-        if (dockerfileOptions.installJava()) {
-            CachedFile jdk = new CachedFile(InstallerType.JDK, jdkVersion);
-            Path installerPath = jdk.copyFile(cache(), buildDir());
-            dockerfileOptions.setJavaInstaller(installerPath.getFileName().toString());
+        boolean installJava = dockerfileOptions.installJava();
+        boolean installMiddleware = dockerfileOptions.installMiddleware();
+        if (!installMiddleware && applyingPatches()) {
+            // user intended to apply patches, but used a fromImage that already had an Oracle Home
+            // The template does not support (yet) patches on existing Oracle Homes due to image size impact
+            logger.warning("IMG-0093");
         }
 
-        if (dockerfileOptions.installMiddleware()) {
-            MiddlewareInstall install =
-                new MiddlewareInstall(getInstallerType(), installerVersion, installerResponseFiles);
-            install.copyFiles(cache(), buildDir());
-            dockerfileOptions.setMiddlewareInstall(install);
+        AtomicReference<Path> jdkInstaller = new AtomicReference<>();
+        AtomicReference<MiddlewareInstall> middlewareInstall = new AtomicReference<>();
+        AtomicReference<List<AruPatch>> aruPatches = new AtomicReference<>(Collections.emptyList());
+        AtomicReference<String> opatchInstaller = new AtomicReference<>();
+
+        new TaskGraph()
+            .add("jdk", () -> {
+                if (installJava) {
+                    CachedFile jdk = new CachedFile(InstallerType.JDK, jdkVersion);
+                    jdkInstaller.set(jdk.copyFile(cache(), contextDir, streamContext));
+                }
+            })
+            .add("middleware", () -> {
+                if (installMiddleware) {
+                    MiddlewareInstall install =
+                        new MiddlewareInstall(getInstallerType(), installerVersion, installerResponseFiles);
+                    install.copyFiles(cache(), contextDir, streamContext);
+                    middlewareInstall.set(install);
+                }
+            })
+            .add("aru", () -> {
+                // ARU is only contacted for patches when the image gets a new Oracle Home
+                if (installMiddleware) {
+                    aruPatches.set(resolvePatches(Collections.emptyList()));
+                }
+            })
+            .add("patches", () -> stagePatchFiles(aruPatches.get()), "aru")
+            .add("opatch", () -> {
+                // If patching, patch OPatch first
+                if (applyingPatches() && shouldUpdateOpatch()) {
+                    opatchInstaller.set(prepareOpatchInstaller(contextDir, opatchBugNumber));
+                }
+            }, "aru")
+            .run();
+
+        if (jdkInstaller.get() != null) {
+            dockerfileOptions.setJavaInstaller(jdkInstaller.get().getFileName().toString());
+        }
+        if (middlewareInstall.get() != null) {
+            dockerfileOptions.setMiddlewareInstall(middlewareInstall.get());
         } else {
             dockerfileOptions.setWdtBase("os_update");
         }
-
-        // resolve required patches
-        handlePatchFiles();
-
-        // If patching, patch OPatch first
-        if (applyingPatches() && shouldUpdateOpatch()) {
-            prepareOpatchInstaller(buildDir(), opatchBugNumber);
+        setPatchOptions(aruPatches.get());
+        if (opatchInstaller.get() != null) {
+            dockerfileOptions.setOPatchPatchingEnabled();
+            dockerfileOptions.setOPatchFileName(opatchInstaller.get());
         }
 
         Utils.setOracleHome(installerResponseFiles, dockerfileOptions);
@@ -64,9 +107,9 @@ public class CommonCreateOptions extends CommonPatchingOptions {
         // Set the inventory location, so that it will be copied
         if (inventoryPointerFile != null) {
             Utils.setInventoryLocation(inventoryPointerFile, dockerfileOptions);
-            Utils.copyLocalFile(Paths.get(inventoryPointerFile), Paths.get(buildDir(), "/oraInst.loc"));
+            Utils.copyLocalFile(Paths.get(inventoryPointerFile), Paths.get(contextDir, "/oraInst.loc"));
         } else {
-            Utils.copyResourceAsFile("/response-files/oraInst.loc", buildDir());
+            Utils.copyResourceAsFile("/response-files/oraInst.loc", contextDir);
         }
         logger.exiting();
     }
@@ -75,6 +118,38 @@ public class CommonCreateOptions extends CommonPatchingOptions {
         return installerVersion;
     }
 
+    @Override
+    ImageMetadata imageMetadata() {
+        Properties base = fromImageProperties();
+        ImageMetadata result = new ImageMetadata(base)
+            .set("packageManager", base == null ? dockerfileOptions.packageManager().name()
+                : base.getProperty("packageManager"))
+            .set("javaHome", dockerfileOptions.java_home())
+            .set("oracleHome", dockerfileOptions.oracle_home());
+        if (dockerfileOptions.installJava()) {
+            result.set("javaVersion", javaVersion(jdkVersion));
+        }
+        if (dockerfileOptions.installMiddleware()) {
+            result.set("wlsVersion", installerVersion)
+                .set("oracleHomeUser", dockerfileOptions.userid())
+                .set("oracleHomeGroup", dockerfileOptions.groupid())
+                .set("oracleInstalledProducts", getInstallerType().productList())
+                .set("opatchVersion", installedOpatchVersion());
+        }
+        return result;
+    }
+
+    /**
+     * The version reported by java -version for a JDK installer version, like 1.8.0_202 for 8u202.
+     */
+    static String javaVersion(String jdkVersion) {
+        Matcher matcher = Pattern.compile("^(\\d+)u(\\d+)$").matcher(jdkVersion);
+        if (matcher.matches()) {
+            return "1." + matcher.group(1) + ".0_" + matcher.group(2);
+        }
+        return jdkVersion;
+    }
+
     @Option(
         names = {"--version"},
         description = "Installer version. Default: ${DEFAULT-VALUE}",
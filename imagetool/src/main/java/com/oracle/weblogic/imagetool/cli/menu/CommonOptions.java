@@ -10,20 +10,36 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.oracle.weblogic.imagetool.api.model.CommandResponse;
 import com.oracle.weblogic.imagetool.aru.InvalidCredentialException;
 import com.oracle.weblogic.imagetool.builder.BuildCommand;
+import com.oracle.weblogic.imagetool.builder.Builders;
+import com.oracle.weblogic.imagetool.builder.CacheLocation;
+import com.oracle.weblogic.imagetool.builder.EngineClient;
+import com.oracle.weblogic.imagetool.builder.ImageInfo;
+import com.oracle.weblogic.imagetool.builder.InputHash;
+import com.oracle.weblogic.imagetool.builder.StageMemo;
 import com.oracle.weblogic.imagetool.cli.HelpVersionProvider;
+import com.oracle.weblogic.imagetool.inspect.ImageMetadata;
 import com.oracle.weblogic.imagetool.inspect.OperatingSystemProperties;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import com.oracle.weblogic.imagetool.util.AdditionalBuildCommands;
+import com.oracle.weblogic.imagetool.util.BuildReport;
 import com.oracle.weblogic.imagetool.util.Constants;
 import com.oracle.weblogic.imagetool.util.DockerfileOptions;
 import com.oracle.weblogic.imagetool.util.InvalidPatchIdFormatException;
@@ -39,11 +55,16 @@ public abstract class CommonOptions {
     private static final LoggingFacade logger = LoggingFactory.getLogger(CommonOptions.class);
     private static final String FILESFOLDER = "files";
     public static final String FROM_IMAGE_LABEL = "<image name>";
+    private static final List<String> BUILDKIT_NETWORKS = Arrays.asList("default", "host", "none");
 
     DockerfileOptions dockerfileOptions;
     private String buildDirectory = null;
     private String nonProxyHosts = null;
     private String buildId;
+    private BuildReport buildReport;
+    private EngineClient engineClient;
+    private Properties fromImageProperties;
+    private final Map<String, CompletableFuture<Properties>> imageProbes = new ConcurrentHashMap<>();
 
     private void handleChown() {
         if (!isChownSet()) {
@@ -98,6 +119,49 @@ public abstract class CommonOptions {
     }
 
     void runDockerCommand(String dockerfile, BuildCommand command) throws IOException, InterruptedException {
+        // additional build commands can change anything in the image
+        ImageMetadata metadata = additionalBuildCommandsPath == null ? imageMetadata() : null;
+        (metadata == null ? ImageMetadata.unknown() : metadata.labels()).forEach(command::label);
+
+        if (skipUnchanged && !dryRun) {
+            // the build ID changes for every build, and is not an input of the build
+            String inputHash = InputHash.compute(dockerfile.replace(buildId(), ""), Paths.get(buildDir()),
+                command.buildArgs(), image -> {
+                    ImageInfo info = inspectImage(image);
+                    return info == null ? null : info.id();
+                });
+            logger.fine("Build input hash: {0}", inputHash);
+            if (inputHash != null) {
+                if (buildReport != null) {
+                    buildReport.attribute("inputHash", inputHash);
+                }
+                if (reuseImage(inputHash)) {
+                    return;
+                }
+                command.label(InputHash.LABEL, inputHash);
+            }
+        }
+
+        if (reuseStages && !dryRun) {
+            dockerfile = buildStages(dockerfile);
+        }
+
+        CacheLocation exportCache = null;
+        if (useCacheLocations()) {
+            // the build ID changes for every build, and is not part of the cache key
+            String key = CacheLocation.key(dockerfile.replace(buildId(), ""));
+            logger.fine("Build cache key: {0}", key);
+            if (buildReport != null) {
+                buildReport.attribute("cacheKey", key);
+            }
+            for (String location : cacheFrom) {
+                CacheLocation.parse(location).importSpecs(key).forEach(command::cacheFrom);
+            }
+            if (cacheTo != null) {
+                exportCache = CacheLocation.parse(cacheTo);
+                command.cacheTo(exportCache.exportSpec(key));
+            }
+        }
         logger.info("IMG-0078", command.toString());
 
         if (dryRun) {
@@ -106,23 +170,69 @@ public abstract class CommonOptions {
             System.out.println("########## END DOCKERFILE ##########");
         } else {
             command.run(dockerLog);
+            if (exportCache != null) {
+                exportCache.rotate();
+            }
         }
     }
 
 
+    /**
+     * The properties of the new image, that are written as image labels so that the image can be inspected
+     * without running a container.
+     * @return the properties, or null if the properties of the new image are not known
+     */
+    ImageMetadata imageMetadata() {
+        return null;
+    }
+
+    /**
+     * The properties of the --fromImage, from copyOptionsFromImage().
+     * @return the properties, or null if there is no --fromImage
+     */
+    Properties fromImageProperties() {
+        return fromImageProperties;
+    }
+
+    /**
+     * Set the WDT properties of the new image, when WDT is added by this build.
+     * @param metadata   the properties of the new image
+     * @param wdtOptions the WDT options of the command
+     */
+    void setWdtMetadata(ImageMetadata metadata, WdtBaseOptions wdtOptions) {
+        if (!dockerfileOptions.isWdtEnabled()) {
+            return;
+        }
+        boolean modelOnly = dockerfileOptions.modelOnly();
+        metadata.set("domainHome", dockerfileOptions.domain_home())
+            .set("wdtHome", dockerfileOptions.wdt_home())
+            .set("wdtModelHome", modelOnly ? dockerfileOptions.wdt_model_home() : null)
+            .set("wdtModelOnly", modelOnly ? "true" : null);
+        if (!wdtOptions.skipWdtInstaller()) {
+            metadata.set("wdtVersion", wdtOptions.installedWdtVersion());
+        }
+    }
+
     /**
      * Builds the options for docker build command.
      *
      * @return list of options
      */
     BuildCommand getInitialBuildCmd(String contextFolder) {
+        return newBuildCmd(contextFolder).tag(imageTag);
+    }
+
+    private BuildCommand newBuildCmd(String contextFolder) {
         logger.entering();
-        BuildCommand cmdBuilder = new BuildCommand(buildEngine, contextFolder);
+        BuildCommand cmdBuilder = new BuildCommand(Builders.detect(buildEngine), contextFolder, useLayerCache());
 
         cmdBuilder.forceRm(!skipcleanup)
-            .tag(imageTag)
             .network(buildNetwork)
             .pull(buildPull)
+            .buildKit(dockerfileOptions.useBuildKit())
+            .streamContext(streamContext)
+            .consoleMode(consoleMode())
+            .engineClient(engineClient())
             .buildArg("http_proxy", httpProxyUrl, httpProxyUrl != null && httpProxyUrl.contains("@"))
             .buildArg("https_proxy", httpsProxyUrl, httpsProxyUrl != null && httpsProxyUrl.contains("@"))
             .buildArg("no_proxy", nonProxyHosts);
@@ -131,6 +241,149 @@ public abstract class CommonOptions {
         return cmdBuilder;
     }
 
+    /**
+     * Build the memoized stages that are not available locally, and replace all memoized stages in the
+     * Dockerfile with their image.
+     * @param dockerfile the rendered Dockerfile
+     * @return the Dockerfile for the remaining stages
+     */
+    private String buildStages(String dockerfile) throws IOException, InterruptedException {
+        StageMemo memo = StageMemo.of(dockerfile, buildId(), Paths.get(buildDir()), image -> {
+            ImageInfo info = inspectImage(image);
+            return info == null ? null : info.id();
+        });
+        Path dockerfilePath = Paths.get(buildDir(), "Dockerfile");
+        Set<String> memoized = new HashSet<>();
+        for (Map.Entry<String, String> stage : memo.images().entrySet()) {
+            if (inspectImage(stage.getValue()) == null) {
+                logger.info("IMG-0137", stage.getKey(), stage.getValue());
+                Utils.writeFile(dockerfilePath, memo.dockerfile(memoized, stage.getKey()));
+                newBuildCmd(buildDir())
+                    .target(stage.getKey())
+                    .tag(stage.getValue())
+                    .label(StageMemo.LABEL, stage.getKey())
+                    .run(dockerLog);
+            } else {
+                logger.info("IMG-0138", stage.getKey(), stage.getValue());
+            }
+            memoized.add(stage.getKey());
+        }
+        String result = memo.dockerfile(memoized, null);
+        Utils.writeFile(dockerfilePath, result);
+        return result;
+    }
+
+    /**
+     * The Engine API client, when --engineApi is set.
+     * @return the client, or null if the builder executable should be used
+     */
+    synchronized EngineClient engineClient() {
+        if (engineApi && engineClient == null) {
+            engineClient = EngineClient.fromEnvironment();
+        }
+        return engineClient;
+    }
+
+    /**
+     * Use an existing image that was built from the same inputs, instead of building the image again.
+     * @param inputHash the input hash of this build
+     * @return true if the image tag refers to an image with the same inputs
+     */
+    private boolean reuseImage(String inputHash) {
+        if (imageTag == null) {
+            return false;
+        }
+        ImageInfo existing = inspectImage(imageTag);
+        if (existing != null && inputHash.equals(existing.label(InputHash.LABEL))) {
+            logger.info("IMG-0135", imageTag);
+            return true;
+        }
+        try {
+            String label = InputHash.LABEL + "=" + inputHash;
+            List<String> images = engineClient() != null
+                ? engineClient().findImages(label) : Builders.detect(buildEngine).findImages(label);
+            if (images.isEmpty()) {
+                return false;
+            }
+            if (engineClient() != null) {
+                engineClient().tagImage(images.get(0), imageTag);
+            } else {
+                Builders.detect(buildEngine).tagImage(images.get(0), imageTag);
+            }
+            logger.info("IMG-0136", imageTag, images.get(0));
+            return true;
+        } catch (IOException e) {
+            logger.fine("Unable to reuse an image with the same inputs", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Get the ID and labels of a local image, with the Engine API or the builder.
+     * @param image the image name or ID
+     * @return the image information, or null if the image is not available locally
+     */
+    ImageInfo inspectImage(String image) {
+        if (engineClient() == null) {
+            return Builders.detect(buildEngine).inspectImage(image);
+        }
+        try {
+            return engineClient().inspectImage(image);
+        } catch (IOException e) {
+            logger.fine("Unable to inspect " + image, e);
+            return null;
+        }
+    }
+
+    /**
+     * Import or export the build cache with --cacheFrom and --cacheTo.
+     * Only builders that can export the BuildKit cache are able to use cache locations.
+     */
+    private boolean useCacheLocations() {
+        if (cacheFrom.isEmpty() && cacheTo == null) {
+            return false;
+        }
+        return engineClient() == null && Builders.detect(buildEngine).supportsCacheExport();
+    }
+
+    /**
+     * Layers can be reused when the build cache is enabled, or imported from a cache location.
+     * Both require the same intermediate image labels for every build.
+     */
+    private boolean useLayerCache() {
+        return useBuildCache || useCacheLocations();
+    }
+
+    private BuildCommand.ConsoleMode consoleMode() {
+        if (quiet) {
+            return BuildCommand.ConsoleMode.QUIET;
+        } else if (progress) {
+            return BuildCommand.ConsoleMode.PROGRESS;
+        }
+        return BuildCommand.ConsoleMode.FULL;
+    }
+
+    /**
+     * Use BuildKit if the build engine supports it.
+     * BuildKit can only use the default, host, or none networks for RUN instructions.
+     *
+     * @return true if the Dockerfile and build command should use BuildKit
+     */
+    private boolean useBuildKit() {
+        if (engineApi) {
+            logger.fine("BuildKit not used with the Engine API");
+            return false;
+        }
+        if (buildNetwork != null && !BUILDKIT_NETWORKS.contains(buildNetwork)) {
+            logger.fine("BuildKit not used with build network {0}", buildNetwork);
+            return false;
+        }
+        return Builders.detect(buildEngine).supportsBuildKit();
+    }
+
     private void handleProxyUrls() throws IOException {
         httpProxyUrl = Utils.findProxyUrl(httpProxyUrl, Constants.HTTP);
         httpsProxyUrl = Utils.findProxyUrl(httpsProxyUrl, Constants.HTTPS);
@@ -138,7 +391,7 @@ public abstract class CommonOptions {
         Utils.setProxyIfRequired(httpProxyUrl, httpsProxyUrl, nonProxyHosts);
     }
 
-    String buildDir() throws IOException {
+    synchronized String buildDir() throws IOException {
         if (buildDirectory == null) {
             Path tmpDir = Files.createTempDirectory(Paths.get(Utils.getBuildWorkingDir()), "wlsimgbuilder_temp");
             buildDirectory = tmpDir.toAbsolutePath().toString();
@@ -159,20 +412,32 @@ public abstract class CommonOptions {
     void initializeOptions() throws InvalidCredentialException, IOException, InvalidPatchIdFormatException {
         logger.entering();
         buildId = UUID.randomUUID().toString();
-        logger.info(HelpVersionProvider.versionString());
-        logger.info("IMG-0016", buildId);
-        dockerfileOptions = new DockerfileOptions(buildId);
-        dockerfileOptions.setBaseImage(fromImage);
-
-        handleProxyUrls();
-        handleChown();
-        handleAdditionalBuildCommands();
-
-        if (kubernetesTarget == KubernetesTarget.OPENSHIFT) {
-            dockerfileOptions.setDomainGroupAsUser(true);
-            // if the user did not set the OS user:group, make the default oracle:root, instead of oracle:oracle
-            if (!isChownSet()) {
-                dockerfileOptions.setGroupId("root");
+        buildReport = new BuildReport()
+            .attribute("buildId", buildId)
+            .attribute("command", spec != null ? spec.name() : null)
+            .attribute("imageTag", imageTag);
+        BuildReport.attach(buildReport);
+        try (BuildReport.Phase phase = BuildReport.phase("initializeOptions")) {
+            logger.info(HelpVersionProvider.versionString());
+            logger.info("IMG-0016", buildId);
+            dockerfileOptions = new DockerfileOptions(buildId);
+            dockerfileOptions.setBaseImage(fromImage);
+            if ((!cacheFrom.isEmpty() || cacheTo != null) && !useCacheLocations()) {
+                logger.warning("IMG-0134", buildEngine);
+            }
+            dockerfileOptions.useBuildCache(useLayerCache());
+            dockerfileOptions.useBuildKit(useBuildKit());
+
+            handleProxyUrls();
+            handleChown();
+            handleAdditionalBuildCommands();
+
+            if (kubernetesTarget == KubernetesTarget.OPENSHIFT) {
+                dockerfileOptions.setDomainGroupAsUser(true);
+                // if the user did not set the OS user:group, make the default oracle:root, instead of oracle:oracle
+                if (!isChownSet()) {
+                    dockerfileOptions.setGroupId("root");
+                }
             }
         }
 
@@ -186,11 +451,17 @@ public abstract class CommonOptions {
      * @throws InterruptedException if an interrupt is received while trying to run a system command.
      */
     public void copyOptionsFromImage() throws IOException, InterruptedException {
+        try (BuildReport.Phase phase = BuildReport.phase("copyOptionsFromImage")) {
+            readOptionsFromImage();
+        }
+    }
+
+    private void readOptionsFromImage() throws IOException, InterruptedException {
         if (isOptionSet("--fromImage")) {
             logger.info("IMG-0002", fromImage);
 
-            Properties baseImageProperties = Utils.getBaseImageProperties(buildEngine, fromImage,
-                "/probe-env/inspect-image.sh", buildDir());
+            Properties baseImageProperties = probeImage(fromImage);
+            fromImageProperties = baseImageProperties;
 
             String existingJavaHome = baseImageProperties.getProperty("javaHome", null);
             if (existingJavaHome != null) {
@@ -227,6 +498,60 @@ public abstract class CommonOptions {
         }
     }
 
+    /**
+     * Start reading the properties of an image with probe-env/inspect-image.sh, unless the image is already
+     * being probed by this command.  Each probe runs in its own thread, from its own directory in the build
+     * context, so that the probes of different images run at the same time.
+     * @param image the image name
+     * @return the properties of the image, when the probe completes
+     */
+    CompletableFuture<Properties> probeImageAsync(String image) {
+        BuildReport report = BuildReport.current();
+        return imageProbes.computeIfAbsent(image, name -> CompletableFuture.supplyAsync(() -> {
+            BuildReport.attach(report);
+            try {
+                Path probeDir = Files.createTempDirectory(Paths.get(buildDir()), "probe");
+                try {
+                    return Utils.getBaseImageProperties(buildEngine, engineClient(), name,
+                        "/probe-env/inspect-image.sh", probeDir.toString(), inspectLayers);
+                } finally {
+                    Utils.deleteFilesRecursively(probeDir.toString());
+                }
+            } catch (IOException | InterruptedException e) {
+                throw new CompletionException(e);
+            } finally {
+                BuildReport.attach(null);
+            }
+        }, CommonOptions::startProbeThread));
+    }
+
+    private static void startProbeThread(Runnable probe) {
+        Thread thread = new Thread(probe, "imagetool-probe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Read the properties of an image with probe-env/inspect-image.sh, or wait for the probe that was
+     * started by {@link #probeImageAsync(String)}.
+     * @param image the image name
+     * @return the properties of the image
+     * @throws IOException          when the probe fails
+     * @throws InterruptedException when the probe is interrupted
+     */
+    Properties probeImage(String image) throws IOException, InterruptedException {
+        try {
+            return probeImageAsync(image).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     /**
      * Delete build context directory and remove all intermediate build images.
      *
@@ -234,11 +559,33 @@ public abstract class CommonOptions {
      * @throws InterruptedException when interrupted.
      */
     public void cleanup() throws IOException, InterruptedException {
-        if (skipcleanup) {
-            return;
+        try {
+            try (BuildReport.Phase phase = BuildReport.phase("cleanup")) {
+                if (!skipcleanup) {
+                    Utils.deleteFilesRecursively(buildDir());
+                    if (useBuildCache) {
+                        // intermediate images are the build cache, keep them for the next build
+                        logger.info("IMG-0118", buildEngine, DockerfileOptions.CACHED_BUILD_ID);
+                    } else {
+                        Utils.removeIntermediateDockerImages(buildEngine, engineClient(), buildId());
+                    }
+                }
+            }
+        } finally {
+            writeTimingReport();
+        }
+    }
+
+    private void writeTimingReport() {
+        BuildReport.attach(null);
+        if (timingReport != null && buildReport != null) {
+            try {
+                buildReport.write(timingReport);
+                logger.info("IMG-0126", timingReport);
+            } catch (IOException e) {
+                logger.warning("IMG-0127", timingReport, e.getMessage());
+            }
         }
-        Utils.deleteFilesRecursively(buildDir());
-        Utils.removeIntermediateDockerImages(buildEngine, buildId());
     }
 
     /**
@@ -325,6 +672,82 @@ public abstract class CommonOptions {
     )
     boolean skipcleanup = false;
 
+    @Option(
+        names = {"--useBuildCache"},
+        description = "Allow the builder to reuse layers from previous builds. Intermediate images are not removed."
+    )
+    boolean useBuildCache = false;
+
+    @Option(
+        names = {"--cacheFrom"},
+        paramLabel = "<cache>",
+        description = "Import the build cache from a local directory, a registry repository, or a BuildKit cache"
+            + " specification (type=...). Can be repeated. Requires Docker buildx."
+    )
+    private List<String> cacheFrom = new ArrayList<>();
+
+    @Option(
+        names = {"--cacheTo"},
+        paramLabel = "<cache>",
+        description = "Export the build cache to a local directory, a registry repository, or a BuildKit cache"
+            + " specification (type=...). Requires Docker buildx."
+    )
+    private String cacheTo;
+
+    @Option(
+        names = {"--skipUnchanged"},
+        description = "Do not build the image when a local image was built from the same Dockerfile, files,"
+            + " base images, and build arguments. The existing image is tagged, if needed."
+    )
+    private boolean skipUnchanged = false;
+
+    @Option(
+        names = {"--reuseStages"},
+        description = "Keep the OS update, JDK and middleware install stages as local images, and start later"
+            + " builds with the same stage inputs from those images."
+    )
+    private boolean reuseStages = false;
+
+    @Option(
+        names = {"--inspectLayers"},
+        description = "Inspect the base images by reading their layers from the builder (docker save), instead of"
+            + " running a container.  Falls back to a container if the layers cannot be read."
+    )
+    boolean inspectLayers = false;
+
+    @Option(
+        names = {"--streamContext"},
+        description = "Stream the build context to the builder instead of copying installers and patches"
+            + " into the build context folder."
+    )
+    boolean streamContext = false;
+
+    @Option(
+        names = {"--engineApi"},
+        description = "Send builds and image probes to the Docker or Podman Engine API at DOCKER_HOST,"
+            + " instead of running the builder executable."
+    )
+    private boolean engineApi = false;
+
+    @Option(
+        names = {"--quiet"},
+        description = "Do not write the builder output to the console."
+    )
+    private boolean quiet = false;
+
+    @Option(
+        names = {"--progress"},
+        description = "Write one line to the console for each completed build step, instead of the builder output."
+    )
+    private boolean progress = false;
+
+    @Option(
+        names = {"--timingReport"},
+        paramLabel = "<file.json>",
+        description = "Write the duration of each build phase, bytes moved, cache hits, and retries to a JSON file."
+    )
+    private Path timingReport;
+
     @Option(
         names = {"--chown"},
         paramLabel = "<owner:group>",
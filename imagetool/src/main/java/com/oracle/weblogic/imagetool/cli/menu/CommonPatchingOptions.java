@@ -10,7 +10,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import javax.xml.xpath.XPathExpressionException;
@@ -28,6 +27,7 @@ import com.oracle.weblogic.imagetool.cachestore.PatchFile;
 import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.BuildReport;
 import com.oracle.weblogic.imagetool.util.InvalidPatchIdFormatException;
 import com.oracle.weblogic.imagetool.util.Utils;
 import picocli.CommandLine.Option;
@@ -59,8 +59,10 @@ public abstract class CommonPatchingOptions extends CommonOptions {
         password = Utils.getPasswordFromInputs(passwordStr, passwordFile, passwordEnv);
 
         // if userid or password is provided, validate the pair of provided values
-        if ((userId != null || password != null) && !AruUtil.rest().checkCredentials(userId, password)) {
-            throw new InvalidCredentialException();
+        try (BuildReport.Phase phase = BuildReport.phase("checkCredentials")) {
+            if ((userId != null || password != null) && !AruUtil.rest().checkCredentials(userId, password)) {
+                throw new InvalidCredentialException();
+            }
         }
 
         Utils.validatePatchIds(patches, false);
@@ -102,39 +104,36 @@ public abstract class CommonPatchingOptions extends CommonOptions {
      * Process all patches requested by the user, if any.
      * Downloads and copies patch JARs to the build context directory.
      *
+     * @param installedPatches  a list of patches applied already installed on the target image.
      * @throws AruException     if an error occurs trying to read patch metadata from ARU.
      * @throws IOException      if a transport error occurs trying to access the Oracle REST services.
      * @throws XPathExpressionException when the payload from the REST service is not formatted as expected
      *                          or a partial response was returned.
      */
-    void handlePatchFiles() throws AruException, XPathExpressionException, IOException {
-        if (dockerfileOptions.installMiddleware()) {
-            handlePatchFiles(Collections.emptyList());
-        } else {
-            if (applyingPatches()) {
-                // user intended to apply patches, but used a fromImage that already had an Oracle Home
-                // The template does not support (yet) patches on existing Oracle Homes due to image size impact
-                logger.warning("IMG-0093");
-            }
-        }
+    void handlePatchFiles(List<InstalledPatch> installedPatches)
+        throws AruException, IOException, XPathExpressionException {
+        List<AruPatch> aruPatches = resolvePatches(installedPatches);
+        stagePatchFiles(aruPatches);
+        setPatchOptions(aruPatches);
     }
 
     /**
-     * Process all patches requested by the user, if any.
-     * Downloads and copies patch JARs to the build context directory.
+     * Select the ARU patches for all patches requested by the user, if any.
+     * Only the patch metadata is retrieved from ARU, the patch files are not downloaded.
      *
      * @param installedPatches  a list of patches applied already installed on the target image.
+     * @return the list of ARU patches to apply, or an empty list if no patches were requested.
      * @throws AruException     if an error occurs trying to read patch metadata from ARU.
      * @throws IOException      if a transport error occurs trying to access the Oracle REST services.
      * @throws XPathExpressionException when the payload from the REST service is not formatted as expected
      *                          or a partial response was returned.
      */
-    void handlePatchFiles(List<InstalledPatch> installedPatches)
+    List<AruPatch> resolvePatches(List<InstalledPatch> installedPatches)
         throws AruException, IOException, XPathExpressionException {
         logger.entering(getInstallerType(), installedPatches);
         if (!applyingPatches()) {
             logger.exiting("not applying patches");
-            return;
+            return new ArrayList<>();
         }
         String psuVersion = InstalledPatch.getPsuVersion(installedPatches);
 
@@ -186,6 +185,24 @@ public abstract class CommonPatchingOptions extends CommonOptions {
         }
 
         AruUtil.validatePatches(installedPatches, aruPatches, userId, password);
+        logger.exiting(aruPatches);
+        return aruPatches;
+    }
+
+    /**
+     * Copy the patch files for the selected ARU patches into the build context directory,
+     * downloading them from ARU if they are not already in the cache.
+     * The Dockerfile options are not changed, see {@link #setPatchOptions(List)}.
+     *
+     * @param aruPatches the patches selected by {@link #resolvePatches(List)}
+     * @throws IOException if a patch file cannot be downloaded or copied
+     */
+    void stagePatchFiles(List<AruPatch> aruPatches) throws IOException {
+        logger.entering(aruPatches);
+        if (aruPatches.isEmpty()) {
+            logger.exiting("no patches to stage");
+            return;
+        }
 
         String patchesFolderName = createPatchesTempDirectory().toAbsolutePath().toString();
         // copy the patch JARs to the Docker build context directory from the local cache, downloading them if needed
@@ -198,7 +215,8 @@ public abstract class CommonPatchingOptions extends CommonOptions {
                     if (patch.fileName() == null) {
                         patch.fileName(cacheFile.getName());
                     }
-                    Files.copy(Paths.get(patchLocation), Paths.get(patchesFolderName, cacheFile.getName()));
+                    Utils.linkOrCopyFile(Paths.get(patchLocation), Paths.get(patchesFolderName, cacheFile.getName()),
+                        streamContext);
                 } catch (FileAlreadyExistsException ee) {
                     logger.warning("IMG-0077", patchFile.getKey());
                 }
@@ -206,13 +224,21 @@ public abstract class CommonPatchingOptions extends CommonOptions {
                 logger.severe("IMG-0024", patchFile.getKey());
             }
         }
+        logger.exiting();
+    }
+
+    /**
+     * Enable patching in the Dockerfile for the patches that were staged.
+     *
+     * @param aruPatches the patches copied by {@link #stagePatchFiles(List)}
+     */
+    void setPatchOptions(List<AruPatch> aruPatches) {
         if (!aruPatches.isEmpty()) {
             dockerfileOptions
                 .setPatchingEnabled()
                 .setStrictPatchOrdering(strictPatchOrdering)
                 .setPatchList(aruPatches);
         }
-        logger.exiting();
     }
 
     /**
@@ -224,6 +250,12 @@ public abstract class CommonPatchingOptions extends CommonOptions {
      *         by the user.
      */
     List<AruPatch> getRecommendedPatchList() throws AruException {
+        try (BuildReport.Phase phase = BuildReport.phase("getRecommendedPatchList")) {
+            return findRecommendedPatches();
+        }
+    }
+
+    private List<AruPatch> findRecommendedPatches() throws AruException {
         // returned List object should be modifiable
         List<AruPatch> aruPatches = new ArrayList<>();
         if (!applyingRecommendedPatches()) {
@@ -270,17 +302,39 @@ public abstract class CommonPatchingOptions extends CommonOptions {
         return tmpPatchesDir;
     }
 
-    void prepareOpatchInstaller(String tmpDir, String opatchBugNumber)
+    /**
+     * Copy the OPatch installer into the build context directory, downloading it from ARU if it is not already
+     * in the cache.  The Dockerfile options are not changed, the caller enables the OPatch update with the
+     * returned file name.
+     *
+     * @return the file name of the OPatch installer in the build context directory
+     */
+    String prepareOpatchInstaller(String tmpDir, String opatchBugNumber)
         throws IOException, XPathExpressionException, AruException {
         logger.entering(opatchBugNumber);
-        String filePath = OPatchFile.getInstance(opatchBugNumber, userId, password, cache()).resolve(cache());
+        OPatchFile opatchFile = OPatchFile.getInstance(opatchBugNumber, userId, password, cache());
+        String filePath = opatchFile.resolve(cache());
         String filename = new File(filePath).getName();
-        Files.copy(Paths.get(filePath), Paths.get(tmpDir, filename));
-        dockerfileOptions.setOPatchPatchingEnabled();
-        dockerfileOptions.setOPatchFileName(filename);
+        Utils.linkOrCopyFile(Paths.get(filePath), Paths.get(tmpDir, filename), streamContext);
+        installedOpatchVersion = opatchFile.getVersion();
         logger.exiting(filename);
+        return filename;
     }
 
+    /**
+     * The version of OPatch that is installed by this build.
+     * @return the version, or null if OPatch is not updated
+     */
+    String installedOpatchVersion() {
+        return installedOpatchVersion;
+    }
+
+    void installedOpatchVersion(String value) {
+        installedOpatchVersion = value;
+    }
+
+    private String installedOpatchVersion;
+
     String getUserId() {
         return userId;
     }
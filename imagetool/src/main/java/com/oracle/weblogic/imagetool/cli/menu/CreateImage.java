@@ -8,6 +8,7 @@ import java.time.Instant;
 import java.util.concurrent.Callable;
 
 import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.inspect.ImageMetadata;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import com.oracle.weblogic.imagetool.util.Utils;
@@ -54,6 +55,13 @@ public class CreateImage extends CommonCreateOptions implements Callable<Command
         return successfulBuildResponse(startTime);
     }
 
+    @Override
+    ImageMetadata imageMetadata() {
+        ImageMetadata result = super.imageMetadata();
+        setWdtMetadata(result, wdtOptions);
+        return result;
+    }
+
     @ArgGroup(exclusive = false, heading = "WDT Options%n")
     private final WdtFullOptions wdtOptions = new WdtFullOptions();
 }
\ No newline at end of file
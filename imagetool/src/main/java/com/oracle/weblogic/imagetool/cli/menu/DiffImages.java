@@ -0,0 +1,128 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.builder.Builders;
+import com.oracle.weblogic.imagetool.builder.EngineClient;
+import com.oracle.weblogic.imagetool.builder.ImageInfo;
+import com.oracle.weblogic.imagetool.inspect.ImageDiff;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(
+    name = "diff",
+    description = "Compare the patches, versions, and environment of two images",
+    requiredOptionMarker = '*',
+    abbreviateSynopsis = true
+)
+public class DiffImages implements Callable<CommandResponse> {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(DiffImages.class);
+
+    @Override
+    public CommandResponse call() throws Exception {
+        if (imageNames.size() != 2) {
+            return CommandResponse.error("IMG-0148", imageNames.size());
+        }
+
+        Path tmpDir = Files.createTempDirectory(Paths.get(Utils.getBuildWorkingDir()), "wlsimgbuilder_temp");
+        try {
+            // both images are inspected at the same time, each from its own context directory
+            CompletableFuture<Properties> from = inspectAsync(imageNames.get(0), tmpDir);
+            CompletableFuture<Properties> to = inspectAsync(imageNames.get(1), tmpDir);
+            ImageDiff diff = new ImageDiff(from.join(), env(imageNames.get(0)), to.join(), env(imageNames.get(1)));
+            System.out.println(diff.toJson(imageNames.get(0), imageNames.get(1)));
+            return CommandResponse.success(null);
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            logger.fine("**ERROR**", cause);
+            return CommandResponse.error("IMG-0149", cause.getMessage());
+        } finally {
+            Utils.deleteFilesRecursively(tmpDir.toString());
+        }
+    }
+
+    private CompletableFuture<Properties> inspectAsync(String image, Path tmpDir) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Path contextDir = Files.createTempDirectory(tmpDir, "image");
+                return Utils.getBaseImageProperties(buildEngine, engineApi ? EngineClient.fromEnvironment() : null,
+                    image, "/probe-env/inspect-image-long.sh", contextDir.toAbsolutePath().toString(),
+                    inspectLayers);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * The environment variables of a local image.
+     * @return the variables, or null for an OCI image layout or an image that cannot be inspected
+     */
+    private Map<String, String> env(String image) {
+        if (image.startsWith(Utils.OCI_LAYOUT_PREFIX)) {
+            return null;
+        }
+        ImageInfo info;
+        if (engineApi) {
+            try {
+                info = EngineClient.fromEnvironment().inspectImage(image);
+            } catch (IOException e) {
+                logger.fine("Unable to inspect " + image, e);
+                return null;
+            }
+        } else {
+            info = Builders.detect(buildEngine).inspectImage(image);
+        }
+        return info == null ? null : info.env();
+    }
+
+    @Option(
+        names = {"--image", "-i"},
+        split = ",",
+        required = true,
+        paramLabel = "IMAGE:ID",
+        description = "Image ID or image name to be compared. Use the option twice, or a comma-separated list,"
+            + " with the old image first."
+    )
+    private List<String> imageNames = new ArrayList<>();
+
+    @Option(
+        names = {"--builder", "-b"},
+        description = "Executable to inspect docker images. Default: ${DEFAULT-VALUE}"
+    )
+    String buildEngine = "docker";
+
+    @Option(
+        names = {"--engineApi"},
+        description = "Run the inspection with the Docker or Podman Engine API at DOCKER_HOST,"
+            + " instead of the builder executable."
+    )
+    private boolean engineApi;
+
+    @Option(
+        names = {"--inspectLayers"},
+        description = "Read the image layers from the builder (docker save) instead of running a container."
+            + " Use --image oci:<path> to compare an OCI image layout directory."
+    )
+    private boolean inspectLayers;
+}
@@ -0,0 +1,112 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import org.json.JSONObject;
+
+/**
+ * Run a task for each of several images concurrently, and write one JSON line for each image as soon as its
+ * task completes.  An image whose task fails is written with its name and an "error" attribute.
+ */
+class ImageRunner {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(ImageRunner.class);
+
+    /**
+     * The work done for one image.
+     */
+    @FunctionalInterface
+    interface ImageTask {
+        /**
+         * Run the task.
+         * @param image the image name or ID
+         * @return the result for the image, written as one JSON line
+         */
+        JSONObject run(String image) throws IOException, InterruptedException;
+    }
+
+    private final int parallel;
+    private final ImageTask task;
+
+    /**
+     * Create a runner.
+     * @param parallel the maximum number of images processed at the same time
+     * @param task     the work done for each image
+     */
+    ImageRunner(int parallel, ImageTask task) {
+        this.parallel = parallel;
+        this.task = task;
+    }
+
+    /**
+     * Run the task for each image.
+     * @param images the image names or IDs
+     * @param output receives one JSON line for each image, from one thread at a time
+     * @return the number of images whose task failed
+     * @throws InterruptedException if interrupted while waiting for the tasks
+     */
+    long run(List<String> images, Consumer<String> output) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallel, images.size())));
+        Object outputMonitor = new Object();
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (String image : images) {
+                results.add(executor.submit(() -> {
+                    String line;
+                    boolean succeeded = false;
+                    try {
+                        line = task.run(image).toString();
+                        succeeded = true;
+                    } catch (IOException | RuntimeException e) {
+                        logger.fine("Unable to process " + image, e);
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        line = errorJson(image, cause.getMessage()).toString();
+                    } catch (InterruptedException e) {
+                        // the image still gets its line, the pool is shutting down
+                        Thread.currentThread().interrupt();
+                        logger.fine("Interrupted while processing " + image, e);
+                        line = errorJson(image, e.getMessage() == null ? "interrupted" : e.getMessage()).toString();
+                    }
+                    synchronized (outputMonitor) {
+                        output.accept(line);
+                    }
+                    return succeeded;
+                }));
+            }
+            long failed = 0;
+            for (Future<Boolean> result : results) {
+                try {
+                    failed += result.get() ? 0 : 1;
+                } catch (ExecutionException e) {
+                    logger.fine("**ERROR**", e.getCause());
+                    failed++;
+                }
+            }
+            return failed;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The JSON object for an image whose task failed.
+     * @param image   the image name
+     * @param message the error message
+     * @return the JSON object
+     */
+    static JSONObject errorJson(String image, String message) {
+        return new JSONObject().put("image", image).put("error", message == null ? JSONObject.NULL : message);
+    }
+}
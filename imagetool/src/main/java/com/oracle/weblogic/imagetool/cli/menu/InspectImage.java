@@ -3,13 +3,18 @@
 
 package com.oracle.weblogic.imagetool.cli.menu;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.Callable;
 
 import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.builder.Builders;
+import com.oracle.weblogic.imagetool.builder.EngineClient;
 import com.oracle.weblogic.imagetool.inspect.InspectOutput;
 import com.oracle.weblogic.imagetool.util.Utils;
 import picocli.CommandLine.Command;
@@ -24,30 +29,66 @@ import picocli.CommandLine.Option;
 public class InspectImage implements Callable<CommandResponse> {
     @Override
     public CommandResponse call() throws Exception {
-        Path tmpDir = Files.createTempDirectory(Paths.get(Utils.getBuildWorkingDir()), "wlsimgbuilder_temp");
-        String tempDirectory = tmpDir.toAbsolutePath().toString();
-
-        String scriptToRun = "/probe-env/inspect-image.sh";
-        // add additional formats here, the ENUM, and to the resources/inspect-responses folder
-        if (listPatches) {
-            scriptToRun = "/probe-env/inspect-image-long.sh";
+        List<String> images = new ArrayList<>(imageNames);
+        if (labelFilter != null) {
+            images.addAll(engineApi ? EngineClient.fromEnvironment().findImages(labelFilter)
+                : Builders.detect(buildEngine).findImages(labelFilter));
+        }
+        if (images.isEmpty()) {
+            return CommandResponse.error("IMG-0142");
         }
 
-        Properties baseImageProperties =
-            Utils.getBaseImageProperties(buildEngine, imageName, scriptToRun, tempDirectory);
+        Path tmpDir = Files.createTempDirectory(Paths.get(Utils.getBuildWorkingDir()), "wlsimgbuilder_temp");
+        // add additional formats here, the ENUM, and to the resources/inspect-responses folder
+        String scriptToRun = listPatches ? "/probe-env/inspect-image-long.sh" : "/probe-env/inspect-image.sh";
 
-        System.out.println(new InspectOutput(baseImageProperties));
+        try {
+            if (images.size() == 1 && outputFormat == OutputFormat.JSON) {
+                System.out.println(new InspectOutput(inspect(images.get(0), scriptToRun, tmpDir)));
+                return CommandResponse.success(null);
+            }
+            long failed = new ImageRunner(parallel,
+                image -> new InspectOutput(inspect(image, scriptToRun, tmpDir)).toJson(image))
+                .run(images, System.out::println);
+            if (failed > 0) {
+                return CommandResponse.error("IMG-0143", failed, images.size());
+            }
+            return CommandResponse.success(null);
+        } finally {
+            Utils.deleteFilesRecursively(tmpDir.toString());
+        }
+    }
 
-        return CommandResponse.success(null);
+    private Properties inspect(String image, String script, Path tmpDir) throws IOException, InterruptedException {
+        // each image is probed from its own context directory, so that the probe scripts do not overwrite
+        // each other
+        Path contextDir = Files.createTempDirectory(tmpDir, "image");
+        return Utils.getBaseImageProperties(buildEngine, engineApi ? EngineClient.fromEnvironment() : null, image,
+            script, contextDir.toAbsolutePath().toString(), inspectLayers);
     }
 
     @Option(
         names = {"--image", "-i"},
-        required = true,
+        split = ",",
         paramLabel = "IMAGE:ID",
-        description = "Image ID or image name to be inspected"
+        description = "Image ID or image name to be inspected. Repeat the option, or use a comma-separated list,"
+            + " to inspect several images."
+    )
+    private List<String> imageNames = new ArrayList<>();
+
+    @Option(
+        names = {"--filter"},
+        paramLabel = "LABEL",
+        description = "Inspect the local images that have a label, like com.oracle.weblogic.imagetool.inspect"
+            + " or key=value."
     )
-    private String imageName;
+    private String labelFilter;
+
+    @Option(
+        names = {"--parallel"},
+        description = "Maximum number of images to inspect at the same time. Default: ${DEFAULT-VALUE}"
+    )
+    private int parallel = 4;
 
     @Option(
         names = {"--builder", "-b"},
@@ -55,6 +96,20 @@ public class InspectImage implements Callable<CommandResponse> {
     )
     String buildEngine = "docker";
 
+    @Option(
+        names = {"--engineApi"},
+        description = "Run the inspection with the Docker or Podman Engine API at DOCKER_HOST,"
+            + " instead of the builder executable."
+    )
+    private boolean engineApi;
+
+    @Option(
+        names = {"--inspectLayers"},
+        description = "Read the image layers from the builder (docker save) instead of running a container."
+            + " Use --image oci:<path> to inspect an OCI image layout directory."
+    )
+    private boolean inspectLayers;
+
     @Option(
         names = {"--patches"},
         description = "Include OPatch information in the output, including a list of patches applied.",
@@ -4,5 +4,7 @@
 package com.oracle.weblogic.imagetool.cli.menu;
 
 public enum OutputFormat {
-    JSON
+    JSON,
+    // one JSON object on each line, for one or more images
+    JSONL
 }
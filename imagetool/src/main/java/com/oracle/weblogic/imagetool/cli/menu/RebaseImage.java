@@ -9,6 +9,7 @@ import java.util.Properties;
 import java.util.concurrent.Callable;
 
 import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.inspect.ImageMetadata;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import com.oracle.weblogic.imagetool.util.Utils;
@@ -40,14 +41,14 @@ public class RebaseImage extends CommonCreateOptions implements Callable<Command
 
         try {
             initializeOptions();
+            startProbes();
 
             if (sourceImage != null && !sourceImage.isEmpty()) {
                 logger.finer("IMG-0002", sourceImage);
                 dockerfileOptions.setSourceImage(sourceImage);
 
                 logger.info("IMG-0091", sourceImage);
-                Properties baseImageProperties = Utils.getBaseImageProperties(buildEngine, sourceImage,
-                    "/probe-env/inspect-image.sh", buildDir());
+                Properties baseImageProperties = probeImage(sourceImage);
 
                 oldOracleHome = baseImageProperties.getProperty("oracleHome", null);
                 oldJavaHome = baseImageProperties.getProperty("javaHome", null);
@@ -63,8 +64,7 @@ public class RebaseImage extends CommonCreateOptions implements Callable<Command
                 dockerfileOptions.setTargetImage(targetImage);
                 dockerfileOptions.setRebaseToTarget(true);
 
-                Properties baseImageProperties = Utils.getBaseImageProperties(buildEngine, targetImage,
-                    "/probe-env/inspect-image.sh", buildDir());
+                Properties baseImageProperties = probeImage(targetImage);
 
                 newOracleHome = baseImageProperties.getProperty("oracleHome", null);
                 newJavaHome = baseImageProperties.getProperty("javaHome", null);
@@ -117,6 +117,28 @@ public class RebaseImage extends CommonCreateOptions implements Callable<Command
         return successfulBuildResponse(startTime);
     }
 
+    /**
+     * Start the probes of all the images that are needed by the rebase, so that they run at the same time:
+     * the source image, and the target image or the --fromImage of the new image.
+     * An image that is named by more than one option is probed once.
+     */
+    private void startProbes() {
+        if (!Utils.isEmptyString(sourceImage)) {
+            probeImageAsync(sourceImage);
+        }
+        if (!Utils.isEmptyString(targetImage)) {
+            probeImageAsync(targetImage);
+        } else if (isOptionSet("--fromImage")) {
+            probeImageAsync(fromImage());
+        }
+    }
+
+    @Override
+    ImageMetadata imageMetadata() {
+        // the domain is copied from the source image, the image must be probed
+        return null;
+    }
+
     @Option(
         names = {"--sourceImage"},
         required = true,
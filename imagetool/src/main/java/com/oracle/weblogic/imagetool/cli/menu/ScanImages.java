@@ -0,0 +1,315 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.aru.AruException;
+import com.oracle.weblogic.imagetool.aru.AruPatch;
+import com.oracle.weblogic.imagetool.aru.AruUtil;
+import com.oracle.weblogic.imagetool.aru.InstalledPatch;
+import com.oracle.weblogic.imagetool.builder.Builder;
+import com.oracle.weblogic.imagetool.builder.Builders;
+import com.oracle.weblogic.imagetool.builder.EngineClient;
+import com.oracle.weblogic.imagetool.builder.StageMemo;
+import com.oracle.weblogic.imagetool.cachestore.OPatchFile;
+import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import com.oracle.weblogic.imagetool.util.Utils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(
+    name = "scan",
+    description = "Compare the patches of local images with the current recommended patches",
+    requiredOptionMarker = '*',
+    abbreviateSynopsis = true
+)
+public class ScanImages implements Callable<CommandResponse> {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(ScanImages.class);
+
+    static final String BUILD_ID_LABEL = "com.oracle.weblogic.imagetool.buildid";
+
+    // the recommended patches for each installer type and version, requested once for all the images
+    private final Map<String, CompletableFuture<List<AruPatch>>> recommendations = new ConcurrentHashMap<>();
+
+    private String password;
+
+    @Override
+    public CommandResponse call() throws Exception {
+        password = Utils.getPasswordFromInputs(passwordStr, passwordFile, passwordEnv);
+        if (userId == null || password == null) {
+            return CommandResponse.error("IMG-0031");
+        }
+
+        List<String> images = new ArrayList<>(imageNames);
+        if (labelFilter != null) {
+            images.addAll(engineApi ? EngineClient.fromEnvironment().findImages(labelFilter)
+                : Builders.detect(buildEngine).findImages(labelFilter));
+        } else if (images.isEmpty()) {
+            images.addAll(builtImages());
+        }
+        images = images.stream().distinct().collect(Collectors.toList());
+        if (images.isEmpty()) {
+            return CommandResponse.error("IMG-0144");
+        }
+
+        Path tmpDir = Files.createTempDirectory(Paths.get(Utils.getBuildWorkingDir()), "wlsimgbuilder_temp");
+        try {
+            long failed = scanAll(images, tmpDir);
+            if (failed > 0) {
+                return CommandResponse.error("IMG-0145", failed, images.size());
+            }
+            return CommandResponse.success(null);
+        } finally {
+            Utils.deleteFilesRecursively(tmpDir.toString());
+        }
+    }
+
+    /**
+     * The images built by the Image Tool.  The memoized stage images and the dangling images also have the
+     * build ID label, and are left out because most of them do not have an Oracle Home to scan.
+     * @return the IDs of the images
+     */
+    List<String> builtImages() throws IOException, InterruptedException {
+        List<String> result = new ArrayList<>();
+        if (engineApi) {
+            EngineClient engine = EngineClient.fromEnvironment();
+            result.addAll(engine.findTaggedImages(BUILD_ID_LABEL));
+            result.removeAll(engine.findImages(StageMemo.LABEL));
+        } else {
+            Builder builder = Builders.detect(buildEngine);
+            result.addAll(builder.findTaggedImages(BUILD_ID_LABEL));
+            result.removeAll(builder.findImages(StageMemo.LABEL));
+        }
+        return result;
+    }
+
+    /**
+     * Scan the images concurrently, and print one JSON line for each image as soon as it is scanned.
+     * The recommended patches are requested from ARU on a separate executor, so that the images waiting
+     * for the same recommendations do not block the requests.
+     * @return the number of images that could not be scanned
+     */
+    private long scanAll(List<String> images, Path tmpDir) throws InterruptedException {
+        ExecutorService aruExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallel, images.size())));
+        try {
+            return new ImageRunner(parallel, image -> scan(image, tmpDir, aruExecutor))
+                .run(images, System.out::println);
+        } finally {
+            aruExecutor.shutdownNow();
+        }
+    }
+
+    private JSONObject scan(String image, Path tmpDir, ExecutorService aruExecutor)
+        throws IOException, InterruptedException {
+        Path contextDir = Files.createTempDirectory(tmpDir, "image");
+        Properties properties = Utils.getBaseImageProperties(buildEngine,
+            engineApi ? EngineClient.fromEnvironment() : null, image, "/probe-env/inspect-image-long.sh",
+            contextDir.toAbsolutePath().toString(), inspectLayers);
+
+        FmwInstallerType type = FmwInstallerType.fromProductList(properties.getProperty("oracleInstalledProducts"));
+        String version = properties.getProperty("wlsVersion");
+        if (type == null || Utils.isEmptyString(version)) {
+            throw new IllegalArgumentException(Utils.getMessage("IMG-0146", image));
+        }
+
+        List<AruPatch> recommended = recommendations
+            .computeIfAbsent(type + "_" + version,
+                k -> CompletableFuture.supplyAsync(() -> recommendedPatches(type, version), aruExecutor))
+            .join();
+        List<InstalledPatch> installed = InstalledPatch.getPatchList(properties.getProperty("oraclePatches"));
+        return new PatchDrift(installed, recommended).toJson(image, type, version);
+    }
+
+    private List<AruPatch> recommendedPatches(FmwInstallerType type, String version) {
+        logger.info("IMG-0147", type, version);
+        try {
+            List<AruPatch> result = AruUtil.rest().getRecommendedPatches(type, version, userId, password);
+            if (FmwInstallerType.isBaseWeblogicServer(type)) {
+                // the ADR patches are not applied to base WLS installers by --recommendedPatches
+                result.removeIf(p -> p.description().startsWith("ADR FOR WEBLOGIC SERVER"));
+            }
+            return result;
+        } catch (AruException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * The difference between the patches installed in an image and the recommended patches.
+     */
+    static class PatchDrift {
+        private final List<AruPatch> missing = new ArrayList<>();
+        private final List<InstalledPatch> superseded = new ArrayList<>();
+        private final String installedPsu;
+        private final String recommendedPsu;
+
+        /**
+         * Compare the installed patches with the recommended patches.
+         * A recommended patch is missing if its bug number is not installed.  OPatch is not listed in the
+         * inventory, and is never missing.  An installed PSU or bundle patch is superseded if it is not
+         * in the recommended list, and the recommended list has a PSU.
+         * @param installed   the patches installed in the image
+         * @param recommended the current recommended patches for the installer type and version of the image
+         */
+        PatchDrift(List<InstalledPatch> installed, List<AruPatch> recommended) {
+            Set<String> installedBugs = installed.stream().map(InstalledPatch::getBugNumber)
+                .collect(Collectors.toSet());
+            Set<String> recommendedBugs = new HashSet<>();
+            String psu = null;
+            for (AruPatch patch : recommended) {
+                recommendedBugs.add(patch.patchId());
+                if (patch.isPsu() && psu == null) {
+                    String[] words = patch.psuBundle().split(" ");
+                    psu = words[words.length - 1];
+                }
+                if (!installedBugs.contains(patch.patchId()) && !OPatchFile.DEFAULT_BUG_NUM.equals(patch.patchId())) {
+                    missing.add(patch);
+                }
+            }
+            recommendedPsu = psu;
+            installedPsu = InstalledPatch.getPsuVersion(installed);
+            if (recommendedPsu != null) {
+                for (InstalledPatch patch : installed) {
+                    if (!recommendedBugs.contains(patch.getBugNumber()) && isBundle(patch)) {
+                        superseded.add(patch);
+                    }
+                }
+            }
+        }
+
+        List<AruPatch> missing() {
+            return missing;
+        }
+
+        List<InstalledPatch> superseded() {
+            return superseded;
+        }
+
+        boolean isCurrent() {
+            return missing.isEmpty() && superseded.isEmpty();
+        }
+
+        private static boolean isBundle(InstalledPatch patch) {
+            String description = patch.getPatchDescription().toUpperCase();
+            return description.contains("PATCH SET UPDATE") || description.contains("BUNDLE PATCH");
+        }
+
+        JSONObject toJson(String image, FmwInstallerType type, String version) {
+            JSONArray missingPatches = new JSONArray();
+            for (AruPatch patch : missing) {
+                missingPatches.put(new JSONObject().put("patch", patch.patchId())
+                    .put("description", patch.description()));
+            }
+            JSONArray supersededPatches = new JSONArray();
+            for (InstalledPatch patch : superseded) {
+                supersededPatches.put(new JSONObject().put("patch", patch.getBugNumber())
+                    .put("description", patch.getPatchDescription()));
+            }
+            return new JSONObject()
+                .put("image", image)
+                .put("type", type.toString())
+                .put("version", version)
+                .put("installedPsu", installedPsu == null ? JSONObject.NULL : installedPsu)
+                .put("recommendedPsu", recommendedPsu == null ? JSONObject.NULL : recommendedPsu)
+                .put("current", isCurrent())
+                .put("missing", missingPatches)
+                .put("superseded", supersededPatches);
+        }
+    }
+
+    @Option(
+        names = {"--image", "-i"},
+        split = ",",
+        paramLabel = "IMAGE:ID",
+        description = "Image ID or image name to be scanned. Repeat the option, or use a comma-separated list,"
+            + " to scan several images."
+    )
+    private List<String> imageNames = new ArrayList<>();
+
+    @Option(
+        names = {"--filter"},
+        paramLabel = "LABEL",
+        description = "Scan the local images that have a label, like key=value."
+            + " Default, when no --image is given: the tagged images with the label " + BUILD_ID_LABEL
+            + ", except the memoized build stages"
+    )
+    private String labelFilter;
+
+    @Option(
+        names = {"--parallel"},
+        description = "Maximum number of images to scan at the same time. Default: ${DEFAULT-VALUE}"
+    )
+    private int parallel = 4;
+
+    @Option(
+        names = {"--builder", "-b"},
+        description = "Executable to inspect docker images. Default: ${DEFAULT-VALUE}"
+    )
+    String buildEngine = "docker";
+
+    @Option(
+        names = {"--engineApi"},
+        description = "Run the inspection with the Docker or Podman Engine API at DOCKER_HOST,"
+            + " instead of the builder executable."
+    )
+    private boolean engineApi;
+
+    @Option(
+        names = {"--inspectLayers"},
+        description = "Read the image layers from the builder (docker save) instead of running a container."
+    )
+    private boolean inspectLayers;
+
+    @Option(
+        names = {"--user"},
+        paramLabel = "<support email>",
+        description = "Oracle Support email id"
+    )
+    private String userId;
+
+    @Option(
+        names = {"--password"},
+        interactive = true,
+        arity = "0..1",
+        paramLabel = "<support password>",
+        description = "Enter password for Oracle Support userId on STDIN"
+    )
+    private String passwordStr;
+
+    @Option(
+        names = {"--passwordEnv"},
+        paramLabel = "<environment variable>",
+        description = "environment variable containing the support password"
+    )
+    private String passwordEnv;
+
+    @Option(
+        names = {"--passwordFile"},
+        paramLabel = "<password file>",
+        description = "path to file containing just the password"
+    )
+    private Path passwordFile;
+}
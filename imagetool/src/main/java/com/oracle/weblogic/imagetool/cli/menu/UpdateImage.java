@@ -4,7 +4,6 @@
 package com.oracle.weblogic.imagetool.cli.menu;
 
 import java.io.File;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
@@ -17,6 +16,7 @@ import com.oracle.weblogic.imagetool.api.model.CommandResponse;
 import com.oracle.weblogic.imagetool.aru.InstalledPatch;
 import com.oracle.weblogic.imagetool.builder.BuildCommand;
 import com.oracle.weblogic.imagetool.cachestore.OPatchFile;
+import com.oracle.weblogic.imagetool.inspect.ImageMetadata;
 import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
@@ -53,8 +53,10 @@ public class UpdateImage extends CommonPatchingOptions implements Callable<Comma
 
             dockerfileOptions.setBaseImage(fromImage()).setWdtBase(fromImage());
 
-            Properties baseImageProperties = Utils.getBaseImageProperties(buildEngine, fromImage(),
-                "/probe-env/inspect-image-long.sh", buildDir());
+            // OPatch and the list of patches are only needed when applying patches
+            baseImageProperties = Utils.getBaseImageProperties(buildEngine, engineClient(), fromImage(),
+                applyingPatches() ? "/probe-env/inspect-image-long.sh" : "/probe-env/inspect-image.sh",
+                buildDir(), inspectLayers);
 
             dockerfileOptions.setJavaHome(baseImageProperties.getProperty("javaHome", null));
 
@@ -108,9 +110,10 @@ public class UpdateImage extends CommonPatchingOptions implements Callable<Comma
                     if (Utils.compareVersions(opatchVersion, opatchFile.getVersion()) < 0) {
                         logger.info("IMG-0008", opatchVersion, opatchFile.getVersion());
                         String filename = new File(opatchFilePath).getName();
-                        Files.copy(Paths.get(opatchFilePath), Paths.get(buildDir(), filename));
+                        Utils.linkOrCopyFile(Paths.get(opatchFilePath), Paths.get(buildDir(), filename), streamContext);
                         dockerfileOptions.setOPatchPatchingEnabled();
                         dockerfileOptions.setOPatchFileName(filename);
+                        installedOpatchVersion(opatchFile.getVersion());
                     } else {
                         logger.info("IMG-0074", opatchVersion, opatchFile.getVersion());
                     }
@@ -182,6 +185,16 @@ public class UpdateImage extends CommonPatchingOptions implements Callable<Comma
         }
     }
 
+    @Override
+    ImageMetadata imageMetadata() {
+        ImageMetadata result = new ImageMetadata(baseImageProperties);
+        if (installedOpatchVersion() != null) {
+            result.set("opatchVersion", installedOpatchVersion());
+        }
+        setWdtMetadata(result, wdtOptions);
+        return result;
+    }
+
     void setImageInstallerType(String value) {
         imageInstallerType = FmwInstallerType.fromProductList(value);
     }
@@ -197,6 +210,8 @@ public class UpdateImage extends CommonPatchingOptions implements Callable<Comma
 
     private FmwInstallerType imageInstallerType;
 
+    private Properties baseImageProperties;
+
     @Override
     String getInstallerVersion() {
         return installerVersion;
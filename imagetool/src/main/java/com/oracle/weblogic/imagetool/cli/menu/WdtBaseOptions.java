@@ -42,6 +42,17 @@ public class WdtBaseOptions {
         return wdtVersion.equalsIgnoreCase("NONE");
     }
 
+    /**
+     * The version of WDT that is installed by the build, as reported by WDT.
+     * @return the value of --wdtVersion, or null if WDT is not installed or the version is latest
+     */
+    public String installedWdtVersion() {
+        if (skipWdtInstaller() || wdtVersion.equalsIgnoreCase("latest")) {
+            return null;
+        }
+        return wdtVersion;
+    }
+
     /**
      * Return the value provided for --wdtModelHome.
      * This value is used as the location to install the provided WDT models, archives, and variable files.
@@ -0,0 +1,169 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.inspect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The differences between the inspection results of two images: the applied patches, the versions of the
+ * installed software, the other image properties, and the environment variables.
+ */
+public class ImageDiff {
+    private static final String PATCHES_KEY = "oraclePatches";
+    private static final List<String> VERSIONS = Arrays.asList(
+        "javaVersion", "wlsVersion", "opatchVersion", "wdtVersion");
+
+    private final List<InventoryPatch> added;
+    private final List<InventoryPatch> removed;
+    private final Map<String, String[]> versions = new LinkedHashMap<>();
+    private final Map<String, String[]> properties = new TreeMap<>();
+    private final Map<String, String[]> env;
+
+    /**
+     * Compare two images.
+     * Patches are compared by bug number and unique patch ID, so a patch that was re-applied with a new UID
+     * is reported as removed and added.
+     * @param from    the properties of the first image, from the inspection with patches
+     * @param fromEnv the environment of the first image, or null if it is not known
+     * @param to      the properties of the second image, from the inspection with patches
+     * @param toEnv   the environment of the second image, or null if it is not known
+     */
+    public ImageDiff(Properties from, Map<String, String> fromEnv, Properties to, Map<String, String> toEnv) {
+        List<InventoryPatch> fromPatches = InventoryPatch.parseInventoryPatches(from.getProperty(PATCHES_KEY));
+        List<InventoryPatch> toPatches = InventoryPatch.parseInventoryPatches(to.getProperty(PATCHES_KEY));
+        added = difference(toPatches, fromPatches);
+        removed = difference(fromPatches, toPatches);
+
+        OperatingSystemProperties fromOs = OperatingSystemProperties.getOperatingSystemProperties(from);
+        OperatingSystemProperties toOs = OperatingSystemProperties.getOperatingSystemProperties(to);
+        compare("os", osVersion(fromOs), osVersion(toOs), versions);
+        for (String name : VERSIONS) {
+            compare(name, from.getProperty(name), to.getProperty(name), versions);
+        }
+
+        Set<String> names = new TreeSet<>(from.stringPropertyNames());
+        names.addAll(to.stringPropertyNames());
+        for (String name : names) {
+            if (!name.equals(PATCHES_KEY) && !name.startsWith("__OS__") && !VERSIONS.contains(name)) {
+                compare(name, from.getProperty(name), to.getProperty(name), properties);
+            }
+        }
+
+        if (fromEnv == null || toEnv == null) {
+            env = null;
+        } else {
+            env = new TreeMap<>();
+            Set<String> variables = new TreeSet<>(fromEnv.keySet());
+            variables.addAll(toEnv.keySet());
+            variables.forEach(v -> compare(v, fromEnv.get(v), toEnv.get(v), env));
+        }
+    }
+
+    public List<InventoryPatch> added() {
+        return added;
+    }
+
+    public List<InventoryPatch> removed() {
+        return removed;
+    }
+
+    /**
+     * The changed versions, with the value of the first and second image.
+     * @return the versions by name, like wlsVersion or os
+     */
+    public Map<String, String[]> versions() {
+        return versions;
+    }
+
+    /**
+     * True if the patches, versions, properties, and known environments of the images are the same.
+     * @return true if no differences were found
+     */
+    public boolean isIdentical() {
+        return added.isEmpty() && removed.isEmpty() && versions.isEmpty() && properties.isEmpty()
+            && (env == null || env.isEmpty());
+    }
+
+    private static List<InventoryPatch> difference(List<InventoryPatch> patches, List<InventoryPatch> other) {
+        Set<String> keys = other.stream().map(ImageDiff::key).collect(Collectors.toSet());
+        List<InventoryPatch> result = new ArrayList<>();
+        for (InventoryPatch patch : patches) {
+            if (!keys.contains(key(patch))) {
+                result.add(patch);
+            }
+        }
+        return result;
+    }
+
+    private static String key(InventoryPatch patch) {
+        return patch.bug() + ";" + patch.uid();
+    }
+
+    private static String osVersion(OperatingSystemProperties os) {
+        if (os.id() == null) {
+            return null;
+        }
+        return os.version() == null ? os.id() : os.id() + " " + os.version();
+    }
+
+    private static void compare(String name, String from, String to, Map<String, String[]> changes) {
+        if (from == null ? to != null : !from.equals(to)) {
+            changes.put(name, new String[] {from, to});
+        }
+    }
+
+    /**
+     * The differences as a JSON object.  Values that are not set in one of the images are null.
+     * @param fromImage the name of the first image
+     * @param toImage   the name of the second image
+     * @return the JSON object
+     */
+    public JSONObject toJson(String fromImage, String toImage) {
+        return new JSONObject()
+            .put("from", fromImage)
+            .put("to", toImage)
+            .put("identical", isIdentical())
+            .put("patches", new JSONObject().put("added", patches(added)).put("removed", patches(removed)))
+            .put("versions", changes(versions))
+            .put("properties", changes(properties))
+            .put("env", env == null ? JSONObject.NULL : changes(env));
+    }
+
+    private static JSONArray patches(List<InventoryPatch> patches) {
+        JSONArray result = new JSONArray();
+        for (InventoryPatch patch : patches) {
+            result.put(new JSONObject()
+                .put("patch", patch.bug())
+                .put("uid", patch.uid())
+                .put("description", patch.description()));
+        }
+        return result;
+    }
+
+    private static JSONObject changes(Map<String, String[]> changes) {
+        JSONObject result = new JSONObject();
+        for (Map.Entry<String, String[]> change : changes.entrySet()) {
+            result.put(change.getKey(), new JSONObject()
+                .put("from", nullable(change.getValue()[0]))
+                .put("to", nullable(change.getValue()[1])));
+        }
+        return result;
+    }
+
+    private static Object nullable(String value) {
+        return value == null ? JSONObject.NULL : value;
+    }
+}
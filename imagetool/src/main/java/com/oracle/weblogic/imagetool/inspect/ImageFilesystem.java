@@ -0,0 +1,407 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.inspect;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The filesystem of an image, read from the image layers without running a container.
+ * Layers are applied in order, with whiteout files removing the files of lower layers.
+ * Only the metadata of each file is kept, and the content of the few files that are used to inspect an image,
+ * like /etc/os-release, the release file of the JDK, and the Oracle inventory.
+ */
+public class ImageFilesystem {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(ImageFilesystem.class);
+
+    private static final String WHITEOUT = ".wh.";
+    private static final String OPAQUE = ".wh..wh..opq";
+    private static final int MAX_CONTENT = 1024 * 1024;
+    private static final int MAX_METADATA = 4 * 1024 * 1024;
+    private static final int MAX_LINKS = 40;
+    private static final Set<String> CONTENT_NAMES = new HashSet<>(Arrays.asList(
+        "os-release", "release", "registry.xml", "VERSION.txt", "version.txt", "passwd", "group"));
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Map<String, String> env = new LinkedHashMap<>();
+
+    /**
+     * A file, directory, or link in the image.
+     */
+    static class Node {
+        final char type;
+        final String linkName;
+        final int uid;
+        final int gid;
+        byte[] content;
+
+        Node(TarReader.Entry entry) {
+            type = entry.type;
+            linkName = entry.linkName;
+            uid = entry.uid;
+            gid = entry.gid;
+        }
+    }
+
+    /**
+     * The files of a layer, and the files of lower layers that it removes.
+     */
+    private static class Layer {
+        final Map<String, Node> entries = new LinkedHashMap<>();
+        final List<String> whiteouts = new ArrayList<>();
+        final List<String> opaque = new ArrayList<>();
+    }
+
+    private ImageFilesystem() {
+        // use fromArchive or fromOciLayout
+    }
+
+    /**
+     * Read an image from an archive created by docker save or podman save.
+     * Both the Docker archive format (manifest.json) and OCI archives (index.json) are supported.
+     *
+     * @param archive the image archive stream
+     * @return the image filesystem
+     * @throws IOException if the archive cannot be read, or a layer is compressed with an unsupported format
+     */
+    public static ImageFilesystem fromArchive(InputStream archive) throws IOException {
+        Map<String, Layer> layers = new HashMap<>();
+        Map<String, byte[]> metadata = new HashMap<>();
+        TarReader tar = new TarReader(archive);
+        TarReader.Entry entry;
+        while ((entry = tar.next()) != null) {
+            if (!entry.isFile()) {
+                continue;
+            }
+            String name = normalize(entry.name);
+            BufferedInputStream content = new BufferedInputStream(tar.stream(), 8192);
+            InputStream layer = layerStream(content);
+            if (layer != null) {
+                layers.put(name, readLayer(layer));
+            } else if (entry.size <= MAX_METADATA) {
+                metadata.put(name, readAll(content));
+            }
+        }
+
+        logger.fine("Image archive has {0} layers", layers.size());
+        ImageFilesystem result = new ImageFilesystem();
+        if (metadata.containsKey("manifest.json")) {
+            JSONObject manifest = new JSONArray(string(metadata.get("manifest.json"))).getJSONObject(0);
+            result.config(new JSONObject(string(required(metadata, normalize(manifest.getString("Config"))))));
+            for (Object layer : manifest.getJSONArray("Layers")) {
+                result.apply(required(layers, normalize(layer.toString())));
+            }
+        } else if (metadata.containsKey("index.json")) {
+            JSONObject manifest = ociManifest(digest -> required(metadata, blob(digest)));
+            result.config(new JSONObject(string(required(metadata, blob(configDigest(manifest))))));
+            for (String digest : layerDigests(manifest)) {
+                result.apply(required(layers, blob(digest)));
+            }
+        } else {
+            throw new IOException("The image archive has no manifest.json or index.json");
+        }
+        return result;
+    }
+
+    /**
+     * Read an image from an OCI image layout directory.
+     * If the layout has more than one image, the first image is used.
+     *
+     * @param layout the OCI image layout directory
+     * @return the image filesystem
+     * @throws IOException if the layout cannot be read
+     */
+    public static ImageFilesystem fromOciLayout(Path layout) throws IOException {
+        JSONObject manifest = ociManifest(digest -> Files.readAllBytes(layout.resolve(blob(digest))));
+        ImageFilesystem result = new ImageFilesystem();
+        result.config(new JSONObject(string(Files.readAllBytes(layout.resolve(blob(configDigest(manifest)))))));
+        for (String digest : layerDigests(manifest)) {
+            Path file = layout.resolve(blob(digest));
+            try (BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                InputStream layer = layerStream(in);
+                if (layer == null) {
+                    throw new IOException("Unsupported layer format: " + digest);
+                }
+                result.apply(readLayer(layer));
+            }
+        }
+        return result;
+    }
+
+    private interface BlobReader {
+        // a null digest reads index.json
+        byte[] read(String digest) throws IOException;
+    }
+
+    private static JSONObject ociManifest(BlobReader blobs) throws IOException {
+        JSONObject index = new JSONObject(string(blobs.read(null)));
+        // an index can refer to another index, for images with more than one platform
+        for (int depth = 0; depth < 3; depth++) {
+            JSONArray manifests = index.optJSONArray("manifests");
+            if (manifests == null || manifests.length() == 0) {
+                return index;
+            }
+            index = new JSONObject(string(blobs.read(manifests.getJSONObject(0).getString("digest"))));
+        }
+        throw new IOException("Unable to find the image manifest");
+    }
+
+    private static String configDigest(JSONObject manifest) {
+        return manifest.getJSONObject("config").getString("digest");
+    }
+
+    private static List<String> layerDigests(JSONObject manifest) {
+        List<String> result = new ArrayList<>();
+        for (Object layer : manifest.getJSONArray("layers")) {
+            result.add(((JSONObject) layer).getString("digest"));
+        }
+        return result;
+    }
+
+    private static String blob(String digest) {
+        if (digest == null) {
+            return "index.json";
+        }
+        return "blobs/" + digest.replace(':', '/');
+    }
+
+    private static <T> T required(Map<String, T> entries, String name) throws IOException {
+        T result = entries.get(name);
+        if (result == null) {
+            throw new IOException("The image archive does not contain " + name);
+        }
+        return result;
+    }
+
+    /**
+     * Detect a layer, which is a tar stream, optionally compressed with gzip.
+     * @return the uncompressed layer, or null if the stream is not a layer
+     */
+    private static InputStream layerStream(BufferedInputStream in) throws IOException {
+        in.mark(512);
+        byte[] start = new byte[512];
+        int length = 0;
+        int read;
+        while (length < start.length && (read = in.read(start, length, start.length - length)) > 0) {
+            length += read;
+        }
+        in.reset();
+        if (length >= 2 && (start[0] & 0xff) == 0x1f && (start[1] & 0xff) == 0x8b) {
+            return new BufferedInputStream(new GZIPInputStream(in, 65536), 65536);
+        }
+        if (length >= 4 && (start[0] & 0xff) == 0x28 && (start[1] & 0xff) == 0xb5
+            && (start[2] & 0xff) == 0x2f && (start[3] & 0xff) == 0xfd) {
+            throw new IOException("Layers compressed with zstd are not supported");
+        }
+        if (length == 512 && ("ustar".equals(new String(start, 257, 5, StandardCharsets.US_ASCII))
+            || Arrays.equals(start, new byte[512]))) {
+            // a layer without files is a tar stream with only the end of archive blocks
+            return in;
+        }
+        return null;
+    }
+
+    private static Layer readLayer(InputStream in) throws IOException {
+        Layer layer = new Layer();
+        TarReader tar = new TarReader(in);
+        TarReader.Entry entry;
+        while ((entry = tar.next()) != null) {
+            String path = normalize(entry.name);
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            String parent = path.contains("/") ? path.substring(0, path.lastIndexOf('/')) : "";
+            if (name.equals(OPAQUE)) {
+                layer.opaque.add(parent);
+            } else if (name.startsWith(WHITEOUT)) {
+                layer.whiteouts.add(parent.isEmpty() ? name.substring(WHITEOUT.length())
+                    : parent + "/" + name.substring(WHITEOUT.length()));
+            } else if (!path.isEmpty()) {
+                Node node = new Node(entry);
+                if (entry.isHardLink()) {
+                    // the content of a hard link is the content of the earlier entry in the same layer
+                    Node target = layer.entries.get(normalize(entry.linkName));
+                    node = target == null ? node : target;
+                } else if (entry.isFile() && entry.size <= MAX_CONTENT && isContent(path, name)) {
+                    node.content = tar.content();
+                }
+                layer.entries.put(path, node);
+            }
+        }
+        return layer;
+    }
+
+    private static boolean isContent(String path, String name) {
+        return CONTENT_NAMES.contains(name) || (path.contains("/inventory/patches/") && name.endsWith(".xml"))
+            || (path.contains("/inventory/oneoffs/") && path.endsWith("/etc/config/inventory.xml"));
+    }
+
+    private void apply(Layer layer) {
+        for (String dir : layer.opaque) {
+            removeChildren(dir);
+        }
+        for (String path : layer.whiteouts) {
+            nodes.remove(path);
+            removeChildren(path);
+        }
+        nodes.putAll(layer.entries);
+    }
+
+    private void removeChildren(String dir) {
+        String prefix = dir.isEmpty() ? "" : dir + "/";
+        nodes.keySet().removeIf(path -> path.startsWith(prefix));
+    }
+
+    private void config(JSONObject config) {
+        JSONObject containerConfig = config.optJSONObject("config");
+        JSONArray values = containerConfig == null ? null : containerConfig.optJSONArray("Env");
+        if (values != null) {
+            for (Object value : values) {
+                String variable = value.toString();
+                int equals = variable.indexOf('=');
+                if (equals > 0) {
+                    env.put(variable.substring(0, equals), variable.substring(equals + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * The value of an environment variable in the image configuration.
+     * @param name the variable name
+     * @return the value, or null if the variable is not set
+     */
+    public String env(String name) {
+        return env.get(name);
+    }
+
+    /**
+     * Check if a file or directory exists, following symbolic links.
+     * @param path the absolute path in the image
+     * @return true if the file exists
+     */
+    public boolean exists(String path) {
+        return node(path) != null;
+    }
+
+    /**
+     * Check if a directory exists and has at least one entry.
+     * @param path the absolute path of the directory in the image
+     * @return true if the directory is not empty
+     */
+    public boolean hasChildren(String path) {
+        String prefix = resolve(path) + "/";
+        return nodes.keySet().stream().anyMatch(p -> p.startsWith(prefix));
+    }
+
+    /**
+     * The content of a file, if the file is one that is read to inspect an image.
+     * @param path the absolute path in the image
+     * @return the file content, or null if the file does not exist or was not read
+     */
+    public String read(String path) {
+        Node node = node(path);
+        return node == null || node.content == null ? null : new String(node.content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The entries of a directory, following symbolic links.
+     * @param path the absolute path of the directory in the image
+     * @return the absolute paths of the entries
+     */
+    public List<String> list(String path) {
+        String prefix = resolve(path) + "/";
+        Set<String> result = new TreeSet<>();
+        for (String entry : nodes.keySet()) {
+            if (entry.startsWith(prefix)) {
+                // parent directories are not always in the layer
+                int end = entry.indexOf('/', prefix.length());
+                result.add("/" + (end < 0 ? entry : entry.substring(0, end)));
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    Node node(String path) {
+        return nodes.get(resolve(path));
+    }
+
+    /**
+     * Resolve the symbolic links in a path.
+     * @return the normalized path, without the leading slash
+     */
+    String resolve(String path) {
+        Deque<String> remaining = new ArrayDeque<>(Arrays.asList(normalize(path).split("/")));
+        Deque<String> resolved = new ArrayDeque<>();
+        int links = 0;
+        while (!remaining.isEmpty()) {
+            String component = remaining.removeFirst();
+            if (component.isEmpty() || component.equals(".")) {
+                continue;
+            }
+            if (component.equals("..")) {
+                resolved.pollLast();
+                continue;
+            }
+            resolved.addLast(component);
+            Node node = nodes.get(String.join("/", resolved));
+            if (node != null && node.type == '2' && links++ < MAX_LINKS) {
+                resolved.removeLast();
+                if (node.linkName.startsWith("/")) {
+                    resolved.clear();
+                }
+                List<String> target = new ArrayList<>(Arrays.asList(node.linkName.split("/")));
+                for (int i = target.size() - 1; i >= 0; i--) {
+                    remaining.addFirst(target.get(i));
+                }
+            }
+        }
+        return String.join("/", resolved);
+    }
+
+    private static String normalize(String path) {
+        String result = path;
+        while (result.startsWith("./") || result.startsWith("/")) {
+            result = result.substring(result.startsWith("/") ? 1 : 2);
+        }
+        while (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result.equals(".") ? "" : result;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            result.write(buffer, 0, read);
+        }
+        return result.toByteArray();
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
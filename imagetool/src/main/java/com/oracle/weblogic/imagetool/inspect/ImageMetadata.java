@@ -0,0 +1,112 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.inspect;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The properties of an image built by the tool, stored as image labels when the image is built.
+ * The properties have the same names as the output of probe-env/inspect-image.sh, so that the labels can be
+ * used instead of running the probe in a container.
+ * The label {@value #LABEL} lists the names of the properties.  Labels are inherited from the base image,
+ * so every build sets it, and an empty list means that the properties of the image are not known.
+ */
+public class ImageMetadata {
+    public static final String LABEL = "com.oracle.weblogic.imagetool.inspect";
+    private static final String PREFIX = LABEL + ".";
+    private static final String OS_PROPERTY = "__OS__";
+    private static final String OS_LABEL = "os.";
+
+    private final Properties properties = new Properties();
+
+    /**
+     * Start with the properties of the base image.
+     * The list of patches is not copied, it is not known when patches are applied by the build.
+     * @param base the properties of the base image, or null if the base image was not inspected
+     */
+    public ImageMetadata(Properties base) {
+        if (base != null) {
+            base.stringPropertyNames().forEach(k -> properties.setProperty(k, base.getProperty(k)));
+            properties.remove("oraclePatches");
+        }
+    }
+
+    /**
+     * Set or remove a property.
+     * @param name  the property name, like oracleHome
+     * @param value the value, or null to remove the property
+     * @return this
+     */
+    public ImageMetadata set(String name, String value) {
+        if (value == null) {
+            properties.remove(name);
+        } else {
+            properties.setProperty(name, value);
+        }
+        return this;
+    }
+
+    public String get(String name) {
+        return properties.getProperty(name);
+    }
+
+    /**
+     * The labels for the build command.
+     * @return the labels, sorted by name
+     */
+    public Map<String, String> labels() {
+        Map<String, String> result = new TreeMap<>();
+        TreeSet<String> names = new TreeSet<>(properties.stringPropertyNames());
+        result.put(LABEL, String.join(",", names));
+        for (String name : names) {
+            result.put(labelName(name), properties.getProperty(name));
+        }
+        return result;
+    }
+
+    /**
+     * The labels for a build that cannot know the properties of the new image, like a build with
+     * additional build commands.  The properties inherited from the base image must not be used.
+     * @return the labels
+     */
+    public static Map<String, String> unknown() {
+        return Collections.singletonMap(LABEL, "");
+    }
+
+    /**
+     * Read the properties of an image from its labels.
+     * @param labels  the image labels
+     * @param patches true if the list of patches is required, like inspect-image-long.sh
+     * @return the properties, or null if the image was not built by the tool or the labels are incomplete
+     */
+    public static Properties fromLabels(Map<String, String> labels, boolean patches) {
+        String names = labels.get(LABEL);
+        if (names == null || names.isEmpty()) {
+            return null;
+        }
+        Properties result = new Properties();
+        for (String name : names.split(",")) {
+            String value = labels.get(labelName(name));
+            if (value == null) {
+                return null;
+            }
+            result.setProperty(name, value);
+        }
+        if (patches && result.containsKey("oracleHome") && !result.containsKey("oraclePatches")) {
+            return null;
+        }
+        return result;
+    }
+
+    private static String labelName(String property) {
+        if (property.startsWith(OS_PROPERTY)) {
+            return PREFIX + OS_LABEL + property.substring(OS_PROPERTY.length());
+        }
+        return PREFIX + property;
+    }
+}
@@ -12,9 +12,11 @@ import java.util.Properties;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 /**
- * Convert image properties to JSON.
- * This class should be replaced if/when a full JSON parser is added to the project.
+ * Convert image properties to JSON, as a formatted object or as a single line for JSON lines output.
  */
 public class InspectOutput {
     private static final String PATCHES_KEY = "oraclePatches";
@@ -89,8 +91,38 @@ public class InspectOutput {
         return result.toString();
     }
 
+    /**
+     * The properties as a JSON object, for JSON lines output.
+     * @param image the image name, added to the object as "image"
+     * @return the JSON object
+     */
+    public JSONObject toJson(String image) {
+        JSONObject result = new JSONObject().put("image", image);
+        if (patches != null) {
+            JSONArray list = new JSONArray();
+            for (InventoryPatch patch : patches) {
+                list.put(new JSONObject().put("patch", patch.bug()).put("description", patch.description()));
+            }
+            result.put(PATCHES_KEY, list);
+        }
+        if (os != null) {
+            result.put("os", new JSONObject()
+                .put("id", nullable(os.id()))
+                .put("name", nullable(os.name()))
+                .put("version", nullable(os.version())));
+        }
+        for (Map.Entry<String,String> entry : attributes.entrySet()) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static Object nullable(String value) {
+        return value == null ? JSONObject.NULL : value;
+    }
+
     private String jsonKeyValuePair(int indent, String key, String value) {
-        return new String(pad(indent)) + String.format("\"%s\" : \"%s\"", key, value);
+        return new String(pad(indent)) + JSONObject.quote(key) + " : " + JSONObject.valueToString(value);
     }
 
     private char[] pad(int size) {
@@ -0,0 +1,353 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.inspect;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+
+/**
+ * Inspect an image by reading files from its layers, instead of running the probe scripts in a container.
+ * The result has the same properties as the output of probe-env/inspect-image.sh and inspect-image-long.sh.
+ * Versions are read from files: the release file of the JDK, the Oracle inventory, the OPatch version file,
+ * and the WDT VERSION.txt.
+ */
+public class LayerInspector {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(LayerInspector.class);
+
+    private static final String DEFAULT_PATH = "/usr/local/sbin:/usr/local/bin:/usr/sbin:/usr/bin:/sbin:/bin";
+    private static final Map<String, String> PACKAGE_MANAGERS = new LinkedHashMap<>();
+    private static final Pattern VERSION = Pattern.compile("([\\d.]+)");
+    private static final Pattern ATTRIBUTE = Pattern.compile("([\\w-]+)\\s*=\\s*\"([^\"]*)\"");
+
+    static {
+        PACKAGE_MANAGERS.put("dnf", "DNF");
+        PACKAGE_MANAGERS.put("yum", "YUM");
+        PACKAGE_MANAGERS.put("microdnf", "MICRODNF");
+        PACKAGE_MANAGERS.put("apt-get", "APTGET");
+        PACKAGE_MANAGERS.put("apk", "APK");
+        PACKAGE_MANAGERS.put("zypper", "ZYPPER");
+    }
+
+    private final ImageFilesystem image;
+
+    public LayerInspector(ImageFilesystem image) {
+        this.image = image;
+    }
+
+    /**
+     * Inspect the image.
+     * @param patches true to include the OPatch version and the list of patches, like inspect-image-long.sh
+     * @return the image properties, or null if the patches cannot be read from the inventory files
+     */
+    public Properties inspect(boolean patches) {
+        List<String> lines = new ArrayList<>();
+        lines.add("packageManager=" + packageManager());
+
+        String javaHome = image.env("JAVA_HOME");
+        String javaVersion;
+        if (javaHome != null) {
+            lines.add("javaHome=" + javaHome);
+            javaVersion = javaVersion(javaHome);
+        } else {
+            String java = which("java");
+            javaVersion = java == null ? null : javaVersion(image.resolve(java) + "/../..");
+        }
+        if (javaVersion != null) {
+            lines.add("javaVersion=" + javaVersion);
+        }
+
+        String domainHome = image.env("DOMAIN_HOME");
+        if (domainHome != null) {
+            lines.add("domainHome=" + domainHome);
+            if (!image.hasChildren(domainHome)) {
+                lines.add("wdtModelOnly=true");
+            }
+        }
+        if (image.env("WDT_MODEL_HOME") != null) {
+            lines.add("wdtModelHome=" + image.env("WDT_MODEL_HOME"));
+        }
+
+        String wdtHome = image.env("WDT_HOME");
+        if (wdtHome == null && image.exists("/u01/wdt/weblogic-deploy/VERSION.txt")) {
+            wdtHome = "/u01/wdt";
+        }
+        if (wdtHome != null) {
+            lines.add("wdtHome=" + wdtHome);
+            lines.add("wdtVersion=" + lastWord(image.read(wdtHome + "/weblogic-deploy/VERSION.txt")));
+        }
+
+        String oracleHome = image.env("ORACLE_HOME");
+        if (oracleHome != null && !oracleHomeProperties(oracleHome, javaHome != null, patches, lines)) {
+            return null;
+        }
+
+        String osRelease = image.read("/etc/os-release");
+        if (osRelease != null) {
+            for (String line : osRelease.split("\\R")) {
+                if (line.contains("=")) {
+                    lines.add("__OS__" + line);
+                }
+            }
+        } else if (which("busybox") != null) {
+            lines.add("__OS__ID=\"bb\"");
+            lines.add("__OS__NAME=\"BusyBox\"");
+        }
+
+        Properties result = new Properties();
+        try {
+            result.load(new StringReader(String.join("\n", lines)));
+        } catch (IOException e) {
+            // not possible with a StringReader
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    private boolean oracleHomeProperties(String oracleHome, boolean hasJava, boolean patches, List<String> lines) {
+        lines.add("oracleHome=" + oracleHome);
+        String registry = image.read(oracleHome + "/inventory/registry.xml");
+        if (hasJava) {
+            lines.add("wlsVersion=" + nullToEmpty(wlsVersion(registry)));
+        }
+
+        ImageFilesystem.Node node = image.node(oracleHome);
+        if (node != null) {
+            lines.add("oracleHomeUser=" + name(image.read("/etc/passwd"), node.uid));
+            lines.add("oracleHomeGroup=" + name(image.read("/etc/group"), node.gid));
+        }
+
+        if (patches) {
+            lines.add("opatchVersion=" + nullToEmpty(firstVersion(image.read(oracleHome + "/OPatch/version.txt"))));
+            String oraclePatches = oraclePatches(oracleHome);
+            if (oraclePatches == null) {
+                return false;
+            }
+            lines.add("oraclePatches=" + oraclePatches);
+        }
+
+        List<String> products = new ArrayList<>();
+        if (registry != null) {
+            for (String line : registry.split("\\R")) {
+                if (line.contains("product-family")) {
+                    // like awk -F\" '{ print $2 }', the first quoted value on the line
+                    String[] fields = line.split("\"", -1);
+                    products.add(fields.length > 1 ? fields[1] : "");
+                }
+            }
+        }
+        lines.add("oracleInstalledProducts=" + String.join(",", products));
+        return true;
+    }
+
+    /**
+     * The applied patches, as bug;uid;description for each patch, like opatch lsinventory.
+     * The patches are read from the OPatch metadata in inventory/oneoffs, or from the patch XML files in the
+     * inventory.  If no patches are found, or there are fewer patches than in .patch_storage, the inventory
+     * format is not known and null is returned.
+     */
+    private String oraclePatches(String oracleHome) {
+        List<String> result = new ArrayList<>();
+        int patchFiles = oneoffPatches(oracleHome, result);
+        if (patchFiles == 0) {
+            patchFiles = inventoryPatches(oracleHome, result);
+        }
+
+        long stored = image.list(oracleHome + "/.patch_storage").stream()
+            .map(p -> p.substring(p.lastIndexOf('/') + 1))
+            .filter(p -> !p.isEmpty() && Character.isDigit(p.charAt(0)))
+            .map(p -> p.split("_")[0])
+            .distinct()
+            .count();
+        if (patchFiles == 0 || patchFiles < stored) {
+            logger.fine("Found {0} patches in the inventory and {1} in .patch_storage", patchFiles, stored);
+            return null;
+        }
+        return String.join(";", result);
+    }
+
+    /**
+     * Read the patches from inventory/oneoffs/[bug]/etc/config/inventory.xml, like probe-env/inspect-image-long.sh.
+     * @return the number of patches that were found
+     */
+    private int oneoffPatches(String oracleHome, List<String> result) {
+        int patchFiles = 0;
+        for (String dir : image.list(oracleHome + "/inventory/oneoffs")) {
+            String inventory = image.read(dir + "/etc/config/inventory.xml");
+            String uid = element(inventory, "unique_patch_id");
+            if (uid == null) {
+                continue;
+            }
+            patchFiles++;
+            String description = element(inventory, "patch_description");
+            result.add(dir.substring(dir.lastIndexOf('/') + 1));
+            result.add(uid);
+            result.add(description == null ? "None" : description);
+        }
+        return patchFiles;
+    }
+
+    /**
+     * Read the patches from the patch XML files in inventory/patches.
+     * @return the number of patches that were found
+     */
+    private int inventoryPatches(String oracleHome, List<String> result) {
+        int patchFiles = 0;
+        for (String file : image.list(oracleHome + "/inventory/patches")) {
+            Map<String, String> attributes = attributes(image.read(file));
+            String name = file.substring(file.lastIndexOf('/') + 1);
+            String bug = first(attributes, "patch-id", "patch_id", "patchId", "id");
+            if (bug == null) {
+                Matcher matcher = Pattern.compile("^(\\d+)").matcher(name);
+                bug = matcher.find() ? matcher.group(1) : null;
+            }
+            String uid = first(attributes, "unique-patch-id", "unique_patch_id", "uniquePatchId", "upi");
+            if (bug == null || uid == null) {
+                continue;
+            }
+            patchFiles++;
+            String description = first(attributes, "description");
+            result.add(bug);
+            result.add(uid);
+            result.add(description == null ? "None" : description);
+        }
+        return patchFiles;
+    }
+
+    private String packageManager() {
+        for (Map.Entry<String, String> manager : PACKAGE_MANAGERS.entrySet()) {
+            if (which(manager.getKey()) != null) {
+                return manager.getValue();
+            }
+        }
+        return "NONE";
+    }
+
+    /**
+     * Find an executable in the PATH of the image.
+     * @return the path of the executable, or null if it is not found
+     */
+    private String which(String executable) {
+        String path = image.env("PATH");
+        for (String dir : (path == null ? DEFAULT_PATH : path).split(":")) {
+            String candidate = (dir.endsWith("/") ? dir : dir + "/") + executable;
+            if (!dir.isEmpty() && image.exists(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private String javaVersion(String javaHome) {
+        String release = image.read(javaHome + "/release");
+        if (release == null) {
+            return null;
+        }
+        Properties values = new Properties();
+        try {
+            values.load(new StringReader(release));
+        } catch (IOException e) {
+            return null;
+        }
+        String version = values.getProperty("JAVA_VERSION");
+        return version == null ? null : version.replace("\"", "");
+    }
+
+    static String wlsVersion(String registry) {
+        if (registry == null) {
+            return null;
+        }
+        for (String line : registry.split("\\R")) {
+            Map<String, String> attributes = attributes(line);
+            if ("WebLogic Server".equals(attributes.get("name")) && attributes.containsKey("version")) {
+                return attributes.get("version");
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> attributes(String xml) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (xml != null) {
+            Matcher matcher = ATTRIBUTE.matcher(xml);
+            while (matcher.find()) {
+                result.putIfAbsent(matcher.group(1), matcher.group(2));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The text of the first element with the name, or null if the element is missing or empty.
+     */
+    private static String element(String xml, String name) {
+        if (xml == null) {
+            return null;
+        }
+        Matcher matcher = Pattern.compile("<" + name + ">([^<]*)<").matcher(xml);
+        if (!matcher.find() || matcher.group(1).trim().isEmpty()) {
+            return null;
+        }
+        return matcher.group(1).trim().replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+            .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static String first(Map<String, String> attributes, String... names) {
+        return Arrays.stream(names).map(attributes::get).filter(v -> v != null && !v.isEmpty())
+            .findFirst().orElse(null);
+    }
+
+    private static String firstVersion(String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = VERSION.matcher(text);
+        while (matcher.find()) {
+            if (Character.isDigit(matcher.group(1).charAt(0))) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The user or group name for an ID, from /etc/passwd or /etc/group.
+     */
+    private static String name(String file, int id) {
+        if (file != null) {
+            for (String line : file.split("\\R")) {
+                String[] fields = line.split(":");
+                if (fields.length > 2 && fields[2].equals(String.valueOf(id))) {
+                    return fields[0];
+                }
+            }
+        }
+        return "UNKNOWN";
+    }
+
+    /**
+     * Like sed 's/.* //', the last word of the version line.
+     */
+    private static String lastWord(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        String line = text.trim().split("\\R")[0];
+        return line.substring(line.lastIndexOf(' ') + 1);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
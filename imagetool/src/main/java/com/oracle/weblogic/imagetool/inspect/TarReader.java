@@ -0,0 +1,271 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.inspect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the entries of a tar stream, without extracting them.
+ * Supports ustar, PAX extended headers, and GNU long names, which are the formats used by image layers.
+ */
+class TarReader {
+    private static final int BLOCK_SIZE = 512;
+
+    private final InputStream in;
+    private long remaining = 0;
+    private long padding = 0;
+
+    TarReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * An entry in the tar stream.
+     */
+    static class Entry {
+        String name;
+        String linkName;
+        char type;
+        long size;
+        int uid;
+        int gid;
+
+        boolean isDirectory() {
+            return type == '5';
+        }
+
+        boolean isSymbolicLink() {
+            return type == '2';
+        }
+
+        boolean isHardLink() {
+            return type == '1';
+        }
+
+        boolean isFile() {
+            return type == '0' || type == 0 || type == '7';
+        }
+    }
+
+    /**
+     * Move to the next entry.  The content of the current entry is skipped, if it was not read.
+     * @return the next entry, or null at the end of the stream
+     * @throws IOException if the stream cannot be read, or is not a tar stream
+     */
+    Entry next() throws IOException {
+        Map<String, String> pax = new HashMap<>();
+        String longName = null;
+        String longLink = null;
+        while (true) {
+            skip(remaining + padding);
+            byte[] header = new byte[BLOCK_SIZE];
+            if (!readBlock(header)) {
+                return null;
+            }
+            if (isZero(header)) {
+                return null;
+            }
+            Entry entry = new Entry();
+            entry.type = (char) header[156];
+            entry.size = number(header, 124, 12);
+            remaining = entry.size;
+            padding = (BLOCK_SIZE - entry.size % BLOCK_SIZE) % BLOCK_SIZE;
+
+            switch (entry.type) {
+                case 'x':
+                    pax.putAll(paxRecords(content()));
+                    continue;
+                case 'g':
+                    // global headers only have defaults that are not used here
+                    content();
+                    continue;
+                case 'L':
+                    longName = trim(content());
+                    continue;
+                case 'K':
+                    longLink = trim(content());
+                    continue;
+                default:
+                    break;
+            }
+
+            String name = string(header, 0, 100);
+            if ("ustar".equals(string(header, 257, 5))) {
+                String prefix = string(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+            entry.name = pax.getOrDefault("path", longName != null ? longName : name);
+            entry.linkName = pax.getOrDefault("linkpath", longLink != null ? longLink : string(header, 157, 100));
+            entry.uid = pax.containsKey("uid") ? Integer.parseInt(pax.get("uid")) : (int) number(header, 108, 8);
+            entry.gid = pax.containsKey("gid") ? Integer.parseInt(pax.get("gid")) : (int) number(header, 116, 8);
+            if (pax.containsKey("size")) {
+                entry.size = Long.parseLong(pax.get("size"));
+                remaining = entry.size;
+                padding = (BLOCK_SIZE - entry.size % BLOCK_SIZE) % BLOCK_SIZE;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * The content of the current entry.  The stream is not closed by the caller.
+     * @return a stream that ends at the end of the current entry
+     */
+    InputStream stream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int result = in.read();
+                if (result < 0) {
+                    throw new EOFException("Unexpected end of tar stream");
+                }
+                remaining--;
+                return result;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of tar stream");
+                }
+                remaining -= read;
+                return read;
+            }
+
+            @Override
+            public void close() {
+                // the tar stream remains open
+            }
+        };
+    }
+
+    /**
+     * Read the content of the current entry into memory.
+     * @return the content
+     * @throws IOException if the stream cannot be read
+     */
+    byte[] content() throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream((int) Math.min(remaining, BLOCK_SIZE * 16));
+        byte[] buffer = new byte[8192];
+        InputStream entry = stream();
+        int read;
+        while ((read = entry.read(buffer)) != -1) {
+            result.write(buffer, 0, read);
+        }
+        return result.toByteArray();
+    }
+
+    private boolean readBlock(byte[] block) throws IOException {
+        int total = 0;
+        while (total < block.length) {
+            int read = in.read(block, total, block.length - total);
+            if (read < 0) {
+                if (total == 0) {
+                    return false;
+                }
+                throw new EOFException("Unexpected end of tar stream");
+            }
+            total += read;
+        }
+        return true;
+    }
+
+    private void skip(long count) throws IOException {
+        long left = count;
+        byte[] buffer = new byte[8192];
+        while (left > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+            if (read < 0) {
+                throw new EOFException("Unexpected end of tar stream");
+            }
+            left -= read;
+        }
+        remaining = 0;
+        padding = 0;
+    }
+
+    static Map<String, String> paxRecords(byte[] bytes) {
+        // each record is "<length> <key>=<value>\n", where the length includes the whole record
+        Map<String, String> result = new HashMap<>();
+        int index = 0;
+        while (index < bytes.length) {
+            int space = index;
+            while (space < bytes.length && bytes[space] != ' ') {
+                space++;
+            }
+            if (space >= bytes.length) {
+                break;
+            }
+            int length = Integer.parseInt(new String(bytes, index, space - index, StandardCharsets.US_ASCII));
+            if (length <= 0) {
+                break;
+            }
+            String record = new String(bytes, space + 1, index + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                result.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            index += length;
+        }
+        return result;
+    }
+
+    private static long number(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            // base-256, for values that do not fit in octal
+            long result = header[offset] & 0x7f;
+            for (int i = 1; i < length; i++) {
+                result = (result << 8) | (header[offset + i] & 0xff);
+            }
+            return result;
+        }
+        String value = string(header, offset, length).trim();
+        if (value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid tar header", e);
+        }
+    }
+
+    private static String string(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trim(byte[] value) {
+        String result = new String(value, StandardCharsets.UTF_8);
+        int end = result.indexOf('\0');
+        return end < 0 ? result : result.substring(0, end);
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -100,6 +100,19 @@ public enum FmwInstallerType {
         return products;
     }
 
+    /**
+     * The product families that are installed, like oracleInstalledProducts from the image probe.
+     * @return a comma-separated list that {@link #fromProductList(String)} maps to this type
+     */
+    public String productList() {
+        return products.stream()
+            .filter(e -> !AruProduct.FMWPLAT.equals(e))
+            .filter(e -> !AruProduct.JDEV.equals(e))
+            .map(Enum::name)
+            .sorted()
+            .collect(Collectors.joining(","));
+    }
+
     /**
      * Create the FMW installer type Enum from the String value.
      * @param value the installer type string, ignoring case.
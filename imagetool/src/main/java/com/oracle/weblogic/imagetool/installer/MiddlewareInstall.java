@@ -79,9 +79,20 @@ public class MiddlewareInstall {
      * @throws IOException if any of the copy commands fails.
      */
     public void copyFiles(CacheStore cacheStore, String buildContextDir) throws IOException {
+        copyFiles(cacheStore, buildContextDir, false);
+    }
+
+    /**
+     * Copy all necessary installers to the build context directory, or link to them.
+     * @param cacheStore cache where the installers are defined.
+     * @param buildContextDir the directory where the installers should be copied.
+     * @param link create symbolic links to the cached installers instead of copies (for a streamed build context)
+     * @throws IOException if any of the copy commands fails.
+     */
+    public void copyFiles(CacheStore cacheStore, String buildContextDir, boolean link) throws IOException {
         logger.entering();
         for (MiddlewareInstallPackage installPackage: installerFiles) {
-            Path filePath = installPackage.installer.copyFile(cacheStore, buildContextDir);
+            Path filePath = installPackage.installer.copyFile(cacheStore, buildContextDir, link);
             installPackage.installerFilename = filePath.getFileName().toString();
             installPackage.jarName = getJarNameFromInstaller(filePath);
             installPackage.isZip = installPackage.installerFilename.endsWith(".zip");
@@ -0,0 +1,228 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A handler that publishes log records to another handler from a background thread, so that the threads that log
+ * do not wait for the records to be formatted and written.  The records are held in a bounded queue.  When the
+ * queue is full, the thread that logs waits for space (BLOCK), or the record is dropped (DROP).
+ * The records are published in batches, and the target handler is flushed after each batch.  The message of a record
+ * with parameters is formatted before the record is queued.
+ *
+ * <p>The handler is configured in logging.properties, with the properties prefixed by
+ * com.oracle.weblogic.imagetool.logging.AsyncHandler:
+ * target (the class name of the handler, default java.util.logging.FileHandler, which is configured with its own
+ * properties), queueSize (default 4096), policy (BLOCK or DROP, default BLOCK), batchSize (default 256),
+ * and level (default ALL).
+ */
+public class AsyncHandler extends Handler {
+    private static final String PREFIX = AsyncHandler.class.getName() + ".";
+    private static final long POLL_MILLIS = 100;
+    private static final long CLOSE_MILLIS = 5000;
+
+    /**
+     * What to do with a record when the queue is full.
+     */
+    public enum Policy {
+        BLOCK,
+        DROP
+    }
+
+    private final Handler target;
+    private final BlockingQueue<LogRecord> queue;
+    private final Policy policy;
+    private final int batchSize;
+    private final AtomicLong dropped = new AtomicLong();
+    // formats the messages of records with parameters when the target has no formatter
+    private final Formatter messageFormatter = new SimpleFormatter();
+    private final Thread worker;
+    private volatile boolean closed = false;
+
+    /**
+     * Create the handler and its target handler from the logging configuration.
+     * @throws ReflectiveOperationException if the target handler cannot be created
+     */
+    public AsyncHandler() throws ReflectiveOperationException {
+        this((Handler) Class.forName(property("target", FileHandler.class.getName())).getDeclaredConstructor()
+                .newInstance(),
+            Integer.parseInt(property("queueSize", "4096")),
+            Policy.valueOf(property("policy", Policy.BLOCK.name()).toUpperCase()),
+            Integer.parseInt(property("batchSize", "256")));
+        setLevel(Level.parse(property("level", Level.ALL.getName())));
+    }
+
+    /**
+     * Create a handler for a target handler.
+     * @param target    the handler that formats and writes the records
+     * @param queueSize the maximum number of records that are waiting to be published
+     * @param policy    what to do with a record when the queue is full
+     * @param batchSize the maximum number of records published before the target is flushed
+     */
+    public AsyncHandler(Handler target, int queueSize, Policy policy, int batchSize) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.policy = policy;
+        this.batchSize = Math.max(1, batchSize);
+        worker = new Thread(this::publishQueued, "imagetool-log");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private static String property(String name, String defaultValue) {
+        String value = LogManager.getLogManager().getProperty(PREFIX + name);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * The handler that formats and writes the records.
+     * @return the target handler
+     */
+    public Handler target() {
+        return target;
+    }
+
+    /**
+     * The number of records that were dropped because the queue was full.
+     * @return the number of records
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        // the caller is inferred from the stack of the thread that logs, if it was not set by the logger
+        record.getSourceClassName();
+        LogRecord queued = snapshot(record);
+        if (queue.offer(queued)) {
+            return;
+        }
+        if (policy == Policy.DROP) {
+            dropped.incrementAndGet();
+            return;
+        }
+        try {
+            queue.put(queued);
+        } catch (InterruptedException e) {
+            dropped.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A copy of a record with parameters, with the message already localized and formatted.  The parameters can be
+     * mutable objects that the thread that logs changes before the record is published.
+     */
+    private LogRecord snapshot(LogRecord record) {
+        Object[] parameters = record.getParameters();
+        if (parameters == null || parameters.length == 0) {
+            return record;
+        }
+        Formatter formatter = target.getFormatter() == null ? messageFormatter : target.getFormatter();
+        LogRecord result = new LogRecord(record.getLevel(), formatter.formatMessage(record));
+        result.setLoggerName(record.getLoggerName());
+        result.setMillis(record.getMillis());
+        result.setSequenceNumber(record.getSequenceNumber());
+        result.setSourceClassName(record.getSourceClassName());
+        result.setSourceMethodName(record.getSourceMethodName());
+        result.setThreadID(record.getThreadID());
+        result.setThrown(record.getThrown());
+        return result;
+    }
+
+    private void publishQueued() {
+        List<LogRecord> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                LogRecord first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                // close() waits for the queue to be empty, the worker is only interrupted if that takes too long
+                return;
+            }
+        }
+    }
+
+    private void publishBatch(List<LogRecord> batch) {
+        try {
+            for (LogRecord record : batch) {
+                target.publish(record);
+            }
+            target.flush();
+        } catch (RuntimeException e) {
+            reportError("Unable to publish log records", e, ErrorManager.WRITE_FAILURE);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Flush the target handler.  Records that are still in the queue are published by the next batch.
+     */
+    @Override
+    public void flush() {
+        target.flush();
+    }
+
+    /**
+     * Publish the records in the queue, and close the target handler.  Records published after close are ignored.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            worker.join(CLOSE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker.interrupt();
+        // publish anything left by a worker that did not finish in time
+        List<LogRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        publishBatch(remaining);
+        if (dropped.get() > 0) {
+            target.publish(new LogRecord(Level.WARNING, "Dropped " + dropped.get()
+                + " log records because the queue of " + getClass().getSimpleName() + " was full"));
+        }
+        target.close();
+    }
+
+    /**
+     * Close the asynchronous handlers of the root logger, so that queued records are written before the JVM exits.
+     */
+    public static void closeAll() {
+        for (Handler handler : Logger.getLogger("").getHandlers()) {
+            if (handler instanceof AsyncHandler) {
+                handler.close();
+            }
+        }
+    }
+}
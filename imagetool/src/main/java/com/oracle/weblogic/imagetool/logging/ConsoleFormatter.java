@@ -79,7 +79,7 @@ public class ConsoleFormatter extends Formatter {
      * @return the formatted log record
      */
     @Override
-    public synchronized String format(LogRecord logRecord) {
+    public String format(LogRecord logRecord) {
         StringBuilder sb = new StringBuilder();
 
         // Level
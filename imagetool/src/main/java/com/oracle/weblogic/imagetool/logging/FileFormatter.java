@@ -5,8 +5,9 @@ package com.oracle.weblogic.imagetool.logging;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.text.MessageFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
 import java.util.regex.Matcher;
@@ -17,30 +18,19 @@ import java.util.regex.Pattern;
  */
 public class FileFormatter extends Formatter {
     private static final String CATALOG_KEY_PATTERN_STRING = "^[A-Z]{3,10}?-[0-9]{3,5}?$";
-    private static final Pattern CATALOG_KEY_PATTERN = Pattern.compile(CATALOG_KEY_PATTERN_STRING);
+    static final Pattern CATALOG_KEY_PATTERN = Pattern.compile(CATALOG_KEY_PATTERN_STRING);
 
-    private static final String DATE_FORMAT_STRING = "####<{0,date,yyyy.MM.dd} {0,time,HH:mm:ss}>";
+    // formatters are immutable, so records can be formatted by several threads at the same time
+    private static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("'####<'yyyy.MM.dd HH:mm:ss'>'").withZone(ZoneId.systemDefault());
     private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
-    private Object[] args;
-    private MessageFormat formatter;
-    private Date date;
-
-    /**
-     * The constructor.
-     */
-    public FileFormatter() {
-        this.date = new Date();
-        this.args = new Object[1];
-        this.formatter = new MessageFormat(DATE_FORMAT_STRING);
-    }
-
     /**
      * Remove ANSI color tokens from messages to be logged to a file.
      * @param text message to be logged
      * @return message with color tokens removed
      */
-    private String replaceColorTokens(String text) {
+    static String replaceColorTokens(String text) {
         Matcher matcher = ConsoleFormatter.colorPattern.matcher(text);
 
         StringBuilder builder = new StringBuilder();
@@ -67,15 +57,9 @@ public class FileFormatter extends Formatter {
      * @return the formatted log record
      */
     @Override
-    public synchronized String format(LogRecord record) {
+    public String format(LogRecord record) {
         StringBuilder sb = new StringBuilder();
-
-        date.setTime(record.getMillis());
-        args[0] = date;
-
-        StringBuffer text = new StringBuffer();
-        formatter.format(args, text, null);
-        sb.append(text);
+        sb.append(DATE_FORMAT.format(Instant.ofEpochMilli(record.getMillis())));
 
         // Level
         sb.append(" <");
@@ -0,0 +1,53 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+import org.json.JSONObject;
+
+/**
+ * Formats each log record as a JSON object on a single line, for log collectors.
+ * The attributes are time, level, logger, class, method, key (the message key, like IMG-0001), message,
+ * and thrown (the stack trace).  Attributes without a value are not written.
+ */
+public class JsonLinesFormatter extends Formatter {
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder result = new StringBuilder(256).append('{');
+        append(result, "time", Instant.ofEpochMilli(record.getMillis()).toString());
+        append(result, "level", record.getLevel().getName());
+        append(result, "logger", record.getLoggerName());
+        append(result, "class", record.getSourceClassName());
+        append(result, "method", record.getSourceMethodName());
+        String messageKey = record.getMessage();
+        if (messageKey != null && FileFormatter.CATALOG_KEY_PATTERN.matcher(messageKey).matches()) {
+            append(result, "key", messageKey);
+        }
+        append(result, "message", FileFormatter.replaceColorTokens(formatMessage(record)));
+        if (record.getThrown() != null) {
+            StringWriter trace = new StringWriter();
+            try (PrintWriter writer = new PrintWriter(trace)) {
+                record.getThrown().printStackTrace(writer);
+            }
+            append(result, "thrown", trace.toString());
+        }
+        return result.append('}').append(LINE_SEPARATOR).toString();
+    }
+
+    private static void append(StringBuilder result, String name, String value) {
+        if (value != null) {
+            if (result.length() > 1) {
+                result.append(',');
+            }
+            result.append(JSONObject.quote(name)).append(':').append(JSONObject.quote(value));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.logging;
+
+import java.io.IOException;
+import java.util.logging.FileHandler;
+import java.util.logging.XMLFormatter;
+
+/**
+ * A file handler that writes JSON lines with {@link JsonLinesFormatter}.
+ * It is configured in logging.properties like java.util.logging.FileHandler, with the properties prefixed by
+ * com.oracle.weblogic.imagetool.logging.JsonLinesHandler, like pattern, count, and level.
+ */
+public class JsonLinesHandler extends FileHandler {
+
+    /**
+     * Create the handler from the logging configuration.
+     * @throws IOException if the log file cannot be opened
+     */
+    public JsonLinesHandler() throws IOException {
+        super();
+        // FileHandler uses XMLFormatter when no formatter is configured for this handler
+        if (getFormatter() instanceof XMLFormatter) {
+            setFormatter(new JsonLinesFormatter());
+        }
+    }
+}
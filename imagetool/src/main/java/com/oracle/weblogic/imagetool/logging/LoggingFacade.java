@@ -3,11 +3,17 @@
 
 package com.oracle.weblogic.imagetool.logging;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import com.oracle.weblogic.imagetool.util.XPathUtil;
 import org.w3c.dom.Document;
@@ -16,6 +22,38 @@ import org.w3c.dom.Document;
 public class LoggingFacade {
 
     private static final String CLASS = LoggingFacade.class.getName();
+    // StackWalker (Java 9 and later) finds the caller without capturing the whole stack, the tool still runs on 8
+    private static final Object STACK_WALKER;
+    private static final MethodHandle WALK;
+    private static final MethodHandle FRAME_CLASS;
+    private static final MethodHandle FRAME_METHOD;
+
+    static {
+        Object walker = null;
+        MethodHandle walk = null;
+        MethodHandle frameClass = null;
+        MethodHandle frameMethod = null;
+        try {
+            Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            Class<?> frameType = Class.forName("java.lang.StackWalker$StackFrame");
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            walker = walkerClass.getMethod("getInstance").invoke(null);
+            walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+                .asType(MethodType.methodType(Object.class, Object.class, Function.class));
+            frameClass = lookup.findVirtual(frameType, "getClassName", MethodType.methodType(String.class))
+                .asType(MethodType.methodType(String.class, Object.class));
+            frameMethod = lookup.findVirtual(frameType, "getMethodName", MethodType.methodType(String.class))
+                .asType(MethodType.methodType(String.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            // Java 8, use the stack trace of a Throwable
+            walker = null;
+        }
+        STACK_WALKER = walker;
+        WALK = walk;
+        FRAME_CLASS = frameClass;
+        FRAME_METHOD = frameMethod;
+    }
+
     private final Logger logger;
 
     /**
@@ -29,11 +67,13 @@ public class LoggingFacade {
         final Logger parentLogger = Logger.getAnonymousLogger().getParent();
         final Handler[] handlers = parentLogger.getHandlers();
         for (final Handler handler : handlers) {
-            if (handler instanceof FileHandler) {
-                handler.setFormatter(new FileFormatter());
+            // the asynchronous handler publishes to a target handler, which formats the records
+            final Handler formatted = handler instanceof AsyncHandler ? ((AsyncHandler) handler).target() : handler;
+            if (formatted instanceof FileHandler && !(formatted instanceof JsonLinesHandler)) {
+                formatted.setFormatter(new FileFormatter());
             }
-            if (handler instanceof ConsoleHandler) {
-                handler.setFormatter(new ConsoleFormatter());
+            if (formatted instanceof ConsoleHandler) {
+                formatted.setFormatter(new ConsoleFormatter());
             }
         }
     }
@@ -76,6 +116,18 @@ public class LoggingFacade {
         }
     }
 
+    /**
+     * Logs a message at the CONFIG level.  The message is only built if it will be logged.
+     *
+     * @param msg supplier of the message to log
+     */
+    public void config(Supplier<String> msg) {
+        if (isConfigEnabled()) {
+            CallerDetails details = inferCaller();
+            logger.logp(Level.CONFIG, details.clazz, details.method, msg);
+        }
+    }
+
     /** Logs a method entry. The calling class and method names will be inferred. */
     public void entering() {
         if (isFinerEnabled()) {
@@ -119,6 +171,19 @@ public class LoggingFacade {
         }
     }
 
+    /**
+     * Logs a method exit, with a result that is only computed if it will be logged, like a large payload.
+     * The calling class and method names will be inferred.
+     *
+     * @param result supplier of the object to log which is the result of the method call
+     */
+    public void exiting(Supplier<?> result) {
+        if (isFinerEnabled()) {
+            CallerDetails details = inferCaller();
+            logger.exiting(details.clazz, details.method, result.get());
+        }
+    }
+
     /**
      * Logs a message at the FINE level.
      *
@@ -157,6 +222,18 @@ public class LoggingFacade {
         }
     }
 
+    /**
+     * Logs a message at the FINE level.  The message is only built if it will be logged.
+     *
+     * @param msg supplier of the message to log
+     */
+    public void fine(Supplier<String> msg) {
+        if (isFineEnabled()) {
+            CallerDetails details = inferCaller();
+            logger.logp(Level.FINE, details.clazz, details.method, msg);
+        }
+    }
+
     /**
      * Logs a message at the FINER level.
      *
@@ -195,6 +272,18 @@ public class LoggingFacade {
         }
     }
 
+    /**
+     * Logs a message at the FINER level.  The message is only built if it will be logged.
+     *
+     * @param msg supplier of the message to log
+     */
+    public void finer(Supplier<String> msg) {
+        if (isFinerEnabled()) {
+            CallerDetails details = inferCaller();
+            logger.logp(Level.FINER, details.clazz, details.method, msg);
+        }
+    }
+
     /**
      * Logs a message at the FINEST level.
      *
@@ -245,6 +334,18 @@ public class LoggingFacade {
         }
     }
 
+    /**
+     * Logs a message at the FINEST level.  The message is only built if it will be logged.
+     *
+     * @param msg supplier of the message to log
+     */
+    public void finest(Supplier<String> msg) {
+        if (isFinestEnabled()) {
+            CallerDetails details = inferCaller();
+            logger.logp(Level.FINEST, details.clazz, details.method, msg);
+        }
+    }
+
     /**
      * Returns the level at which the underlying logger operates.
      *
@@ -322,6 +423,18 @@ public class LoggingFacade {
         }
     }
 
+    /**
+     * Logs a message at the INFO level.  The message is only built if it will be logged.
+     *
+     * @param msg supplier of the message to log
+     */
+    public void info(Supplier<String> msg) {
+        if (isInfoEnabled()) {
+            CallerDetails details = inferCaller();
+            logger.logp(Level.INFO, details.clazz, details.method, msg);
+        }
+    }
+
     /**
      * Checks if a message at CONFIG level would actually be logged.
      *
@@ -479,6 +592,18 @@ public class LoggingFacade {
         }
     }
 
+    /**
+     * Logs a message at the SEVERE level.  The message is only built if it will be logged.
+     *
+     * @param msg supplier of the message to log
+     */
+    public void severe(Supplier<String> msg) {
+        if (isSevereEnabled()) {
+            CallerDetails details = inferCaller();
+            logger.logp(Level.SEVERE, details.clazz, details.method, msg);
+        }
+    }
+
     /**
      * Logs that an exception will be thrown. The calling class and method names will be inferred.
      *
@@ -531,13 +656,40 @@ public class LoggingFacade {
         }
     }
 
+    /**
+     * Logs a message at the WARNING level.  The message is only built if it will be logged.
+     *
+     * @param msg supplier of the message to log
+     */
+    public void warning(Supplier<String> msg) {
+        if (isWarningEnabled()) {
+            CallerDetails details = inferCaller();
+            logger.logp(Level.WARNING, details.clazz, details.method, msg);
+        }
+    }
+
     /**
      * Obtains caller details, class name and method, to be provided to the actual Logger. This code
      * is adapted from ODLLogRecord, which should yield consistency in reporting using PlatformLogger
-     * versus a raw (ODL) Logger. JDK Logger does something similar but utilizes native methods
-     * directly.
+     * versus a raw (ODL) Logger. On Java 9 and later, only the frames up to the caller are walked.
      */
     CallerDetails inferCaller() {
+        if (STACK_WALKER != null) {
+            try {
+                Object details = (Object) WALK.invokeExact(STACK_WALKER,
+                    (Function<Stream<Object>, CallerDetails>) LoggingFacade::firstCaller);
+                return (CallerDetails) details;
+            } catch (Throwable e) {
+                // fall back to the stack trace
+            }
+        }
+        return inferCallerFromStackTrace();
+    }
+
+    /**
+     * Find the caller in the stack trace of a Throwable, on Java 8.
+     */
+    CallerDetails inferCallerFromStackTrace() {
         CallerDetails details = new CallerDetails();
         Throwable t = new Throwable();
         StackTraceElement[] stack = t.getStackTrace();
@@ -558,8 +710,33 @@ public class LoggingFacade {
         return details;
     }
 
+    private static CallerDetails firstCaller(Stream<Object> frames) {
+        CallerDetails details = new CallerDetails();
+        frames.filter(f -> !CLASS.equals(frameClass(f))).findFirst().ifPresent(f -> {
+            details.clazz = frameClass(f);
+            details.method = frameMethod(f);
+        });
+        return details;
+    }
+
+    private static String frameClass(Object frame) {
+        try {
+            return (String) FRAME_CLASS.invokeExact(frame);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static String frameMethod(Object frame) {
+        try {
+            return (String) FRAME_METHOD.invokeExact(frame);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
     /** Holds caller details obtained by inference. */
-    class CallerDetails {
+    static class CallerDetails {
         String clazz;
         String method;
     }
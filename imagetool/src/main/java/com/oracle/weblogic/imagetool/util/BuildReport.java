@@ -0,0 +1,157 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+/**
+ * Durations and counters collected while an image is built, written as JSON with --timingReport.
+ * The report is bound to the thread that runs the build command, and to the tasks started by that command
+ * (see {@link TaskGraph}).  Code that runs without a bound report, like unit tests, records nothing.
+ * Phases that run concurrently are timed separately, so the sum of the phase durations can exceed the total.
+ */
+public class BuildReport {
+    private static final ThreadLocal<BuildReport> current = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final Map<String, PhaseTotal> phases = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    /**
+     * The report bound to the current thread.
+     * @return the current report, or null if no report is bound to this thread
+     */
+    public static BuildReport current() {
+        return current.get();
+    }
+
+    /**
+     * Bind a report to the current thread.
+     * @param report the report to bind, or null to remove the binding
+     */
+    public static void attach(BuildReport report) {
+        if (report == null) {
+            current.remove();
+        } else {
+            current.set(report);
+        }
+    }
+
+    /**
+     * Start timing a phase of the build.  The phase ends when the returned object is closed.
+     * @param name name of the phase
+     * @return the running phase, use with try-with-resources
+     */
+    public static Phase phase(String name) {
+        return new Phase(current.get(), name);
+    }
+
+    /**
+     * Add to a counter in the current report, like cache hits or retries.
+     * @param name  name of the counter
+     * @param delta the amount to add
+     */
+    public static void count(String name, long delta) {
+        BuildReport report = current.get();
+        if (report != null) {
+            report.counters.computeIfAbsent(name, k -> new AtomicLong()).addAndGet(delta);
+        }
+    }
+
+    /**
+     * Add a descriptive value to the report, like the build ID.
+     * @param name  name of the value
+     * @param value the value, ignored if null
+     * @return this
+     */
+    public BuildReport attribute(String name, Object value) {
+        if (value != null) {
+            attributes.put(name, value);
+        }
+        return this;
+    }
+
+    /**
+     * The collected values as JSON.
+     * @return a JSON object with the attributes, the total duration, phases, and counters
+     */
+    public JSONObject toJson() {
+        JSONObject result = new JSONObject(attributes);
+        result.put("totalMillis", (System.nanoTime() - start) / 1000000);
+        JSONObject phaseJson = new JSONObject();
+        phases.forEach((name, total) -> phaseJson.put(name, new JSONObject()
+            .put("count", total.count.get())
+            .put("millis", total.nanos.get() / 1000000)
+            .put("bytes", total.bytes.get())));
+        result.put("phases", phaseJson);
+        JSONObject counterJson = new JSONObject();
+        counters.forEach((name, value) -> counterJson.put(name, value.get()));
+        result.put("counters", counterJson);
+        return result;
+    }
+
+    /**
+     * Write the report to a file, replacing the file if it exists.
+     * @param file the JSON file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(file, toJson().toString(2).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class PhaseTotal {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong nanos = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+    }
+
+    /**
+     * A phase of the build that is being timed.
+     */
+    public static class Phase implements AutoCloseable {
+        private final BuildReport report;
+        private final String name;
+        private final long start;
+        private long bytes = 0;
+
+        private Phase(BuildReport report, String name) {
+            this.report = report;
+            this.name = name;
+            start = System.nanoTime();
+        }
+
+        /**
+         * Add to the number of bytes moved (downloaded or copied) during this phase.
+         * @param value number of bytes
+         * @return this
+         */
+        public Phase bytes(long value) {
+            bytes += value;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (report != null) {
+                PhaseTotal total = report.phases.computeIfAbsent(name, k -> new PhaseTotal());
+                total.count.incrementAndGet();
+                total.nanos.addAndGet(System.nanoTime() - start);
+                total.bytes.addAndGet(bytes);
+            }
+        }
+    }
+}
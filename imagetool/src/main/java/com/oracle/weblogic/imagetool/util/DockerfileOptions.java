@@ -37,6 +37,11 @@ public class DockerfileOptions {
 
     private static final String DEFAULT_ORAINV_DIR = "/u01/oracle/oraInventory";
 
+    // Build ID label value used for intermediate stages when the build cache is enabled
+    public static final String CACHED_BUILD_ID = "cached";
+    // Location where the build context is mounted for RUN instructions when using BuildKit
+    private static final String BUILD_CONTEXT_MOUNT = "/tmp/imagetool-context";
+
     final String buildId;
 
     private boolean useWdt;
@@ -66,6 +71,8 @@ public class DockerfileOptions {
     private MiddlewareInstall mwInstallers;
     private boolean domainGroupAsUser;
     private boolean usingBusybox;
+    private boolean useBuildCache;
+    private boolean useBuildKit;
 
     // WDT values
     private String wdtHome;
@@ -97,6 +104,8 @@ public class DockerfileOptions {
         skipMiddlewareInstall = false;
         domainGroupAsUser = false;
         usingBusybox = false;
+        useBuildCache = false;
+        useBuildKit = false;
 
         javaHome = DEFAULT_JAVA_HOME;
         oracleHome = DEFAULT_ORACLE_HOME;
@@ -307,6 +316,10 @@ public class DockerfileOptions {
         return this;
     }
 
+    public PackageManagerType packageManager() {
+        return pkgMgr;
+    }
+
     @SuppressWarnings("unused")
     public boolean useYum() {
         return pkgMgr == PackageManagerType.YUM;
@@ -1104,4 +1117,82 @@ public class DockerfileOptions {
         usingBusybox = value;
         return this;
     }
+
+    /**
+     * Returns true if the Dockerfile should allow the builder to reuse layers from previous builds.
+     *
+     * @return true if the build cache should be used.
+     */
+    @SuppressWarnings("unused")
+    public boolean useBuildCache() {
+        return useBuildCache;
+    }
+
+    /**
+     * Allow the builder to reuse layers from previous builds when this value is true.
+     * The unique build ID is only applied at the end of the final stage, and all intermediate stages
+     * are labeled with a stable value, so that unchanged stages produce identical layers.
+     *
+     * @param value true to use the build cache, false otherwise.
+     * @return this
+     */
+    public DockerfileOptions useBuildCache(boolean value) {
+        useBuildCache = value;
+        return this;
+    }
+
+    /**
+     * The build ID label value for the intermediate stages of the build.
+     *
+     * @return the unique build ID, or a stable value if the build cache is enabled.
+     */
+    @SuppressWarnings("unused")
+    public String stageBuildId() {
+        return useBuildCache ? CACHED_BUILD_ID : buildId;
+    }
+
+    /**
+     * Returns true if the Dockerfile should use BuildKit features.
+     * When true, installers and patches are read from a bind mount of the build context instead of being
+     * copied into the image with COPY, so that they are not persisted in any image layer.
+     *
+     * @return true if BuildKit should be used.
+     */
+    @SuppressWarnings("unused")
+    public boolean useBuildKit() {
+        return useBuildKit;
+    }
+
+    /**
+     * Use BuildKit features in the Dockerfile when this value is true.
+     *
+     * @param value true if the builder supports BuildKit, false otherwise.
+     * @return this
+     */
+    public DockerfileOptions useBuildKit(boolean value) {
+        useBuildKit = value;
+        return this;
+    }
+
+    /**
+     * The directory where files of the build context are mounted with RUN --mount when using BuildKit.
+     * Only the files that a step reads are mounted, never the whole build context, because the build context
+     * also holds the Dockerfile, which changes for every build and would invalidate the cached layers.
+     *
+     * @return the mount point for files of the build context.
+     */
+    @SuppressWarnings("unused")
+    public String contextMount() {
+        return BUILD_CONTEXT_MOUNT;
+    }
+
+    /**
+     * The directory in the build stage where the installers and patches can be read from.
+     *
+     * @return the build context mount point when using BuildKit, otherwise the temp directory.
+     */
+    @SuppressWarnings("unused")
+    public String installerDir() {
+        return useBuildKit ? BUILD_CONTEXT_MOUNT : tempDirectory;
+    }
 }
@@ -55,7 +55,7 @@ public class HttpUtil {
      * @return a new instance of a DocumentBuilder
      * @throws ParserConfigurationException if the underlying JVM XML parser configuration throws an error
      */
-    public static DocumentBuilder documentBuilder() throws ParserConfigurationException {
+    public static synchronized DocumentBuilder documentBuilder() throws ParserConfigurationException {
         if (builderFactory == null) {
             builderFactory = DocumentBuilderFactory.newInstance();
             // Prevent XXE attacks
@@ -102,7 +102,7 @@ public class HttpUtil {
         String xmlString = getHttpExecutor(username,password).execute(Request.Get(url).connectTimeout(30000)
                 .socketTimeout(30000))
                 .returnContent().asString();
-        logger.exiting(xmlString);
+        logger.exiting(() -> xmlString);
         return parseXmlString(xmlString);
     }
 
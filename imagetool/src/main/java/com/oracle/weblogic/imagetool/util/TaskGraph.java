@@ -0,0 +1,161 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+
+/**
+ * A small graph of named tasks that are run concurrently, as soon as the tasks they depend on have completed.
+ * If any task fails, the tasks that have not finished are cancelled (running tasks are interrupted),
+ * and the first failure is thrown from {@link #run()}.
+ */
+public class TaskGraph {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(TaskGraph.class);
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    /**
+     * A unit of work in the task graph.
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Add a task to the graph.
+     * @param name      unique name of the task, used for logging and to reference this task as a dependency
+     * @param task      the work to be done
+     * @param dependsOn names of tasks, added previously, that must complete before this task is started
+     * @return this
+     */
+    public TaskGraph add(String name, Task task, String... dependsOn) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate task name " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!nodes.containsKey(dependency)) {
+                throw new IllegalArgumentException("Task " + name + " depends on unknown task " + dependency);
+            }
+        }
+        nodes.put(name, new Node(name, task, dependsOn));
+        return this;
+    }
+
+    /**
+     * Run all tasks in the graph, and wait for them to complete.
+     * @throws Exception the first exception thrown by any of the tasks
+     */
+    public void run() throws Exception {
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nodes.size(), new DaemonThreadFactory());
+        // tasks record their timings in the report of the thread that runs the graph
+        BuildReport report = BuildReport.current();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Map<String, CompletableFuture<Void>> futures = new ConcurrentHashMap<>();
+        // hold all tasks until the graph is fully wired, so that a failure can always cancel every other task
+        CompletableFuture<Void> start = new CompletableFuture<>();
+        try {
+            for (Node node : nodes.values()) {
+                CompletableFuture<Void> future;
+                if (node.dependsOn.length == 0) {
+                    future = start.thenRunAsync(() -> node.execute(report), executor);
+                } else {
+                    CompletableFuture<?>[] dependencies = new CompletableFuture<?>[node.dependsOn.length];
+                    for (int i = 0; i < dependencies.length; i++) {
+                        dependencies[i] = futures.get(node.dependsOn[i]);
+                    }
+                    future = CompletableFuture.allOf(dependencies).thenRunAsync(() -> node.execute(report), executor);
+                }
+                future.whenComplete((result, error) -> {
+                    if (error != null && failure.compareAndSet(null, unwrap(error))) {
+                        logger.fine("Task {0} failed, cancelling remaining tasks", node.name);
+                        futures.values().forEach(f -> f.cancel(true));
+                        executor.shutdownNow();
+                    }
+                });
+                futures.put(node.name, future);
+            }
+            start.complete(null);
+
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).get();
+        } catch (ExecutionException | CancellationException e) {
+            Throwable cause = failure.get() != null ? failure.get() : unwrap(e);
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        } catch (InterruptedException e) {
+            futures.values().forEach(f -> f.cancel(true));
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable result = error;
+        while ((result instanceof CompletionException || result instanceof ExecutionException)
+            && result.getCause() != null) {
+            result = result.getCause();
+        }
+        return result;
+    }
+
+    private static class Node {
+        private final String name;
+        private final Task task;
+        private final String[] dependsOn;
+
+        Node(String name, Task task, String[] dependsOn) {
+            this.name = name;
+            this.task = task;
+            this.dependsOn = dependsOn;
+        }
+
+        void execute(BuildReport report) {
+            logger.fine("Starting task {0}", name);
+            long start = System.nanoTime();
+            BuildReport.attach(report);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                BuildReport.attach(null);
+            }
+            logger.fine("Task {0} completed in {1} ms", name, (System.nanoTime() - start) / 1000000);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private static final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "imagetool-task-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
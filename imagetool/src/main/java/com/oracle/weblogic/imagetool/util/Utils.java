@@ -9,10 +9,13 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
@@ -32,12 +35,18 @@ import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.github.mustachejava.DefaultMustacheFactory;
 import com.github.mustachejava.Mustache;
 import com.github.mustachejava.MustacheFactory;
+import com.oracle.weblogic.imagetool.builder.Builders;
+import com.oracle.weblogic.imagetool.builder.EngineClient;
+import com.oracle.weblogic.imagetool.builder.ImageInfo;
+import com.oracle.weblogic.imagetool.cachestore.ProbeCache;
+import com.oracle.weblogic.imagetool.inspect.ImageFilesystem;
+import com.oracle.weblogic.imagetool.inspect.ImageMetadata;
+import com.oracle.weblogic.imagetool.inspect.LayerInspector;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import org.jetbrains.annotations.NonNls;
@@ -47,6 +56,11 @@ public class Utils {
 
     private static final LoggingFacade logger = LoggingFactory.getLogger(Utils.class);
 
+    /**
+     * Image name prefix for an OCI image layout directory, like oci:/path/to/layout.
+     */
+    public static final String OCI_LAYOUT_PREFIX = "oci:";
+
     @NonNls
     private static final ResourceBundle bundle = ResourceBundle.getBundle("ImageTool");
 
@@ -89,6 +103,38 @@ public class Utils {
         Files.copy(sourcePath, destPath, StandardCopyOption.REPLACE_EXISTING);
     }
 
+    /**
+     * Place a file in the build context, either as a copy or as a symbolic link to the original.
+     * Links are only useful when the build context is streamed to the builder, which resolves the links.
+     * If a link cannot be created on this file system, the file is copied.
+     *
+     * @param sourcePath the file to add to the build context
+     * @param destPath   the location of the file in the build context
+     * @param link       true to create a symbolic link instead of a copy
+     * @return the path to the file in the build context
+     * @throws IOException in case of error
+     */
+    public static Path linkOrCopyFile(Path sourcePath, Path destPath, boolean link) throws IOException {
+        Objects.requireNonNull(sourcePath);
+        Objects.requireNonNull(destPath);
+        if (link) {
+            try {
+                logger.fine("linkOrCopyFile: linking file {0}->{1}", destPath, sourcePath);
+                Path result = Files.createSymbolicLink(destPath, sourcePath.toAbsolutePath());
+                BuildReport.count("filesLinked", 1);
+                return result;
+            } catch (FileAlreadyExistsException e) {
+                throw e;
+            } catch (UnsupportedOperationException | IOException e) {
+                logger.fine("Unable to create symbolic link, copying file instead", e);
+            }
+        }
+        Path result = Files.copy(sourcePath, destPath);
+        BuildReport.count("filesCopied", 1);
+        BuildReport.count("bytesCopied", Files.size(result));
+        return result;
+    }
+
     /**
      * Utility method to copy a local directory to another local file system location.
      *
@@ -175,24 +221,33 @@ public class Utils {
      * @param destPath the file folder that the Dockerfile should be written to.
      * @param template the Dockerfile template that should be used to create the Dockerfile.
      * @param options  the options to be applied to the Dockerfile template.
-     * @param dryRun   when true, will return a String version of the Dockerfile.
-     * @return null if dryRun is false, and a String version of the Dockerfile if dryRun is true.
+     * @param dryRun   when true, the Dockerfile is printed instead of built, see the caller.
+     * @return a String version of the Dockerfile.
      * @throws IOException if an error occurs in the low level Java file operations.
      */
     public static String writeDockerfile(String destPath, String template, DockerfileOptions options, boolean dryRun)
         throws IOException {
         logger.entering();
-        MustacheFactory mf = new DefaultMustacheFactory("docker-files");
-        Mustache mustache = mf.compile(template);
-        try (FileWriter fw = new FileWriter(destPath)) {
-            mustache.execute(fw, options).flush();
+        try (BuildReport.Phase phase = BuildReport.phase("writeDockerfile")) {
+            MustacheFactory mf = new DefaultMustacheFactory("docker-files");
+            Mustache mustache = mf.compile(template);
+            String result = mustache.execute(new StringWriter(), options).toString();
+            writeFile(Paths.get(destPath), result);
+
+            logger.exiting();
+            return result;
         }
+    }
 
-        logger.exiting();
-        if (dryRun) {
-            return mustache.execute(new StringWriter(), options).toString();
-        } else {
-            return null;
+    /**
+     * Write a text file, replacing the file if it exists.
+     * @param path    the file to write
+     * @param content the content of the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeFile(Path path, String content) throws IOException {
+        try (FileWriter fw = new FileWriter(path.toFile())) {
+            fw.write(content);
         }
     }
 
@@ -236,7 +291,7 @@ public class Utils {
      * @throws IOException          if an error occurs reading from the process inputstream.
      * @throws InterruptedException when the process wait is interrupted.
      */
-    private static Properties runDockerCommand(List<String> cmdBuilder) throws IOException, InterruptedException {
+    public static Properties runDockerCommand(List<String> cmdBuilder) throws IOException, InterruptedException {
         logger.entering(cmdBuilder);
         // process builder
         ProcessBuilder processBuilder = new ProcessBuilder(cmdBuilder);
@@ -406,28 +461,180 @@ public class Utils {
      */
     public static Properties getBaseImageProperties(String builder, String dockerImage, String script,
                                                     String contextDir) throws IOException, InterruptedException {
-        logger.entering(builder, dockerImage, script, contextDir);
+        return getBaseImageProperties(builder, null, dockerImage, script, contextDir);
+    }
+
+    /**
+     * Reads the docker image environment variables into Java Properties.
+     *
+     * @param builder     the binary to create the container (like docker)
+     * @param engine      the Engine API client used to run the container instead of the binary, or null
+     * @param dockerImage the name of the Docker image to read from
+     * @param script      the script resource (path to the script in the JAR)
+     * @param contextDir  the image build context folder
+     * @return The key/value pairs representing the ENV of the Docker image
+     * @throws IOException          when the Docker command fails
+     * @throws InterruptedException when the Docker command is interrupted
+     */
+    public static Properties getBaseImageProperties(String builder, EngineClient engine, String dockerImage,
+                                                    String script, String contextDir)
+        throws IOException, InterruptedException {
+        return getBaseImageProperties(builder, engine, dockerImage, script, contextDir, false);
+    }
+
+    /**
+     * Reads the docker image environment variables into Java Properties.
+     * Images built by the tool have the properties in their labels, and are not probed.
+     * When fromLayers is set, the image is inspected by reading its layers from the builder (docker save)
+     * or from an OCI layout (oci:path), without running a container.  If the layers cannot be read,
+     * the probe script is run in a container.
+     *
+     * @param builder     the binary to create the container (like docker)
+     * @param engine      the Engine API client used to run the container instead of the binary, or null
+     * @param dockerImage the name of the Docker image to read from
+     * @param script      the script resource (path to the script in the JAR)
+     * @param contextDir  the image build context folder
+     * @param fromLayers  true to read the image layers instead of running a container
+     * @return The key/value pairs representing the ENV of the Docker image
+     * @throws IOException          when the Docker command fails
+     * @throws InterruptedException when the Docker command is interrupted
+     */
+    public static Properties getBaseImageProperties(String builder, EngineClient engine, String dockerImage,
+                                                    String script, String contextDir, boolean fromLayers)
+        throws IOException, InterruptedException {
+        logger.entering(builder, dockerImage, script, contextDir, fromLayers);
+        // the long script also lists the patches
+        boolean patches = script.contains("inspect-image-long");
+        String imageId = null;
+        ImageInfo info = imageInfo(builder, engine, dockerImage);
+        if (info != null) {
+            Properties labeled = ImageMetadata.fromLabels(info.labels(), patches);
+            if (labeled != null) {
+                logger.info("IMG-0141", dockerImage);
+                logger.exiting(labeled);
+                return labeled;
+            }
+            imageId = isEmptyString(info.id()) ? null : info.id();
+        }
+
         final String scriptToRun = "test-env.sh";
         Utils.copyResourceAsFile(script, contextDir + File.separator + scriptToRun);
-        List<String> imageEnvCmd = Utils.getDockerRunCmd(builder,
-            contextDir + File.separator + scriptToRun, dockerImage);
-        logger.info("IMG-0097", dockerImage);
-        Properties result = Utils.runDockerCommand(imageEnvCmd);
+        String command = getProbeCommand(contextDir + File.separator + scriptToRun);
+
+        // null when the cache directory is not available, the probe is then run every time
+        ProbeCache cache = ProbeCache.fromCacheStore();
+        if (cache != null && imageId != null) {
+            Properties cached = cache.get(imageId, command);
+            if (cached != null) {
+                logger.info("IMG-0139", dockerImage, imageId);
+                logger.exiting(cached);
+                return cached;
+            }
+        }
+
+        Properties result = null;
+        if (fromLayers) {
+            result = inspectLayers(builder, dockerImage, patches);
+        }
+        if (result != null) {
+            logger.info("IMG-0140", dockerImage);
+        } else if (engine != null) {
+            logger.info("IMG-0097", dockerImage);
+            result = engine.runProbe(dockerImage, command);
+        } else {
+            logger.info("IMG-0097", dockerImage);
+            result = Builders.detect(builder).probe(dockerImage, command);
+        }
+        if (cache != null) {
+            // the image is pulled by the probe if it was not available locally
+            if (imageId == null) {
+                info = imageInfo(builder, engine, dockerImage);
+                imageId = info == null || isEmptyString(info.id()) ? null : info.id();
+            }
+            if (imageId != null) {
+                cache.put(imageId, command, result);
+            }
+        }
         logger.exiting(result);
         return result;
     }
 
     /**
-     * Constructs a docker command to run a script in the container with a volume mount.
+     * Inspect an image by reading its layers.
+     * @param builder     the builder executable that writes the image archive
+     * @param dockerImage the image name, or oci:path for an OCI image layout directory
+     * @param patches     true to include the list of patches
+     * @return the image properties, or null if the layers cannot be read or the patches cannot be listed
+     */
+    private static Properties inspectLayers(String builder, String dockerImage, boolean patches)
+        throws InterruptedException {
+        try (BuildReport.Phase phase = BuildReport.phase("inspectLayers")) {
+            ImageFilesystem image;
+            if (dockerImage.startsWith(OCI_LAYOUT_PREFIX)) {
+                image = ImageFilesystem.fromOciLayout(Paths.get(dockerImage.substring(OCI_LAYOUT_PREFIX.length())));
+            } else {
+                image = saveImage(Builders.detect(builder).saveCommand(dockerImage));
+            }
+            return new LayerInspector(image).inspect(patches);
+        } catch (IOException | RuntimeException e) {
+            logger.fine("Unable to inspect the layers of " + dockerImage, e);
+            return null;
+        }
+    }
+
+    private static ImageFilesystem saveImage(List<String> command) throws IOException, InterruptedException {
+        logger.fine("Reading image layers with {0}", command);
+        Path errors = Files.createTempFile("imagetool", ".err");
+        Process process = new ProcessBuilder(command).redirectError(errors.toFile()).start();
+        try {
+            ImageFilesystem result;
+            try (InputStream in = process.getInputStream()) {
+                result = ImageFilesystem.fromArchive(in);
+                // read the rest of the archive, so that the process can exit
+                byte[] buffer = new byte[8192];
+                long discarded = 0;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    discarded += read;
+                }
+                logger.finer("Bytes after the end of the image archive: {0}", discarded);
+            }
+            if (process.waitFor() != 0) {
+                throw new IOException(new String(Files.readAllBytes(errors), StandardCharsets.UTF_8).trim());
+            }
+            return result;
+        } finally {
+            process.destroy();
+            Files.deleteIfExists(errors);
+        }
+    }
+
+    /**
+     * The ID and labels of a local image, used to find metadata labels and cached probe results.
+     * @return the image information, or null if the image is not available locally
+     */
+    private static ImageInfo imageInfo(String builder, EngineClient engine, String dockerImage) {
+        ImageInfo info;
+        if (engine == null) {
+            info = Builders.detect(builder).inspectImage(dockerImage);
+        } else {
+            try {
+                info = engine.inspectImage(dockerImage);
+            } catch (IOException e) {
+                logger.fine("Unable to inspect " + dockerImage, e);
+                return null;
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Constructs a shell command to run a script in the container without a volume mount.
      *
-     * @param builder        docker/podman executable
      * @param scriptToRun    the local script to encode and run
-     * @param dockerImage    docker image tag
      * @return command
      */
-    private static List<String> getDockerRunCmd(String builder, String scriptToRun, String dockerImage)
-        throws IOException {
-
+    private static String getProbeCommand(String scriptToRun) throws IOException {
         // We are removing the volume mount option, -v won't work in remote docker daemon and also
         // problematic if the mounted volume source is on a nfs volume as we have no idea what the docker volume
         // driver is.
@@ -438,10 +645,8 @@ public class Utils {
         byte[] fileBytes = Files.readAllBytes(Paths.get(scriptToRun));
         String encodedFile = Base64.getEncoder().encodeToString(fileBytes);
         String oneCommand = String.format("echo %s | base64 -d | /bin/sh", encodedFile);
-        logger.finest("running command in image [" + oneCommand + "]");
-        return Stream.of(
-            builder, "run", "--rm",
-            dockerImage, "/bin/sh", "-c", oneCommand).collect(Collectors.toList());
+        logger.finest("running command in image [{0}]", oneCommand);
+        return oneCommand;
     }
 
     /**
@@ -704,16 +909,45 @@ public class Utils {
      * @throws InterruptedException if this program was interrupted waiting on the Docker command.
      */
     public static void removeIntermediateDockerImages(String builder, String buildId)
+        throws IOException, InterruptedException {
+        removeIntermediateDockerImages(builder, null, buildId);
+    }
+
+    /**
+     * Remove the intermediate images created by the multi-stage Docker build.
+     * @param builder docker/podman executable
+     * @param engine  the Engine API client used to remove the images instead of the executable, or null
+     * @param buildId the build ID used to identify the images created during this build.
+     * @throws IOException if the external Docker command fails.
+     * @throws InterruptedException if this program was interrupted waiting on the Docker command.
+     */
+    public static void removeIntermediateDockerImages(String builder, EngineClient engine, String buildId)
         throws IOException, InterruptedException {
         logger.entering();
-        final List<String> command = Stream.of(
-            builder, "image", "prune", "-f", "--filter", "label=com.oracle.weblogic.imagetool.buildid=" + buildId)
-            .collect(Collectors.toList());
-        Properties result = runDockerCommand(command);
-        logger.fine("Intermediate images removed: {0}", result.get("Total"));
+        if (engine != null) {
+            int removed = engine.pruneImages("com.oracle.weblogic.imagetool.buildid=" + buildId);
+            logger.fine("Intermediate images removed: {0}", removed);
+            logger.exiting();
+            return;
+        }
+        Builders.detect(builder).removeIntermediateImages("com.oracle.weblogic.imagetool.buildid=" + buildId);
         logger.exiting();
     }
 
+    /**
+     * Convert a byte array, like a message digest, to an uppercase hexadecimal string.
+     * @param bytes the bytes to convert
+     * @return hexadecimal representation of the provided bytes
+     */
+    public static String toHexString(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)));
+            result.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+        }
+        return result.toString();
+    }
+
     /**
      * Create a new set from an existing collection and adding additional elements, if desired.
      * @param start a set of elements to start from
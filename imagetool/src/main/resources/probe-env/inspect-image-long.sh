@@ -5,6 +5,55 @@
 #Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
 #
 
+# List the applied patches as bug;uid;description from the OPatch metadata in the inventory,
+# one inventory.xml for each patch in the oneoffs directory.  Fails if a patch is not in the oneoffs
+# directory, or no patches are found, so that opatch lsinventory is used instead.
+inventoryPatches() {
+  patches=""
+  found=0
+  for dir in "$ORACLE_HOME"/inventory/oneoffs/*/; do
+    inventory="${dir}etc/config/inventory.xml"
+    if [ ! -f "$inventory" ]; then
+      continue
+    fi
+    uid="$(sed -n 's/.*<unique_patch_id>\([^<]*\)<.*/\1/p' "$inventory" | head -1)"
+    description="$(sed -n 's/.*<patch_description>\([^<]*\)<.*/\1/p' "$inventory" | head -1 \
+      | sed 's/&lt;/</g; s/&gt;/>/g; s/&quot;/"/g; s/&apos;/'"'"'/g; s/&amp;/\&/g')"
+    if [ -z "$uid" ]; then
+      return 1
+    fi
+    patches="$patches;$(basename "$dir");$uid;${description:-None}"
+    found=$((found + 1))
+  done
+  stored="$(ls "$ORACLE_HOME"/.patch_storage 2> /dev/null | grep -E '^[0-9]+_' | cut -d_ -f1 | sort -u | wc -l)"
+  if [ "$found" -eq 0 ] || [ "$found" -lt "$stored" ]; then
+    return 1
+  fi
+  echo "${patches#;}"
+}
+
+# List the applied patches as bug;uid;description with opatch lsinventory, which starts a JVM
+lsinventoryPatches() {
+  "$ORACLE_HOME"/OPatch/opatch lsinventory |
+  awk 'BEGIN { ORS=";" }
+      /^Unique Patch ID/ { print $4 }
+      /^Patch description/ {
+        x = substr($0, 21)
+        print x
+        descriptionNeeded = 0
+      }
+      /^Patch\s*[0-9]+/ {
+        if (descriptionNeeded)
+          print "None"
+        print $2
+        descriptionNeeded = 1
+      }
+      END {
+        if (descriptionNeeded)
+          print "None"
+      }' | sed 's/;$//'
+}
+
 if type dnf > /dev/null 2>&1; then
   echo packageManager=DNF
 elif type yum > /dev/null 2>&1; then
@@ -21,9 +70,13 @@ else
   echo packageManager=NONE
 fi
 
+# Read versions from files, and only start a JVM if the files are missing
 if [ -n "$JAVA_HOME" ]; then
   echo javaHome="$JAVA_HOME"
-  javaVersion="$("$JAVA_HOME"/bin/java -version 2>&1 | awk -F '\"' '/version/ {print $2}')"
+  javaVersion="$(sed -n 's/^JAVA_VERSION="\(.*\)"/\1/p' "$JAVA_HOME"/release 2> /dev/null)"
+  if [ -z "$javaVersion" ]; then
+    javaVersion="$("$JAVA_HOME"/bin/java -version 2>&1 | awk -F '\"' '/version/ {print $2}')"
+  fi
 else
   javaVersion="$(java -version 2>&1 | awk -F '\"' '/version/ {print $2}')"
 fi
@@ -55,31 +108,26 @@ if [ -n "$ORACLE_HOME" ]; then
   echo oracleHome="$ORACLE_HOME"
 
   if [ -n "$JAVA_HOME" ]; then
-    echo wlsVersion="$("$JAVA_HOME"/bin/java -cp "$ORACLE_HOME"/wlserver/server/lib/weblogic.jar weblogic.version 2> /dev/null | grep -oE -m 1 '([[:digit:]\.]+)' | head -1)"
+    wlsVersion="$(grep 'name="WebLogic Server"' "$ORACLE_HOME"/inventory/registry.xml 2> /dev/null | sed -n 's/.*version="\([^"]*\)".*/\1/p' | head -1)"
+    if [ -z "$wlsVersion" ]; then
+      wlsVersion="$("$JAVA_HOME"/bin/java -cp "$ORACLE_HOME"/wlserver/server/lib/weblogic.jar weblogic.version 2> /dev/null | grep -oE -m 1 '([[:digit:]\.]+)' | head -1)"
+    fi
+    echo wlsVersion="$wlsVersion"
   fi
 
   echo oracleHomeUser="$(stat -c '%U' "$ORACLE_HOME")"
   echo oracleHomeGroup="$(stat -c '%G' "$ORACLE_HOME")"
 
-  echo opatchVersion="$("$ORACLE_HOME"/OPatch/opatch version 2> /dev/null | grep -oE -m 1 '([[:digit:]\.]+)')"
-  echo oraclePatches="$("$ORACLE_HOME"/OPatch/opatch lsinventory |
-  awk 'BEGIN { ORS=";" }
-      /^Unique Patch ID/ { print $4 }
-      /^Patch description/ {
-        x = substr($0, 21)
-        print x
-        descriptionNeeded = 0
-      }
-      /^Patch\s*[0-9]+/ {
-        if (descriptionNeeded)
-          print "None"
-        print $2
-        descriptionNeeded = 1
-      }
-      END {
-        if (descriptionNeeded)
-          print "None"
-      }' | sed 's/;$//')"
+  opatchVersion="$(grep -oE -m 1 '([[:digit:]\.]+)' "$ORACLE_HOME"/OPatch/version.txt 2> /dev/null | head -1)"
+  if [ -z "$opatchVersion" ]; then
+    opatchVersion="$("$ORACLE_HOME"/OPatch/opatch version 2> /dev/null | grep -oE -m 1 '([[:digit:]\.]+)')"
+  fi
+  echo opatchVersion="$opatchVersion"
+
+  if ! oraclePatches="$(inventoryPatches)"; then
+    oraclePatches="$(lsinventoryPatches)"
+  fi
+  echo oraclePatches="$oraclePatches"
 
   echo oracleInstalledProducts="$(awk -F\" '{ORS=","} /product-family/ { print $2 }' "$ORACLE_HOME"/inventory/registry.xml | sed 's/,$//')"
 fi
@@ -21,9 +21,13 @@ else
   echo packageManager=NONE
 fi
 
+# Read versions from files, and only start a JVM if the files are missing
 if [ -n "$JAVA_HOME" ]; then
   echo javaHome="$JAVA_HOME"
-  javaVersion="$("$JAVA_HOME"/bin/java -version 2>&1 | awk -F '\"' '/version/ {print $2}')"
+  javaVersion="$(sed -n 's/^JAVA_VERSION="\(.*\)"/\1/p' "$JAVA_HOME"/release 2> /dev/null)"
+  if [ -z "$javaVersion" ]; then
+    javaVersion="$("$JAVA_HOME"/bin/java -version 2>&1 | awk -F '\"' '/version/ {print $2}')"
+  fi
 else
   javaVersion="$(java -version 2>&1 | awk -F '\"' '/version/ {print $2}')"
 fi
@@ -55,7 +59,11 @@ if [ -n "$ORACLE_HOME" ]; then
   echo oracleHome="$ORACLE_HOME"
 
   if [ -n "$JAVA_HOME" ]; then
-    echo wlsVersion="$("$JAVA_HOME"/bin/java -cp "$ORACLE_HOME"/wlserver/server/lib/weblogic.jar weblogic.version 2> /dev/null | grep -oE -m 1 '([[:digit:]\.]+)' | head -1)"
+    wlsVersion="$(grep 'name="WebLogic Server"' "$ORACLE_HOME"/inventory/registry.xml 2> /dev/null | sed -n 's/.*version="\([^"]*\)".*/\1/p' | head -1)"
+    if [ -z "$wlsVersion" ]; then
+      wlsVersion="$("$JAVA_HOME"/bin/java -cp "$ORACLE_HOME"/wlserver/server/lib/weblogic.jar weblogic.version 2> /dev/null | grep -oE -m 1 '([[:digit:]\.]+)' | head -1)"
+    fi
+    echo wlsVersion="$wlsVersion"
   fi
 
   echo oracleHomeUser="$(stat -c '%U' "$ORACLE_HOME")"
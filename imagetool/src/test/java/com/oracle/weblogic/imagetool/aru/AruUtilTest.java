@@ -4,9 +4,14 @@
 package com.oracle.weblogic.imagetool.aru;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
@@ -16,13 +21,17 @@ import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import com.oracle.weblogic.imagetool.util.HttpUtil;
+import com.oracle.weblogic.imagetool.util.Utils;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.w3c.dom.Document;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("unit")
@@ -134,4 +143,49 @@ class AruUtilTest {
             AruUtil.rest().getRecommendedPatches(AruProduct.WLS, "3.0.0.0.0", "x", "x");
         assertEquals(0, recommendedPatches.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testPatchFileMetadata() throws Exception {
+        Document doc = new TestAruUtil().getResource("/patch-28186730.xml");
+        List<AruPatch> patches = AruPatch.getPatches(doc);
+        AruPatch patch = patches.get(0);
+        assertEquals(45855234, patch.fileSize());
+        assertEquals("8BFC99E439DA1D1663F88D6859EC19E9926A473C96B95889ABE5F45C055E1BB3", patch.sha256());
+    }
+
+    @Test
+    void testInvalidFileSize() {
+        assertEquals(-1, new AruPatch().fileSize("").fileSize());
+        assertEquals(-1, new AruPatch().fileSize("12 MB").fileSize());
+        assertEquals(1024, new AruPatch().fileSize(" 1024 ").fileSize());
+    }
+
+    @Test
+    void testSaveContentVerified(@TempDir Path tempDir) throws Exception {
+        byte[] content = "patch file content".getBytes(StandardCharsets.UTF_8);
+        String sha256 = Utils.toHexString(MessageDigest.getInstance("SHA-256").digest(content));
+        AruPatch patch = new AruPatch().fileSize(String.valueOf(content.length)).sha256(sha256.toLowerCase());
+        Path target = tempDir.resolve("p1.zip");
+
+        assertTrue(AruUtil.saveContent(new ByteArrayInputStream(content), target, patch));
+        assertArrayEquals(content, Files.readAllBytes(target));
+
+        // ARU did not provide size or digest, nothing to verify
+        assertTrue(AruUtil.saveContent(new ByteArrayInputStream(content), target, new AruPatch()));
+    }
+
+    @Test
+    void testSaveContentMismatch(@TempDir Path tempDir) throws Exception {
+        byte[] content = "patch file content".getBytes(StandardCharsets.UTF_8);
+        Path target = tempDir.resolve("p1.zip");
+
+        AruPatch wrongSize = new AruPatch().fileSize(String.valueOf(content.length + 1));
+        assertFalse(AruUtil.saveContent(new ByteArrayInputStream(content), target, wrongSize));
+        assertFalse(Files.exists(target));
+
+        String sha256 = Utils.toHexString(MessageDigest.getInstance("SHA-256").digest(new byte[]{1}));
+        AruPatch wrongDigest = new AruPatch().fileSize(String.valueOf(content.length)).sha256(sha256);
+        assertFalse(AruUtil.saveContent(new ByteArrayInputStream(content), target, wrongDigest));
+        assertFalse(Files.exists(target));
+    }
+}
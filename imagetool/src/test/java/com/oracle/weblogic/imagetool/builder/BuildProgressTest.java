@@ -0,0 +1,102 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class BuildProgressTest {
+
+    private static final Instant T0 = Instant.parse("2022-06-01T10:00:00Z");
+
+    private static Instant at(long seconds) {
+        return T0.plusSeconds(seconds);
+    }
+
+    @Test
+    void classicDockerOutput() {
+        BuildProgress progress = new BuildProgress();
+        progress.accept("Step 1/4 : FROM oraclelinux:8-slim as os_update", at(0));
+        progress.accept(" ---> 8a1e2b3c4d5e", at(1));
+        progress.accept("Step 2/4 : RUN microdnf update", at(1));
+        progress.accept(" ---> Using cache", at(1));
+        progress.accept("Step 3/4 : FROM os_update as wls_build", at(2));
+        progress.accept("Step 4/4 : RUN /u01/oracle/OPatch/opatch napply", at(2));
+        progress.accept(" ---> Running in 0123456789ab", at(3));
+        progress.accept("Successfully built 0123456789ab", at(62));
+        progress.finish(at(63));
+
+        List<BuildProgress.Step> steps = progress.steps();
+        assertEquals(4, steps.size());
+        assertEquals("os_update", steps.get(1).stage());
+        assertTrue(steps.get(1).cached());
+        BuildProgress.Step slowest = progress.slowest(1).get(0);
+        assertEquals("wls_build", slowest.stage());
+        assertEquals("RUN /u01/oracle/OPatch/opatch napply", slowest.instruction());
+        assertEquals(60, slowest.duration().getSeconds());
+        assertFalse(slowest.cached());
+    }
+
+    @Test
+    void podmanOutput() {
+        BuildProgress progress = new BuildProgress();
+        progress.accept("[1/2] STEP 1/2: FROM oraclelinux:8-slim AS os_update", at(0));
+        progress.accept("[1/2] STEP 2/2: RUN microdnf update", at(0));
+        progress.accept("--> Using cache 2b3c4d5e6f", at(1));
+        progress.accept("[2/2] STEP 1/2: FROM os_update", at(1));
+        progress.accept("[2/2] STEP 2/2: RUN createDomain.sh", at(1));
+        progress.accept("COMMIT wls:1", at(31));
+        progress.finish(at(32));
+
+        List<BuildProgress.Step> steps = progress.steps();
+        assertEquals(4, steps.size());
+        assertTrue(steps.get(1).cached());
+        assertEquals(30, progress.slowest(1).get(0).duration().getSeconds());
+        assertEquals("RUN createDomain.sh", progress.slowest(1).get(0).instruction());
+    }
+
+    @Test
+    void buildKitPlainOutput() {
+        BuildProgress progress = new BuildProgress();
+        progress.accept("#1 [internal] load build definition from Dockerfile", at(0));
+        progress.accept("#1 DONE 0.0s", at(0));
+        progress.accept("#5 [os_update 2/3] RUN microdnf update", at(0));
+        progress.accept("#6 [wls_build 3/5] RUN /tmp/imagetool/install.sh", at(0));
+        progress.accept("#5 CACHED", at(0));
+        progress.accept("#6 12.30 Installing WebLogic", at(12));
+        progress.accept("#6 DONE 95.4s", at(95));
+
+        List<BuildProgress.Step> steps = progress.steps();
+        assertEquals(2, steps.size());
+        assertTrue(steps.get(0).cached());
+        BuildProgress.Step slowest = progress.slowest(1).get(0);
+        assertEquals("wls_build", slowest.stage());
+        assertEquals(95400, slowest.duration().toMillis());
+    }
+
+    @Test
+    void buildKitJsonOutput() {
+        BuildProgress progress = new BuildProgress();
+        progress.accept("{\"vertexes\":[{\"digest\":\"sha256:aa\",\"name\":\"[final 4/6] RUN wdt/bin/createDomain.sh\","
+            + "\"started\":\"2022-06-01T10:00:01.5Z\"}]}", at(0));
+        progress.accept("{\"vertexes\":[{\"digest\":\"sha256:aa\",\"name\":\"[final 4/6] RUN wdt/bin/createDomain.sh\","
+            + "\"started\":\"2022-06-01T10:00:01.5Z\",\"completed\":\"2022-06-01T10:00:41.5Z\"}]}", at(0));
+        progress.accept("{\"logs\":[]}", at(0));
+        progress.accept("{not json", at(0));
+
+        List<BuildProgress.Step> steps = progress.steps();
+        assertEquals(1, steps.size());
+        assertEquals("final", steps.get(0).stage());
+        assertEquals(40, steps.get(0).duration().getSeconds());
+        assertEquals(1, progress.toJson(5).length());
+    }
+}
@@ -0,0 +1,84 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class CacheLocationTest {
+
+    @Test
+    void cacheKey() {
+        String key = CacheLocation.key("FROM os\nCOPY fmw_12.2.1.4.0_wls.jar\n");
+        assertEquals(16, key.length());
+        assertEquals(key, CacheLocation.key("FROM os\nCOPY fmw_12.2.1.4.0_wls.jar\n"));
+        assertNotEquals(key, CacheLocation.key("FROM os\nCOPY fmw_14.1.1.0.0_wls.jar\n"));
+    }
+
+    @Test
+    void registry() {
+        CacheLocation location = CacheLocation.parse("registry.example.com/wls/cache");
+        assertEquals(Collections.singletonList("type=registry,ref=registry.example.com/wls/cache:abc"),
+            location.importSpecs("abc"));
+        assertEquals("type=registry,ref=registry.example.com/wls/cache:abc,mode=max", location.exportSpec("abc"));
+        // a tag selected by the user is not replaced by the cache key
+        assertEquals("type=registry,ref=registry.example.com:5000/cache:ci,mode=max",
+            CacheLocation.parse("registry.example.com:5000/cache:ci").exportSpec("abc"));
+    }
+
+    @Test
+    void specification() {
+        CacheLocation location = CacheLocation.parse("type=gha");
+        assertEquals(Collections.singletonList("type=gha"), location.importSpecs("abc"));
+        assertEquals("type=gha", location.exportSpec("abc"));
+    }
+
+    @Test
+    void localDirectory(@TempDir Path dir) throws IOException {
+        CacheLocation location = CacheLocation.parse(dir.toString());
+        assertTrue(location.importSpecs("new").isEmpty());
+        assertEquals("type=local,dest=" + dir.resolve("new") + ",mode=max", location.exportSpec("new"));
+
+        cache(dir, "older", 1000);
+        cache(dir, "previous", 2000);
+        // the most recent cache is imported when there is no cache for the key
+        assertEquals(Collections.singletonList("type=local,src=" + dir.resolve("previous")),
+            location.importSpecs("new"));
+        assertEquals(Arrays.asList("type=local,src=" + dir.resolve("older"),
+            "type=local,src=" + dir.resolve("previous")), location.importSpecs("older"));
+    }
+
+    @Test
+    void rotate(@TempDir Path dir) throws IOException {
+        for (int i = 1; i <= 5; i++) {
+            cache(dir, "cache" + i, i * 1000L);
+        }
+        CacheLocation.parse(dir.toString()).rotate();
+        assertFalse(Files.exists(dir.resolve("cache1")));
+        assertFalse(Files.exists(dir.resolve("cache2")));
+        for (int i = 3; i <= 5; i++) {
+            assertTrue(Files.exists(dir.resolve("cache" + i)));
+        }
+    }
+
+    private static void cache(Path dir, String key, long modified) throws IOException {
+        Path index = Files.createDirectories(dir.resolve(key)).resolve("index.json");
+        Files.write(index, "{}".getBytes());
+        Files.setLastModifiedTime(index, FileTime.fromMillis(modified));
+    }
+}
@@ -0,0 +1,354 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class EngineClientTest {
+
+    private FakeEngine engine;
+
+    @AfterEach
+    void stopEngine() throws IOException {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    @Test
+    void buildStreamsContext(@TempDir Path contextDir) throws IOException {
+        Files.write(contextDir.resolve("Dockerfile"), "FROM scratch\n".getBytes(StandardCharsets.UTF_8));
+        engine = new FakeEngine(request -> chunked(200,
+            "{\"stream\":\"Step 1/1 : FROM scratch\\n\"}\r\n",
+            "{\"stream\":\" ---> Using cache\\n ---> 1234\\n\"}\n{\"aux\":{\"ID\":\"sha256:1234\"}}\n"));
+
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("t", "myimage:1");
+        parameters.put("buildargs", "{\"http_proxy\":\"http://proxy:80\"}");
+        List<String> output = new ArrayList<>();
+        String imageId = engine.client().build(contextDir.toString(), parameters, output::add);
+
+        assertEquals("sha256:1234", imageId);
+        assertEquals(Arrays.asList("Step 1/1 : FROM scratch", " ---> Using cache", " ---> 1234"), output);
+        FakeEngine.Request request = engine.requests.get(0);
+        assertEquals("POST", request.method);
+        assertEquals("/build", request.path);
+        assertEquals("myimage:1", request.query.get("t"));
+        assertEquals("{\"http_proxy\":\"http://proxy:80\"}", request.query.get("buildargs"));
+        assertEquals("application/x-tar", request.headers.get("content-type"));
+        // the context is a tar archive, ending with two empty blocks
+        assertEquals(0, request.body.length % 512);
+        assertTrue(new String(request.body, 0, 100, StandardCharsets.US_ASCII).startsWith("Dockerfile"));
+    }
+
+    @Test
+    void buildError(@TempDir Path contextDir) {
+        engine = new FakeEngine(request -> chunked(200,
+            "{\"stream\":\"Step 1/1 : RUN false\\n\"}\n",
+            "{\"errorDetail\":{\"code\":1},\"error\":\"The command returned a non-zero code: 1\"}\n"));
+
+        IOException e = assertThrows(IOException.class,
+            () -> engine.client().build(contextDir.toString(), new HashMap<>(), line -> { }));
+        assertTrue(e.getMessage().contains("The command returned a non-zero code: 1"));
+    }
+
+    @Test
+    void buildSendsRegistryConfig(@TempDir Path contextDir) throws IOException {
+        engine = new FakeEngine(request -> chunked(200, "{\"aux\":{\"ID\":\"sha256:1234\"}}\n"));
+        JSONObject config = new JSONObject().put("auths", new JSONObject()
+            .put("container-registry.oracle.com", new JSONObject().put("auth", "dXNlcjpzZWNyZXQ="))
+            .put("https://index.docker.io/v1/", new JSONObject().put("identitytoken", "tok")));
+
+        engine.client().registryAuth(new RegistryAuth(config))
+            .build(contextDir.toString(), new HashMap<>(), line -> { });
+
+        JSONObject sent = decode(engine.requests.get(0).headers.get("x-registry-config"));
+        assertEquals("user", sent.getJSONObject("container-registry.oracle.com").getString("username"));
+        assertEquals("secret", sent.getJSONObject("container-registry.oracle.com").getString("password"));
+        assertEquals("tok", sent.getJSONObject("https://index.docker.io/v1/").getString("identitytoken"));
+    }
+
+    @Test
+    void buildWithoutCredentials(@TempDir Path contextDir) throws IOException {
+        engine = new FakeEngine(request -> chunked(200, "{\"aux\":{\"ID\":\"sha256:1234\"}}\n"));
+
+        engine.client().build(contextDir.toString(), new HashMap<>(), line -> { });
+
+        assertFalse(engine.requests.get(0).headers.containsKey("x-registry-config"));
+    }
+
+    @Test
+    void pullSendsRegistryAuth() throws IOException {
+        AtomicBoolean pulled = new AtomicBoolean();
+        engine = new FakeEngine(request -> {
+            if (request.path.equals("/containers/create")) {
+                return pulled.get() ? fixed(201, "{\"Id\":\"c1\"}") : fixed(404, "{\"message\":\"No such image\"}");
+            } else if (request.path.equals("/images/create")) {
+                pulled.set(true);
+                return chunked(200, "{\"status\":\"Downloaded newer image\"}\n");
+            } else if (request.path.endsWith("/wait")) {
+                return fixed(200, "{\"StatusCode\":0}");
+            } else if (request.path.endsWith("/logs")) {
+                return withBody(200, new byte[0]);
+            }
+            return fixed(204, "");
+        });
+        JSONObject config = new JSONObject().put("auths", new JSONObject()
+            .put("container-registry.oracle.com", new JSONObject().put("auth", "dXNlcjpzZWNyZXQ="))
+            .put("https://index.docker.io/v1/", new JSONObject().put("identitytoken", "tok")));
+
+        engine.client().registryAuth(new RegistryAuth(config))
+            .runProbe("container-registry.oracle.com/os/oraclelinux:8-slim", "true");
+
+        FakeEngine.Request pull = engine.requests.get(1);
+        assertEquals("/images/create", pull.path);
+        assertEquals("container-registry.oracle.com/os/oraclelinux:8-slim", pull.query.get("fromImage"));
+        JSONObject sent = decode(pull.headers.get("x-registry-auth"));
+        assertEquals("user", sent.getString("username"));
+        assertEquals("secret", sent.getString("password"));
+        assertEquals("container-registry.oracle.com", sent.getString("serveraddress"));
+    }
+
+    @Test
+    void runProbe() throws IOException {
+        engine = new FakeEngine(request -> {
+            if (request.path.equals("/containers/create")) {
+                return fixed(201, "{\"Id\":\"c1\",\"Warnings\":[]}");
+            } else if (request.path.endsWith("/wait")) {
+                return fixed(200, "{\"StatusCode\":0}");
+            } else if (request.path.endsWith("/logs")) {
+                ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                frame(frames, 1, "javaHome=/u01/jdk\n");
+                frame(frames, 2, "some warning\n");
+                frame(frames, 1, "oracleHome=/u01/oracle\n");
+                return withBody(200, frames.toByteArray());
+            }
+            return fixed(204, "");
+        });
+
+        Properties result = engine.client().runProbe("myimage:1", "echo javaHome=/u01/jdk");
+
+        assertEquals("/u01/jdk", result.getProperty("javaHome"));
+        assertEquals("/u01/oracle", result.getProperty("oracleHome"));
+        assertEquals(2, result.size());
+        List<String> paths = new ArrayList<>();
+        engine.requests.forEach(r -> paths.add(r.method + " " + r.path));
+        assertEquals(Arrays.asList("POST /containers/create", "POST /containers/c1/start",
+            "POST /containers/c1/wait", "GET /containers/c1/logs", "DELETE /containers/c1"), paths);
+        String config = new String(engine.requests.get(0).body, StandardCharsets.UTF_8);
+        assertTrue(config.contains("\"Image\":\"myimage:1\""));
+    }
+
+    @Test
+    void runProbeFails() {
+        engine = new FakeEngine(request -> {
+            if (request.path.equals("/containers/create")) {
+                return fixed(201, "{\"Id\":\"c1\"}");
+            } else if (request.path.endsWith("/wait")) {
+                return fixed(200, "{\"StatusCode\":127}");
+            } else if (request.path.endsWith("/logs")) {
+                ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                frame(frames, 2, "/bin/sh: not found\n");
+                return withBody(200, frames.toByteArray());
+            }
+            return fixed(204, "");
+        });
+
+        IOException e = assertThrows(IOException.class, () -> engine.client().runProbe("busybox", "true"));
+        assertTrue(e.getMessage().contains("/bin/sh: not found"));
+        // the container is removed even when the probe fails
+        assertEquals("DELETE", engine.requests.get(engine.requests.size() - 1).method);
+    }
+
+    @Test
+    void pruneImages() throws IOException {
+        engine = new FakeEngine(request -> fixed(200,
+            "{\"ImagesDeleted\":[{\"Deleted\":\"sha256:1\"},{\"Untagged\":\"a:1\"}],\"SpaceReclaimed\":10}"));
+
+        assertEquals(2, engine.client().pruneImages("com.oracle.weblogic.imagetool.buildid=1234"));
+        FakeEngine.Request request = engine.requests.get(0);
+        assertEquals("/images/prune", request.path);
+        assertEquals("{\"label\":[\"com.oracle.weblogic.imagetool.buildid=1234\"]}", request.query.get("filters"));
+    }
+
+    @Test
+    void findTaggedImages() throws IOException {
+        engine = new FakeEngine(request -> fixed(200, "[{\"Id\":\"sha256:1\"},{\"Id\":\"sha256:2\"}]"));
+
+        assertEquals(Arrays.asList("sha256:1", "sha256:2"),
+            engine.client().findTaggedImages("com.oracle.weblogic.imagetool.buildid"));
+        FakeEngine.Request request = engine.requests.get(0);
+        assertEquals("/images/json", request.path);
+        JSONObject filters = new JSONObject(request.query.get("filters"));
+        assertEquals("com.oracle.weblogic.imagetool.buildid", filters.getJSONArray("label").getString(0));
+        assertEquals("false", filters.getJSONArray("dangling").getString(0));
+    }
+
+    @Test
+    void errorResponse() {
+        engine = new FakeEngine(request -> fixed(500, "{\"message\":\"engine is unhappy\"}"));
+        IOException e = assertThrows(IOException.class, () -> engine.client().ping());
+        assertTrue(e.getMessage().contains("engine is unhappy"));
+    }
+
+    @Test
+    void unsupportedAddress() {
+        assertThrows(IllegalArgumentException.class, () -> EngineClient.of("npipe:////./pipe/docker_engine"));
+    }
+
+    private static byte[] fixed(int status, String body) {
+        return withBody(status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] withBody(int status, byte[] body) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] head = ("HTTP/1.1 " + status + " Status\r\nContent-Length: " + body.length + "\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+        result.write(head, 0, head.length);
+        result.write(body, 0, body.length);
+        return result.toByteArray();
+    }
+
+    private static byte[] chunked(int status, String... chunks) {
+        StringBuilder result = new StringBuilder("HTTP/1.1 " + status + " OK\r\nTransfer-Encoding: chunked\r\n\r\n");
+        for (String chunk : chunks) {
+            result.append(Integer.toHexString(chunk.getBytes(StandardCharsets.UTF_8).length)).append("\r\n")
+                .append(chunk).append("\r\n");
+        }
+        result.append("0\r\n\r\n");
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JSONObject decode(String header) {
+        return new JSONObject(new String(Base64.getUrlDecoder().decode(header), StandardCharsets.UTF_8));
+    }
+
+    private static void frame(ByteArrayOutputStream out, int stream, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(stream);
+        out.write(new byte[3], 0, 3);
+        out.write(bytes.length >>> 24);
+        out.write(bytes.length >>> 16);
+        out.write(bytes.length >>> 8);
+        out.write(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * A local server that records each Engine API request and replies with a canned response.
+     */
+    private static class FakeEngine {
+        final List<Request> requests = new CopyOnWriteArrayList<>();
+        private final ServerSocket server;
+
+        static class Request {
+            String method;
+            String path;
+            Map<String, String> query = new HashMap<>();
+            Map<String, String> headers = new HashMap<>();
+            byte[] body;
+        }
+
+        FakeEngine(Function<Request, byte[]> handler) {
+            try {
+                server = new ServerSocket(0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            Thread thread = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try (Socket socket = server.accept()) {
+                        Request request = read(new BufferedInputStream(socket.getInputStream()));
+                        requests.add(request);
+                        OutputStream out = socket.getOutputStream();
+                        out.write(handler.apply(request));
+                        out.flush();
+                    } catch (IOException e) {
+                        // server closed
+                    }
+                }
+            }, "fake-engine");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        EngineClient client() {
+            // not the Docker configuration of the user running the tests
+            return EngineClient.of("tcp://localhost:" + server.getLocalPort())
+                .registryAuth(new RegistryAuth(new JSONObject()));
+        }
+
+        void close() throws IOException {
+            server.close();
+        }
+
+        private static Request read(InputStream in) throws IOException {
+            Request request = new Request();
+            String[] requestLine = EngineClient.readLine(in).split(" ");
+            request.method = requestLine[0];
+            String[] target = requestLine[1].split("\\?", 2);
+            request.path = target[0];
+            if (target.length > 1) {
+                for (String parameter : target[1].split("&")) {
+                    String[] pair = parameter.split("=", 2);
+                    request.query.put(pair[0], URLDecoder.decode(pair[1], "UTF-8"));
+                }
+            }
+            String line;
+            while (!(line = EngineClient.readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                request.headers.put(line.substring(0, colon).toLowerCase(), line.substring(colon + 1).trim());
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if ("chunked".equals(request.headers.get("transfer-encoding"))) {
+                InputStream chunks = new EngineClient.ChunkedInputStream(in);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = chunks.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            } else if (request.headers.containsKey("content-length")) {
+                int length = Integer.parseInt(request.headers.get("content-length"));
+                for (int i = 0; i < length; i++) {
+                    body.write(in.read());
+                }
+            }
+            request.body = body.toByteArray();
+            return request;
+        }
+    }
+}
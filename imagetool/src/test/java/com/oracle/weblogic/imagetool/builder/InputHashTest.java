@@ -0,0 +1,88 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Tag("unit")
+class InputHashTest {
+    private static final String DOCKERFILE = "FROM --platform=linux/amd64 oraclelinux:8-slim as os_update\n"
+        + "RUN yum -y update\n"
+        + "FROM os_update as wls_build\n"
+        + "COPY fmw.jar /tmp/\n"
+        + "FROM os_update AS final\n"
+        + "COPY --from=wls_build /u01 /u01\n";
+
+    private static final Function<String, String> IDS = image -> "sha256:" + image.hashCode();
+    private static final Map<String, String> ARGS = Collections.singletonMap("http_proxy", "http://proxy:80");
+
+    @Test
+    void baseImages() {
+        assertEquals(Collections.singleton("oraclelinux:8-slim"), InputHash.baseImages(DOCKERFILE));
+        assertEquals(Arrays.asList("a:1", "b:2"),
+            Arrays.asList(InputHash.baseImages("FROM a:1 AS x\nFROM scratch\nfrom b:2\nFROM x\n")
+                .toArray(new String[0])));
+    }
+
+    @Test
+    void sameInputs(@TempDir Path context) throws IOException {
+        write(context, "fmw.jar", "installer");
+        String hash = InputHash.compute(DOCKERFILE, context, ARGS, IDS);
+        assertEquals(64, hash.length());
+
+        // the Dockerfile in the build context has the build ID, and is not used
+        write(context, "Dockerfile", "LABEL buildid=1234");
+        assertEquals(hash, InputHash.compute(DOCKERFILE, context, ARGS, IDS));
+    }
+
+    @Test
+    void changedInputs(@TempDir Path context) throws IOException {
+        write(context, "fmw.jar", "installer");
+        String hash = InputHash.compute(DOCKERFILE, context, ARGS, IDS);
+
+        assertNotEquals(hash, InputHash.compute(DOCKERFILE, context, ARGS, image -> "sha256:new"));
+        assertNotEquals(hash, InputHash.compute(DOCKERFILE, context, Collections.emptyMap(), IDS));
+        assertNotEquals(hash, InputHash.compute(DOCKERFILE + "RUN true\n", context, ARGS, IDS));
+        write(context, "fmw.jar", "new installer");
+        assertNotEquals(hash, InputHash.compute(DOCKERFILE, context, ARGS, IDS));
+    }
+
+    @Test
+    void missingBaseImage(@TempDir Path context) throws IOException {
+        assertNull(InputHash.compute(DOCKERFILE, context, ARGS, image -> null));
+    }
+
+    @Test
+    void parseImageInfo() {
+        ImageInfo info = ImageInfo.parse("sha256:1234 {\"" + InputHash.LABEL + "\":\"abcd\"}\n");
+        assertEquals("sha256:1234", info.id());
+        assertEquals("abcd", info.label(InputHash.LABEL));
+        assertNull(ImageInfo.parse("sha256:1234 null").label(InputHash.LABEL));
+
+        info = ImageInfo.parse("sha256:1234 {\"a\":\"b c\"} [\"PATH=/bin\",\"OPTS=-Dx=y\"]\n");
+        assertEquals("b c", info.label("a"));
+        assertEquals("-Dx=y", info.env().get("OPTS"));
+        assertEquals(2, info.env().size());
+        assertEquals(0, ImageInfo.parse("sha256:1234 null null").env().size());
+    }
+
+    private static void write(Path dir, String name, String content) throws IOException {
+        Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
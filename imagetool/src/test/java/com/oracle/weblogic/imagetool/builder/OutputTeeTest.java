@@ -0,0 +1,53 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class OutputTeeTest {
+
+    @Test
+    void copyToAllSinks() throws InterruptedException {
+        String output = "Step 1/2 : FROM scratch\r\n ---> Using cache\nsome output\nStep 2/2 : RUN true";
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        ByteArrayOutputStream logFile = new ByteArrayOutputStream();
+        List<String> lines = new CopyOnWriteArrayList<>();
+
+        OutputTee tee = new OutputTee("test", new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)),
+            Arrays.asList(new OutputTee.Sink(console, false), new OutputTee.Sink(logFile, true)), lines::add);
+        tee.join();
+
+        assertEquals(output, new String(console.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(output, new String(logFile.toByteArray(), StandardCharsets.UTF_8));
+        // lines that cannot be build progress are not decoded, the last line has no line feed
+        assertEquals(Arrays.asList("Step 1/2 : FROM scratch", " ---> Using cache", "Step 2/2 : RUN true"), lines);
+        assertEquals(output, tee.tail());
+    }
+
+    @Test
+    void tailKeepsEndOfOutput() throws InterruptedException {
+        byte[] output = new byte[100 * 1024];
+        Arrays.fill(output, (byte) 'a');
+        byte[] error = "ERROR: build failed".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(error, 0, output, output.length - error.length, error.length);
+
+        OutputTee tee = new OutputTee("test", new ByteArrayInputStream(output), Arrays.asList(), null);
+        tee.join();
+        String tail = tee.tail();
+        assertEquals(8 * 1024, tail.length());
+        assertTrue(tail.endsWith("ERROR: build failed"));
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Tag("unit")
+class RegistryAuthTest {
+
+    @Test
+    void registryOfImage() {
+        assertEquals("docker.io", RegistryAuth.registry("busybox"));
+        assertEquals("docker.io", RegistryAuth.registry("library/busybox:1"));
+        assertEquals("container-registry.oracle.com",
+            RegistryAuth.registry("container-registry.oracle.com/java/serverjre:8"));
+        assertEquals("localhost:5000", RegistryAuth.registry("localhost:5000/myimage"));
+        assertEquals("localhost", RegistryAuth.registry("localhost/myimage"));
+    }
+
+    @Test
+    void hostNameOfServer() {
+        assertEquals("docker.io", RegistryAuth.hostName(RegistryAuth.DOCKER_HUB));
+        assertEquals("myregistry:5000", RegistryAuth.hostName("https://myregistry:5000/v2/"));
+        assertEquals("container-registry.oracle.com", RegistryAuth.hostName("container-registry.oracle.com"));
+    }
+
+    @Test
+    void readConfigFile(@TempDir Path dir) throws IOException {
+        Path config = dir.resolve("config.json");
+        Files.write(config, ("{\"auths\":{\"https://index.docker.io/v1/\":{\"auth\":\""
+            + Base64.getEncoder().encodeToString("me:pw".getBytes(StandardCharsets.UTF_8)) + "\"}}}")
+            .getBytes(StandardCharsets.UTF_8));
+
+        JSONObject auth = decode(RegistryAuth.of(config).registryAuth("busybox"));
+        assertEquals("me", auth.getString("username"));
+        assertEquals("pw", auth.getString("password"));
+        assertEquals(RegistryAuth.DOCKER_HUB, auth.getString("serveraddress"));
+        assertNull(RegistryAuth.of(config).registryAuth("container-registry.oracle.com/java/serverjre:8"));
+    }
+
+    @Test
+    void missingOrInvalidConfig(@TempDir Path dir) throws IOException {
+        assertNull(RegistryAuth.of(dir.resolve("config.json")).registryConfig());
+        Path config = dir.resolve("invalid.json");
+        Files.write(config, "not json".getBytes(StandardCharsets.UTF_8));
+        assertNull(RegistryAuth.of(config).registryConfig());
+    }
+
+    @Test
+    void credentialHelpers() {
+        JSONObject config = new JSONObject()
+            .put("auths", new JSONObject().put("container-registry.oracle.com", new JSONObject()))
+            .put("credHelpers", new JSONObject().put("myregistry.example.com", "ecr"))
+            .put("credsStore", "desktop");
+        List<String> calls = new ArrayList<>();
+        RegistryAuth auth = new RegistryAuth(config) {
+            @Override
+            JSONObject helper(String name, String action, String input) {
+                calls.add(name + " " + action + " " + input);
+                if ("list".equals(action)) {
+                    return new JSONObject().put("container-registry.oracle.com", "user");
+                } else if ("ecr".equals(name)) {
+                    return new JSONObject().put("ServerURL", input).put("Username", "<token>").put("Secret", "tok");
+                }
+                return new JSONObject().put("ServerURL", input).put("Username", "user").put("Secret", "pw");
+            }
+        };
+
+        JSONObject registries = decode(auth.registryConfig());
+        assertEquals("pw", registries.getJSONObject("container-registry.oracle.com").getString("password"));
+        assertEquals("tok", registries.getJSONObject("myregistry.example.com").getString("identitytoken"));
+        // each registry is looked up once
+        assertEquals("tok", decode(auth.registryAuth("myregistry.example.com/app:1")).getString("identitytoken"));
+        assertEquals(1, calls.stream().filter(c -> c.startsWith("ecr get")).count());
+        assertEquals(1, calls.stream().filter(c -> c.startsWith("desktop get")).count());
+    }
+
+    private static JSONObject decode(String header) {
+        return new JSONObject(new String(Base64.getUrlDecoder().decode(header), StandardCharsets.UTF_8));
+    }
+}
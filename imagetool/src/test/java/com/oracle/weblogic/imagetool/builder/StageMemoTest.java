@@ -0,0 +1,115 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class StageMemoTest {
+    private static final String DOCKERFILE = "ARG BASE=1\n"
+        + "FROM oraclelinux:8-slim as os_update\n"
+        + "LABEL buildid=BUILD1234\n"
+        + "RUN yum -y update\n"
+        + "FROM os_update as jdk_build\n"
+        + "COPY jdk.tar.gz /tmp/\n"
+        + "FROM os_update as wls_build\n"
+        + "COPY --from=jdk_build /u01/jdk /u01/jdk\n"
+        + "COPY fmw.jar /tmp/\n"
+        + "RUN cp -r /ctx/patches /tmp\n"
+        + "FROM os_update as final_build\n"
+        + "COPY --from=wls_build /u01 /u01\n";
+
+    private static final Function<String, String> IDS = image -> "sha256:" + image.hashCode();
+
+    @Test
+    void memoizedStages(@TempDir Path context) throws IOException {
+        write(context, "jdk.tar.gz", "jdk");
+        write(context, "fmw.jar", "installer");
+        Map<String, String> images = StageMemo.of(DOCKERFILE, "BUILD1234", context, IDS).images();
+        assertEquals(Arrays.asList("os_update", "jdk_build", "wls_build"), Arrays.asList(images.keySet().toArray()));
+        assertTrue(images.get("jdk_build").startsWith("imagetool-stage/jdk-build:"));
+
+        // the build ID is not an input of the stage
+        assertEquals(images, StageMemo.of(DOCKERFILE.replace("BUILD1234", "BUILD5678"), "BUILD5678", context, IDS)
+            .images());
+    }
+
+    @Test
+    void changedInputs(@TempDir Path context) throws IOException {
+        write(context, "jdk.tar.gz", "jdk");
+        write(context, "fmw.jar", "installer");
+        Map<String, String> images = StageMemo.of(DOCKERFILE, "BUILD1234", context, IDS).images();
+
+        // a new patch only changes the middleware stage
+        write(context, "patches/p1.zip", "patch");
+        Map<String, String> patched = StageMemo.of(DOCKERFILE, "BUILD1234", context, IDS).images();
+        assertEquals(images.get("os_update"), patched.get("os_update"));
+        assertEquals(images.get("jdk_build"), patched.get("jdk_build"));
+        assertNotEquals(images.get("wls_build"), patched.get("wls_build"));
+
+        // a new JDK changes the middleware stage too, because it copies the JDK
+        write(context, "jdk.tar.gz", "jdk2");
+        Map<String, String> newJdk = StageMemo.of(DOCKERFILE, "BUILD1234", context, IDS).images();
+        assertEquals(images.get("os_update"), newJdk.get("os_update"));
+        assertNotEquals(patched.get("jdk_build"), newJdk.get("jdk_build"));
+        assertNotEquals(patched.get("wls_build"), newJdk.get("wls_build"));
+
+        // a new base image changes every stage
+        Map<String, String> newBase = StageMemo.of(DOCKERFILE, "BUILD1234", context, image -> "sha256:new").images();
+        assertNotEquals(newJdk.get("os_update"), newBase.get("os_update"));
+    }
+
+    @Test
+    void missingBaseImage(@TempDir Path context) throws IOException {
+        assertTrue(StageMemo.of(DOCKERFILE, "BUILD1234", context, image -> null).images().isEmpty());
+    }
+
+    @Test
+    void dependsOnOtherStage(@TempDir Path context) throws IOException {
+        String dockerfile = "FROM source:1 as source_image\n"
+            + "FROM oraclelinux:8 as os_update\n"
+            + "COPY --from=source_image /u01 /u01\n";
+        assertTrue(StageMemo.of(dockerfile, "BUILD1234", context, IDS).images().isEmpty());
+    }
+
+    @Test
+    void substitutedDockerfile(@TempDir Path context) throws IOException {
+        StageMemo memo = StageMemo.of(DOCKERFILE, "BUILD1234", context, IDS);
+        String osImage = memo.images().get("os_update");
+
+        String jdkStage = memo.dockerfile(Collections.singleton("os_update"), "jdk_build");
+        assertTrue(jdkStage.startsWith("ARG BASE=1\nFROM " + osImage + " as os_update\n"));
+        assertTrue(jdkStage.contains("COPY jdk.tar.gz"));
+        assertFalse(jdkStage.contains("yum"));
+        assertFalse(jdkStage.contains("wls_build"));
+
+        String all = memo.dockerfile(new HashSet<>(Arrays.asList("os_update", "jdk_build", "wls_build")), null);
+        assertFalse(all.contains("COPY jdk.tar.gz"));
+        assertTrue(all.contains("FROM os_update as final_build\nCOPY --from=wls_build /u01 /u01\n"));
+        assertEquals(DOCKERFILE, memo.dockerfile(Collections.emptySet(), null));
+    }
+
+    private static void write(Path dir, String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,84 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class TarContextWriterTest {
+
+    /**
+     * Minimal tar reader for the entries written by TarContextWriter.
+     * @return map of entry name to entry content (directories have an empty content)
+     */
+    private static Map<String, String> readTar(byte[] tar) {
+        Map<String, String> result = new LinkedHashMap<>();
+        int offset = 0;
+        String paxPath = null;
+        while (tar[offset] != 0) {
+            byte[] header = Arrays.copyOfRange(tar, offset, offset + 512);
+            String name = new String(header, 0, 100, StandardCharsets.UTF_8).trim().replace("\0", "");
+            int size = Integer.parseInt(new String(header, 124, 11, StandardCharsets.US_ASCII), 8);
+            char type = (char) header[156];
+            String content = new String(tar, offset + 512, size, StandardCharsets.UTF_8);
+            if (type == 'x') {
+                paxPath = content.substring(content.indexOf("path=") + 5, content.length() - 1);
+            } else {
+                result.put(paxPath != null ? paxPath : name, content);
+                paxPath = null;
+            }
+            offset += 512 + ((size + 511) / 512) * 512;
+        }
+        return result;
+    }
+
+    @Test
+    void writeContext(@TempDir Path tempDir) throws IOException {
+        Path context = Files.createDirectory(tempDir.resolve("context"));
+        Path cached = Files.write(tempDir.resolve("installer.zip"), "installer".getBytes(StandardCharsets.UTF_8));
+        Files.write(context.resolve("Dockerfile"), "FROM scratch".getBytes(StandardCharsets.UTF_8));
+        Path patches = Files.createDirectory(context.resolve("patches"));
+        Files.createSymbolicLink(patches.resolve("p123.zip"), cached);
+        char[] longName = new char[120];
+        Arrays.fill(longName, 'a');
+        Files.write(context.resolve(new String(longName)), "long".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarContextWriter.write(context, out);
+        byte[] tar = out.toByteArray();
+        assertEquals(0, tar.length % 512);
+
+        Map<String, String> entries = readTar(tar);
+        assertEquals("FROM scratch", entries.get("Dockerfile"));
+        assertTrue(entries.containsKey("patches/"));
+        // symbolic links are replaced by the content of the linked file
+        assertEquals("installer", entries.get("patches/p123.zip"));
+        assertEquals("long", entries.get(new String(longName)));
+    }
+
+    @Test
+    void paxRecordLength() {
+        // the length prefix includes its own digits
+        assertEquals("9 size=1\n", TarContextWriter.paxRecord("size", "1"));
+        // a record that crosses from two to three digits
+        char[] value = new char[95];
+        Arrays.fill(value, 'b');
+        String record = TarContextWriter.paxRecord("path", new String(value));
+        assertEquals(record.getBytes(StandardCharsets.UTF_8).length, Integer.parseInt(record.split(" ")[0]));
+    }
+}
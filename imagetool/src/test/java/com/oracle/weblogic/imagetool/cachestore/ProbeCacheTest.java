@@ -0,0 +1,51 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cachestore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Tag("unit")
+class ProbeCacheTest {
+
+    @Test
+    void storedByImageAndScript(@TempDir Path dir) throws IOException {
+        ProbeCache cache = new ProbeCache(dir.resolve("probes"));
+        assertNull(cache.get("sha256:1234", "echo JAVA_HOME=/u01/jdk"));
+
+        Properties result = new Properties();
+        result.setProperty("JAVA_HOME", "/u01/jdk");
+        cache.put("sha256:1234", "echo JAVA_HOME=/u01/jdk", result);
+        assertEquals(result, cache.get("sha256:1234", "echo JAVA_HOME=/u01/jdk"));
+
+        // a different image, like a tag that was moved, or a different script is probed again
+        assertNull(cache.get("sha256:5678", "echo JAVA_HOME=/u01/jdk"));
+        assertNull(cache.get("sha256:1234", "echo ORACLE_HOME=/u01/oracle"));
+
+        // no temporary files are left behind
+        try (Stream<Path> files = Files.list(dir.resolve("probes"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void failedStore(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("probes");
+        Files.write(file, new byte[0]);
+        // the directory cannot be created, the result is not stored
+        ProbeCache cache = new ProbeCache(file);
+        cache.put("sha256:1234", "echo", new Properties());
+        assertNull(cache.get("sha256:1234", "echo"));
+    }
+}
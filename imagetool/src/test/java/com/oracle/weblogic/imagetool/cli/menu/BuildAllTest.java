@@ -0,0 +1,127 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import com.oracle.weblogic.imagetool.api.model.CommandResponse;
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class BuildAllTest {
+    private static final LoggingFacade logger = LoggingFactory.getLogger(BuildAll.class);
+    private static Level oldLevel;
+
+    @BeforeAll
+    static void setUp() {
+        oldLevel = logger.getLevel();
+        logger.setLevel(Level.SEVERE);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        logger.setLevel(oldLevel);
+    }
+
+    private static String job(String name, String command, String... dependsOn) {
+        String deps = dependsOn.length == 0 ? "" : ",\"dependsOn\":[\"" + String.join("\",\"", dependsOn) + "\"]";
+        return "{\"name\":\"" + name + "\",\"command\":\"" + command + "\",\"args\":[\"--tag\",\"" + name + ":1\"]"
+            + deps + "}";
+    }
+
+    private static String spec(String... jobs) {
+        return "{\"jobs\":[" + String.join(",", jobs) + "]}";
+    }
+
+    @Test
+    void dependenciesAreSortedFirst() {
+        List<BuildAll.Job> jobs = BuildAll.parseSpec(spec(
+            job("domain", "update", "base"),
+            job("aux", "createAuxImage"),
+            job("base", "create")));
+
+        List<String> names = jobs.stream().map(j -> j.name).collect(Collectors.toList());
+        assertEquals(3, names.size());
+        assertTrue(names.indexOf("base") < names.indexOf("domain"));
+        BuildAll.Job domain = jobs.get(names.indexOf("domain"));
+        assertEquals("update", domain.command);
+        assertEquals("--tag", domain.args.get(0));
+        assertEquals("domain:1", domain.args.get(1));
+    }
+
+    @Test
+    void invalidSpecs() {
+        // circular dependency
+        assertThrows(IllegalArgumentException.class, () -> BuildAll.parseSpec(spec(
+            job("a", "create", "c"), job("b", "update", "a"), job("c", "update", "b"))));
+        // unknown dependency
+        assertThrows(IllegalArgumentException.class, () -> BuildAll.parseSpec(spec(job("a", "update", "b"))));
+        // duplicate name
+        assertThrows(IllegalArgumentException.class, () -> BuildAll.parseSpec(spec(
+            job("a", "create"), job("a", "update"))));
+        // unsupported command
+        assertThrows(IllegalArgumentException.class, () -> BuildAll.parseSpec(spec(job("a", "inspect"))));
+    }
+
+    @Test
+    void proxySettings() {
+        String withProxy = "{\"name\":\"b\",\"command\":\"update\",\"args\":[\"--tag\",\"b:1\","
+            + "\"--httpsProxyUrl\",\"http://proxy:80\"]}";
+        String withSameProxy = "{\"name\":\"c\",\"command\":\"update\",\"args\":[\"--tag\",\"c:1\","
+            + "\"--httpsProxyUrl=http://proxy:80\"]}";
+        // the same proxy for all jobs, with either option syntax
+        assertEquals(2, BuildAll.parseSpec(spec(withProxy, withSameProxy)).size());
+        // a job without the proxy would use the system properties set by the other job
+        assertThrows(IllegalArgumentException.class, () -> BuildAll.parseSpec(spec(job("a", "create"), withProxy)));
+    }
+
+    @Test
+    void failuresAreIsolated() {
+        List<BuildAll.Job> jobs = BuildAll.parseSpec(spec(
+            job("broken", "create"),
+            job("failed", "create"),
+            job("base", "create"),
+            job("child", "update", "broken"),
+            job("domain", "update", "base")));
+
+        BuildAll buildAll = new BuildAll() {
+            @Override
+            CommandResponse runCommand(BuildAll.Job job) {
+                if (job.name.equals("broken")) {
+                    throw new IllegalStateException("unexpected");
+                } else if (job.name.equals("failed")) {
+                    return new CommandResponse(1, "build failed");
+                }
+                return CommandResponse.success(null);
+            }
+        };
+        StringWriter summary = new StringWriter();
+        CommandResponse response = buildAll.runJobs(jobs, new PrintWriter(summary));
+
+        // the jobs that do not depend on a failed job complete, and the exit code reports the failures
+        assertNotEquals(0, response.getStatus());
+        assertEquals("3 of 5 jobs did not succeed", response.getMessage());
+        List<String> status = jobs.stream().map(j -> j.name + "=" + j.status).collect(Collectors.toList());
+        assertTrue(status.contains("broken=FAILED"));
+        assertTrue(status.contains("failed=FAILED"));
+        assertTrue(status.contains("child=SKIPPED"));
+        assertTrue(status.contains("base=SUCCEEDED"));
+        assertTrue(status.contains("domain=SUCCEEDED"));
+        assertTrue(summary.toString().contains("build failed"));
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+
+import com.oracle.weblogic.imagetool.logging.LoggingFacade;
+import com.oracle.weblogic.imagetool.logging.LoggingFactory;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class ImageRunnerTest {
+
+    private static final LoggingFacade logger = LoggingFactory.getLogger(ImageRunner.class);
+    private static Level originalLevel;
+
+    @BeforeAll
+    static void setUp() {
+        originalLevel = logger.getLevel();
+        logger.setLevel(Level.SEVERE);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        logger.setLevel(originalLevel);
+    }
+
+    @Test
+    void oneLinePerImage() throws InterruptedException {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        long failed = new ImageRunner(2, image -> {
+            if (image.startsWith("bad")) {
+                throw new IOException("cannot read\n" + image);
+            } else if (image.startsWith("aru")) {
+                throw new CompletionException(new IllegalStateException("ARU is down"));
+            }
+            return new JSONObject().put("image", image).put("ok", true);
+        }).run(Arrays.asList("good:1", "bad:1", "aru:1", "good:2"), lines::add);
+
+        assertEquals(2, failed);
+        Map<String, JSONObject> byImage = new TreeMap<>();
+        for (String line : lines) {
+            assertFalse(line.contains("\n"), line);
+            JSONObject value = new JSONObject(line);
+            byImage.put(value.getString("image"), value);
+        }
+        assertEquals(Arrays.asList("aru:1", "bad:1", "good:1", "good:2"), new ArrayList<>(byImage.keySet()));
+        assertTrue(byImage.get("good:2").getBoolean("ok"));
+        assertEquals("cannot read\nbad:1", byImage.get("bad:1").getString("error"));
+        // the cause of a CompletionException is reported
+        assertEquals("ARU is down", byImage.get("aru:1").getString("error"));
+    }
+
+    @Test
+    void interruptedTask() throws InterruptedException {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        long failed = new ImageRunner(1, image -> {
+            if (image.equals("slow:1")) {
+                throw new InterruptedException("probe interrupted");
+            }
+            return new JSONObject().put("image", image);
+        }).run(Arrays.asList("slow:1", "good:1"), lines::add);
+
+        assertEquals(1, failed);
+        // the interrupted image still gets its line, and the next image is processed
+        assertEquals(2, lines.size());
+        JSONObject error = new JSONObject(lines.get(0));
+        assertEquals("slow:1", error.getString("image"));
+        assertEquals("probe interrupted", error.getString("error"));
+    }
+
+    @Test
+    void errorWithoutMessage() {
+        JSONObject value = ImageRunner.errorJson("missing", null);
+        assertEquals("missing", value.getString("image"));
+        assertTrue(value.isNull("error"));
+    }
+}
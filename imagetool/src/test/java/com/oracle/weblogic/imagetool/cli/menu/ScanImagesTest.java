@@ -0,0 +1,91 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.cli.menu;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.oracle.weblogic.imagetool.aru.AruPatch;
+import com.oracle.weblogic.imagetool.aru.InstalledPatch;
+import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class ScanImagesTest {
+
+    private static final String PSU_220105 = "33727616;24593823;\"WLS PATCH SET UPDATE 12.2.1.4.220105\"";
+
+    private static List<AruPatch> recommended() {
+        return Arrays.asList(
+            new AruPatch().patchId("34012040").description("WLS PATCH SET UPDATE 12.2.1.4.220329")
+                .psuBundle("Oracle WebLogic Server 12.2.1.4.220329"),
+            new AruPatch().patchId("33735326").description("ADF BUNDLE PATCH 12.2.1.4.220201"),
+            new AruPatch().patchId("28186730").description("OPATCH 13.9.4.2.8 FOR EM 13.4, 13.5 AND FMW/WLS"));
+    }
+
+    @Test
+    void missingAndSupersededPatches() {
+        List<InstalledPatch> installed = InstalledPatch.getPatchList(PSU_220105 + ";33735326;24556749;\"ADF\"");
+        ScanImages.PatchDrift drift = new ScanImages.PatchDrift(installed, recommended());
+
+        assertFalse(drift.isCurrent());
+        assertEquals(Arrays.asList("34012040"),
+            drift.missing().stream().map(AruPatch::patchId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("33727616"),
+            drift.superseded().stream().map(InstalledPatch::getBugNumber).collect(Collectors.toList()));
+
+        JSONObject line = drift.toJson("wls:1", FmwInstallerType.WLS, "12.2.1.4.0");
+        assertEquals("wls:1", line.getString("image"));
+        assertEquals("WLS", line.getString("type"));
+        assertEquals("12.2.1.4.0", line.getString("version"));
+        assertEquals("12.2.1.4.220105", line.getString("installedPsu"));
+        assertEquals("12.2.1.4.220329", line.getString("recommendedPsu"));
+        assertFalse(line.getBoolean("current"));
+        assertEquals("34012040", line.getJSONArray("missing").getJSONObject(0).getString("patch"));
+        assertEquals("WLS PATCH SET UPDATE 12.2.1.4.220105",
+            line.getJSONArray("superseded").getJSONObject(0).getString("description"));
+    }
+
+    @Test
+    void currentImage() {
+        List<InstalledPatch> installed = InstalledPatch.getPatchList(
+            "34012040;24630509;\"WLS PATCH SET UPDATE 12.2.1.4.220329\";33735326;24556749;\"ADF\";"
+                + "1221417;24556750;\"One-off\"");
+        ScanImages.PatchDrift drift = new ScanImages.PatchDrift(installed, recommended());
+
+        // OPatch is not in the inventory, and the one-off patch is not a bundle patch
+        assertTrue(drift.isCurrent());
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void builtImagesLeaveOutStages(@TempDir Path dir) throws Exception {
+        // a fake docker command, with a built image, a memoized stage image, and no dangling image
+        Path docker = dir.resolve("docker");
+        Files.write(docker, ("#!/bin/sh\n"
+            + "case \"$*\" in\n"
+            + "  *buildid*dangling=false*) echo sha256:built; echo sha256:stage ;;\n"
+            + "  *buildid*) echo sha256:built; echo sha256:stage; echo sha256:dangling ;;\n"
+            + "  *imagetool.stage*) echo sha256:stage ;;\n"
+            + "esac\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(docker.toFile().setExecutable(true));
+
+        ScanImages scan = new ScanImages();
+        scan.buildEngine = docker.toString();
+        assertEquals(Arrays.asList("sha256:built"), scan.builtImages());
+    }
+}
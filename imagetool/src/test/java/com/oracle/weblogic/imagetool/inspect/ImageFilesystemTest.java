@@ -0,0 +1,277 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.inspect;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+import com.oracle.weblogic.imagetool.util.Utils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class ImageFilesystemTest {
+    private static final String CONFIG = "{\"config\":{\"Env\":[\"PATH=/usr/bin:/bin\","
+        + "\"JAVA_HOME=/u01/jdk\",\"ORACLE_HOME=/u01/oracle\",\"DOMAIN_HOME=/u01/domains/base\"]}}";
+
+    private static byte[] baseLayer() throws IOException {
+        return new Tar()
+            .dir("etc/", 0, 0)
+            .file("etc/passwd", "root:x:0:0::/root:/bin/sh\noracle:x:1000:1000::/home/oracle:/bin/sh\n")
+            .file("etc/group", "root:x:0:\noracle:x:1000:\n")
+            .symlink("etc/os-release", "../usr/lib/os-release")
+            .file("usr/lib/os-release", "ID=\"ol\"\nVERSION_ID=\"8.6\"\nNAME=\"Oracle Linux Server\"\n")
+            .file("usr/bin/microdnf", "")
+            .file("tmp/installer.jar", "installer")
+            .bytes();
+    }
+
+    private static byte[] jdkLayer() throws IOException {
+        return new Tar()
+            .dir("u01/jdk1.8.0_341/", 1000, 1000)
+            .file("u01/jdk1.8.0_341/release", "JAVA_VERSION=\"1.8.0_341\"\nOS_NAME=\"Linux\"\n")
+            .symlink("u01/jdk", "/u01/jdk1.8.0_341")
+            .file("tmp/.wh.installer.jar", "")
+            .bytes();
+    }
+
+    private static byte[] oracleLayer() throws IOException {
+        return new Tar()
+            .dir("u01/oracle/", 1000, 1000)
+            .file("u01/oracle/inventory/registry.xml",
+                "<registry>\n"
+                + "  <distribution status=\"installed\" name=\"WebLogic Server\" version=\"12.2.1.4.0\">\n"
+                + "    <feature-set product-family=\"WebLogic\" name=\"wls\"/>\n"
+                + "</registry>\n")
+            .file("u01/oracle/OPatch/version.txt", "OPATCH_VERSION:13.9.4.2.10\n")
+            .file("u01/oracle/inventory/patches/33727616_24670413.xml",
+                "<patch unique-patch-id=\"24670413\" description=\"WLS PATCH SET UPDATE 12.2.1.4.220329\"/>")
+            .dir("u01/oracle/.patch_storage/33727616_Mar_29_2022_01_15_55/", 1000, 1000)
+            .dir("u01/domains/base/", 1000, 1000)
+            .bytes();
+    }
+
+    @Test
+    void dockerArchive() throws IOException {
+        byte[] archive = new Tar()
+            .file("abc/layer.tar", baseLayer())
+            .file("config.json", CONFIG)
+            .file("def/layer.tar", gzip(jdkLayer()))
+            .file("ghi/layer.tar", oracleLayer())
+            .file("manifest.json", "[{\"Config\":\"config.json\",\"Layers\":[\"abc/layer.tar\","
+                + "\"def/layer.tar\",\"ghi/layer.tar\"]}]")
+            .bytes();
+        ImageFilesystem image = ImageFilesystem.fromArchive(new ByteArrayInputStream(archive));
+
+        assertEquals("/u01/jdk", image.env("JAVA_HOME"));
+        assertTrue(image.exists("/usr/bin/microdnf"));
+        // whiteout in a higher layer
+        assertFalse(image.exists("/tmp/installer.jar"));
+        // symbolic links
+        assertEquals("JAVA_VERSION=\"1.8.0_341\"\nOS_NAME=\"Linux\"\n", image.read("/u01/jdk/release"));
+        assertTrue(image.read("/etc/os-release").contains("Oracle Linux"));
+        assertFalse(image.hasChildren("/u01/domains/base"));
+        assertEquals(Arrays.asList("/u01/oracle/OPatch/version.txt"), image.list("/u01/oracle/OPatch"));
+    }
+
+    @Test
+    void opaqueDirectory() throws IOException {
+        byte[] upper = new Tar().file("usr/lib/.wh..wh..opq", "").file("usr/lib/other", "").bytes();
+        byte[] archive = new Tar()
+            .file("1.tar", baseLayer())
+            .file("2.tar", upper)
+            .file("c.json", CONFIG)
+            .file("manifest.json", "[{\"Config\":\"c.json\",\"Layers\":[\"1.tar\",\"2.tar\"]}]")
+            .bytes();
+        ImageFilesystem image = ImageFilesystem.fromArchive(new ByteArrayInputStream(archive));
+        assertNull(image.read("/etc/os-release"));
+        assertTrue(image.exists("/usr/lib/other"));
+        assertTrue(image.exists("/usr/bin/microdnf"));
+    }
+
+    @Test
+    void ociLayout(@TempDir Path layout) throws IOException {
+        String base = writeBlob(layout, gzip(baseLayer()));
+        String jdk = writeBlob(layout, jdkLayer());
+        String oracle = writeBlob(layout, oracleLayer());
+        String config = writeBlob(layout, CONFIG.getBytes(StandardCharsets.UTF_8));
+        String manifest = writeBlob(layout, ("{\"config\":{\"digest\":\"" + config + "\"},\"layers\":["
+            + "{\"digest\":\"" + base + "\"},{\"digest\":\"" + jdk + "\"},{\"digest\":\"" + oracle + "\"}]}")
+            .getBytes(StandardCharsets.UTF_8));
+        Files.write(layout.resolve("index.json"), ("{\"manifests\":[{\"digest\":\"" + manifest + "\"}]}")
+            .getBytes(StandardCharsets.UTF_8));
+
+        Properties result = new LayerInspector(ImageFilesystem.fromOciLayout(layout)).inspect(true);
+        assertEquals("MICRODNF", result.getProperty("packageManager"));
+        assertEquals("/u01/jdk", result.getProperty("javaHome"));
+        assertEquals("1.8.0_341", result.getProperty("javaVersion"));
+        assertEquals("/u01/domains/base", result.getProperty("domainHome"));
+        assertEquals("true", result.getProperty("wdtModelOnly"));
+        assertEquals("/u01/oracle", result.getProperty("oracleHome"));
+        assertEquals("12.2.1.4.0", result.getProperty("wlsVersion"));
+        assertEquals("oracle", result.getProperty("oracleHomeUser"));
+        assertEquals("oracle", result.getProperty("oracleHomeGroup"));
+        assertEquals("13.9.4.2.10", result.getProperty("opatchVersion"));
+        assertEquals("33727616;24670413;WLS PATCH SET UPDATE 12.2.1.4.220329", result.getProperty("oraclePatches"));
+        assertEquals("WebLogic", result.getProperty("oracleInstalledProducts"));
+        assertEquals("\"ol\"", result.getProperty("__OS__ID"));
+        assertEquals("\"8.6\"", result.getProperty("__OS__VERSION_ID"));
+    }
+
+    @Test
+    void unknownPatchInventory() throws IOException {
+        byte[] patched = new Tar()
+            .dir("u01/oracle/.patch_storage/33727616_Mar_29_2022_01_15_55/", 1000, 1000)
+            .dir("u01/oracle/.patch_storage/34012345_Apr_29_2022_01_15_55/", 1000, 1000)
+            .bytes();
+        byte[] archive = new Tar()
+            .file("1.tar", oracleLayer())
+            .file("2.tar", patched)
+            .file("c.json", CONFIG)
+            .file("manifest.json", "[{\"Config\":\"c.json\",\"Layers\":[\"1.tar\",\"2.tar\"]}]")
+            .bytes();
+        LayerInspector inspector = new LayerInspector(ImageFilesystem.fromArchive(new ByteArrayInputStream(archive)));
+        // more patches in .patch_storage than in the inventory, the container must be used to list patches
+        assertNull(inspector.inspect(true));
+        assertEquals("/u01/oracle", inspector.inspect(false).getProperty("oracleHome"));
+    }
+
+    @Test
+    void oneoffsInventory() throws IOException {
+        byte[] oneoffs = new Tar()
+            .dir("u01/oracle/inventory/patches/", 1000, 1000)
+            .file("u01/oracle/inventory/oneoffs/33727616/etc/config/inventory.xml",
+                "<oneoff_inventory>\n  <patch_id number=\"33727616\"/>\n"
+                + "  <unique_patch_id>24670413</unique_patch_id>\n"
+                + "  <patch_description>WLS PATCH SET UPDATE 12.2.1.4.220329 &amp; fixes</patch_description>\n"
+                + "</oneoff_inventory>\n")
+            .bytes();
+        byte[] archive = new Tar()
+            .file("1.tar", oracleLayer())
+            .file("2.tar", new Tar().file("u01/oracle/inventory/patches/.wh.33727616_24670413.xml", "").bytes())
+            .file("3.tar", oneoffs)
+            .file("c.json", CONFIG)
+            .file("manifest.json", "[{\"Config\":\"c.json\",\"Layers\":[\"1.tar\",\"2.tar\",\"3.tar\"]}]")
+            .bytes();
+        LayerInspector inspector = new LayerInspector(ImageFilesystem.fromArchive(new ByteArrayInputStream(archive)));
+        assertEquals("33727616;24670413;WLS PATCH SET UPDATE 12.2.1.4.220329 & fixes",
+            inspector.inspect(true).getProperty("oraclePatches"));
+    }
+
+    @Test
+    void noPatchesFound() throws IOException {
+        byte[] archive = new Tar()
+            .file("1.tar", new Tar().dir("u01/oracle/", 1000, 1000).bytes())
+            .file("c.json", CONFIG)
+            .file("manifest.json", "[{\"Config\":\"c.json\",\"Layers\":[\"1.tar\"]}]")
+            .bytes();
+        // an empty list cannot be told apart from an unknown inventory format
+        assertNull(new LayerInspector(ImageFilesystem.fromArchive(new ByteArrayInputStream(archive))).inspect(true));
+    }
+
+    @Test
+    void missingLayer() throws IOException {
+        byte[] archive = new Tar()
+            .file("c.json", CONFIG)
+            .file("manifest.json", "[{\"Config\":\"c.json\",\"Layers\":[\"1.tar\"]}]")
+            .bytes();
+        assertThrows(IOException.class, () -> ImageFilesystem.fromArchive(new ByteArrayInputStream(archive)));
+    }
+
+    private static String writeBlob(Path layout, byte[] content) throws IOException {
+        try {
+            String hex = Utils.toHexString(MessageDigest.getInstance("SHA-256").digest(content)).toLowerCase();
+            Path blob = layout.resolve("blobs/sha256/" + hex);
+            Files.createDirectories(blob.getParent());
+            Files.write(blob, content);
+            return "sha256:" + hex;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(result)) {
+            out.write(content);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Writes ustar archives for the tests, with directories and symbolic links.
+     */
+    private static class Tar {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Tar file(String name, String content) throws IOException {
+            return file(name, content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Tar file(String name, byte[] content) throws IOException {
+            entry(name, '0', content.length, "", 0, 0);
+            out.write(content);
+            out.write(new byte[(512 - content.length % 512) % 512]);
+            return this;
+        }
+
+        Tar dir(String name, int uid, int gid) throws IOException {
+            entry(name, '5', 0, "", uid, gid);
+            return this;
+        }
+
+        Tar symlink(String name, String target) throws IOException {
+            entry(name, '2', 0, target, 0, 0);
+            return this;
+        }
+
+        byte[] bytes() throws IOException {
+            out.write(new byte[1024]);
+            return out.toByteArray();
+        }
+
+        private void entry(String name, char type, long size, String link, int uid, int gid) throws IOException {
+            byte[] header = new byte[512];
+            put(header, 0, name);
+            put(header, 100, String.format("%07o", type == '5' ? 0755 : 0644));
+            put(header, 108, String.format("%07o", uid));
+            put(header, 116, String.format("%07o", gid));
+            put(header, 124, String.format("%011o", size));
+            put(header, 136, String.format("%011o", 0));
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            header[156] = (byte) type;
+            put(header, 157, link);
+            put(header, 257, "ustar");
+            put(header, 263, "00");
+            int checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xff;
+            }
+            put(header, 148, String.format("%06o", checksum));
+            header[154] = 0;
+            out.write(header);
+        }
+
+        private static void put(byte[] header, int offset, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(bytes, 0, header, offset, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.inspect;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@Tag("unit")
+class ImageMetadataTest {
+
+    private static Properties probed() {
+        Properties result = new Properties();
+        result.setProperty("packageManager", "MICRODNF");
+        result.setProperty("javaHome", "/u01/jdk");
+        result.setProperty("oracleHome", "/u01/oracle");
+        result.setProperty("wdtModelHome", "/u01/wdt/models");
+        result.setProperty("oracleInstalledProducts", "");
+        result.setProperty("oraclePatches", "33727616;24670413;WLS PATCH SET UPDATE 12.2.1.4.220329");
+        result.setProperty("__OS__ID", "\"ol\"");
+        return result;
+    }
+
+    @Test
+    void labels() {
+        Map<String, String> labels = new ImageMetadata(probed()).set("domainHome", "/u01/domains/base").labels();
+        assertEquals("/u01/oracle", labels.get("com.oracle.weblogic.imagetool.inspect.oracleHome"));
+        assertEquals("\"ol\"", labels.get("com.oracle.weblogic.imagetool.inspect.os.ID"));
+        // patches applied by the build are not known
+        assertFalse(labels.containsKey("com.oracle.weblogic.imagetool.inspect.oraclePatches"));
+
+        Properties result = ImageMetadata.fromLabels(labels, false);
+        Properties expected = probed();
+        expected.remove("oraclePatches");
+        expected.setProperty("domainHome", "/u01/domains/base");
+        assertEquals(expected, result);
+        assertNull(ImageMetadata.fromLabels(labels, true));
+    }
+
+    @Test
+    void inheritedLabels() {
+        Map<String, String> labels = new HashMap<>(new ImageMetadata(probed()).labels());
+        // a property that was removed by the next build is still inherited from the base image
+        labels.putAll(new ImageMetadata(probed()).set("wdtModelHome", null).labels());
+        assertNull(ImageMetadata.fromLabels(labels, false).getProperty("wdtModelHome"));
+
+        // a build with additional build commands
+        labels.putAll(ImageMetadata.unknown());
+        assertNull(ImageMetadata.fromLabels(labels, false));
+    }
+
+    @Test
+    void notBuiltByTool() {
+        Map<String, String> labels = new HashMap<>();
+        assertNull(ImageMetadata.fromLabels(labels, false));
+        labels.put("com.oracle.weblogic.imagetool.inspect", "oracleHome");
+        // incomplete labels
+        assertNull(ImageMetadata.fromLabels(labels, false));
+    }
+}
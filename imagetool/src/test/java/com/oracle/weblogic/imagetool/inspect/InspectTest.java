@@ -9,13 +9,19 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 
+import org.json.JSONObject;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("unit")
 class InspectTest {
@@ -31,6 +37,52 @@ class InspectTest {
             "src/test/resources/inspect/image2.json");
     }
 
+    @Test
+    void testJsonLine() throws IOException {
+        Properties loaded = new Properties();
+        loaded.load(new StringReader("oraclePatches=26051289;123;One-off\\tfix\n"
+            + "oracleHome=C:\\\\oracle\n__OS__ID=\"ol\"\n"));
+        JSONObject line = new InspectOutput(loaded).toJson("wls:12.2.1.4");
+        assertEquals("wls:12.2.1.4", line.getString("image"));
+        assertEquals("26051289", line.getJSONArray("oraclePatches").getJSONObject(0).getString("patch"));
+        assertEquals("One-off\tfix", line.getJSONArray("oraclePatches").getJSONObject(0).getString("description"));
+        assertEquals("ol", line.getJSONObject("os").getString("id"));
+        assertTrue(line.getJSONObject("os").isNull("name"));
+        assertEquals("C:\\oracle", line.getString("oracleHome"));
+        // a single line, that can be parsed back
+        String text = line.toString();
+        assertFalse(text.contains("\n"));
+        assertTrue(new JSONObject(text).similar(line));
+    }
+
+    @Test
+    void testDiff() throws IOException {
+        Properties from = new Properties();
+        from.load(new StringReader("oraclePatches=1;10;PSU 1;2;20;One-off\n"
+            + "wlsVersion=12.2.1.4.0\njavaVersion=1.8.0_321\noracleHome=/u01/oracle\n__OS__ID=\"ol\"\n"
+            + "__OS__VERSION_ID=\"8.5\"\n"));
+        Properties to = new Properties();
+        to.load(new StringReader("oraclePatches=3;30;PSU 2;2;20;One-off\n"
+            + "wlsVersion=12.2.1.4.0\njavaVersion=1.8.0_333\noracleHome=/u01/oracle\n__OS__ID=\"ol\"\n"
+            + "__OS__VERSION_ID=\"8.6\"\npackageManager=MICRODNF\n"));
+        Map<String, String> env = new TreeMap<>();
+        env.put("PATH", "/bin");
+
+        ImageDiff diff = new ImageDiff(from, env, to, Collections.singletonMap("PATH", "/usr/bin"));
+        JSONObject expected = new JSONObject("{\"from\":\"a\",\"to\":\"b\",\"identical\":false,\"patches\":{"
+            + "\"added\":[{\"patch\":\"3\",\"uid\":\"30\",\"description\":\"PSU 2\"}],"
+            + "\"removed\":[{\"patch\":\"1\",\"uid\":\"10\",\"description\":\"PSU 1\"}]},"
+            + "\"versions\":{\"os\":{\"from\":\"ol 8.5\",\"to\":\"ol 8.6\"},"
+            + "\"javaVersion\":{\"from\":\"1.8.0_321\",\"to\":\"1.8.0_333\"}},"
+            + "\"properties\":{\"packageManager\":{\"from\":null,\"to\":\"MICRODNF\"}},"
+            + "\"env\":{\"PATH\":{\"from\":\"/bin\",\"to\":\"/usr/bin\"}}}");
+        JSONObject actual = diff.toJson("a", "b");
+        assertTrue(expected.similar(actual), actual.toString());
+        assertTrue(new ImageDiff(from, null, to, env).toJson("a", "b").isNull("env"));
+
+        assertTrue(new ImageDiff(from, null, from, env).isIdentical());
+    }
+
     void testPropertiesToJson(String propsFile, String jsonFile) throws IOException {
         Properties loaded = new Properties();
         try (InputStream input = new FileInputStream(propsFile)) {
@@ -67,5 +67,14 @@ class InstallerTest {
         assertNull(FmwInstallerType.fromProductList(""));
         assertNull(FmwInstallerType.fromProductList(null));
     }
+
+    @Test
+    void productList() {
+        assertEquals("COH,FIT,JDBC,WLS", FmwInstallerType.WLS.productList());
+        for (FmwInstallerType type : Arrays.asList(FmwInstallerType.WLS, FmwInstallerType.FMW,
+            FmwInstallerType.SOA_OSB, FmwInstallerType.OAM)) {
+            assertEquals(type, FmwInstallerType.fromProductList(type.productList()));
+        }
+    }
 }
 
@@ -0,0 +1,106 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class AsyncHandlerTest {
+
+    /**
+     * Records the formatted messages, and waits for a latch before publishing, to fill the queue.
+     */
+    private static class RecordingHandler extends Handler {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch release = new CountDownLatch(1);
+        int flushes = 0;
+        boolean closed = false;
+
+        @Override
+        public void publish(LogRecord record) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(new SimpleFormatter().formatMessage(record));
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    void publishAllRecordsOnClose() {
+        RecordingHandler target = new RecordingHandler();
+        target.release.countDown();
+        AsyncHandler handler = new AsyncHandler(target, 16, AsyncHandler.Policy.BLOCK, 4);
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+        handler.close();
+        handler.publish(new LogRecord(Level.INFO, "after close"));
+
+        assertEquals(100, target.messages.size());
+        assertEquals("message 0", target.messages.get(0));
+        assertEquals("message 99", target.messages.get(99));
+        assertTrue(target.flushes >= 25, "flushed after each batch of 4");
+        assertTrue(target.closed);
+        assertEquals(0, handler.dropped());
+    }
+
+    @Test
+    void dropWhenFull() {
+        RecordingHandler target = new RecordingHandler();
+        AsyncHandler handler = new AsyncHandler(target, 2, AsyncHandler.Policy.DROP, 4);
+        for (int i = 0; i < 10; i++) {
+            // the worker holds at most one batch, the queue holds 2 more records
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+        target.release.countDown();
+        handler.close();
+
+        assertTrue(handler.dropped() >= 10 - 2 - 4, "dropped " + handler.dropped());
+        assertEquals(10 - handler.dropped() + 1, target.messages.size());
+        assertTrue(target.messages.get(target.messages.size() - 1).startsWith("Dropped "));
+    }
+
+    @Test
+    void messageFormattedBeforeQueued() {
+        RecordingHandler target = new RecordingHandler();
+        AsyncHandler handler = new AsyncHandler(target, 16, AsyncHandler.Policy.BLOCK, 4);
+        List<String> patches = new ArrayList<>();
+        patches.add("1234");
+        LogRecord record = new LogRecord(Level.INFO, "patches {0}");
+        record.setParameters(new Object[] {patches});
+        record.setSourceClassName("Caller");
+        handler.publish(record);
+        // the caller changes the parameter while the worker waits to publish the record
+        patches.add("5678");
+        target.release.countDown();
+        handler.close();
+
+        assertEquals("patches [1234]", target.messages.get(0));
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.logging;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class JsonLinesFormatterTest {
+
+    @Test
+    void format() {
+        LogRecord logRecord = new LogRecord(Level.WARNING, "message [[brightred: {0}]]\nhere");
+        logRecord.setParameters(new Object[] {"\"goes\""});
+        logRecord.setSourceClassName("a.B");
+        logRecord.setThrown(new IllegalStateException("failed"));
+
+        String line = new JsonLinesFormatter().format(logRecord);
+        assertTrue(line.endsWith("}" + System.getProperty("line.separator")));
+        assertEquals(1, line.trim().split("\n").length);
+
+        JSONObject json = new JSONObject(line);
+        assertEquals("WARNING", json.getString("level"));
+        assertEquals("a.B", json.getString("class"));
+        assertEquals("message \"goes\"\nhere", json.getString("message"));
+        assertTrue(json.getString("thrown").startsWith("java.lang.IllegalStateException: failed"));
+        assertFalse(json.has("method"));
+        assertFalse(json.has("key"));
+    }
+
+    @Test
+    void formatMessageKey() {
+        LogRecord logRecord = new LogRecord(Level.INFO, "IMG-0001");
+        JSONObject json = new JSONObject(new JsonLinesFormatter().format(logRecord));
+        assertEquals("IMG-0001", json.getString("key"));
+    }
+}
@@ -0,0 +1,73 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.logging;
+
+import java.util.Locale;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A timed harness for the per-call cost of logging, comparing the code paths before and after the StackWalker
+ * caller inference and the Supplier overloads.  JMH is not a dependency of the build, so this is not run by the
+ * unit tests.  Run it by hand after mvn test-compile:
+ * <pre>
+ * java -cp imagetool/target/classes:imagetool/target/test-classes \
+ *     com.oracle.weblogic.imagetool.logging.LoggingBenchmark
+ * </pre>
+ * Each case is called from a deep stack, like a command running in a worker thread, warmed up, and timed over
+ * several rounds.  The best round is reported.
+ */
+public class LoggingBenchmark {
+    private static final int STACK_DEPTH = 60;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+    // capturing a stack trace takes microseconds, a disabled log call takes nanoseconds
+    private static final int CALLER_CALLS = 10_000;
+    private static final int LOG_CALLS = 1_000_000;
+
+    // results are stored so that the JIT cannot remove the calls
+    private static volatile Object sink;
+    private static int counter;
+
+    /**
+     * Run the benchmark, and print the time of each case in nanoseconds per call.
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        LoggingFacade logger = new LoggingFacade(Logger.getLogger(LoggingBenchmark.class.getName()));
+        logger.setLevel(Level.INFO);
+        System.out.println("java " + System.getProperty("java.version"));
+
+        report("caller from stack trace (before)", CALLER_CALLS, () -> sink = logger.inferCallerFromStackTrace());
+        report("caller from inferCaller (after)", CALLER_CALLS, () -> sink = logger.inferCaller());
+        report("disabled fine, message built (before)", LOG_CALLS,
+            () -> logger.fine("Patch " + counter++ + " " + "WLS PATCH SET UPDATE" + " release " + counter));
+        report("disabled fine, supplier (after)", LOG_CALLS,
+            () -> logger.fine(() -> "Patch " + counter++ + " " + "WLS PATCH SET UPDATE" + " release " + counter));
+    }
+
+    private static void report(String name, int calls, Runnable call) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            atDepth(STACK_DEPTH, () -> time(calls, call));
+        }
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            best = Math.min(best, atDepth(STACK_DEPTH, () -> time(calls, call)));
+        }
+        System.out.println(String.format(Locale.ROOT, "%-40s %10.1f ns/call", name, best));
+    }
+
+    private static double time(int calls, Runnable call) {
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            call.run();
+        }
+        return (System.nanoTime() - start) / (double) calls;
+    }
+
+    private static double atDepth(int depth, DoubleSupplier task) {
+        return depth == 0 ? task.getAsDouble() : atDepth(depth - 1, task);
+    }
+}
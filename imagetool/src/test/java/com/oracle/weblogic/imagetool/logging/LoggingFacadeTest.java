@@ -0,0 +1,35 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.logging;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("unit")
+class LoggingFacadeTest {
+
+    @Test
+    void inferCaller() {
+        LoggingFacade.CallerDetails details = new LoggingFacade(Logger.getLogger("inferCaller")).inferCaller();
+        assertEquals(LoggingFacadeTest.class.getName(), details.clazz);
+        assertEquals("inferCaller", details.method);
+    }
+
+    @Test
+    void supplierIsNotCalledWhenDisabled() {
+        LoggingFacade logger = new LoggingFacade(Logger.getLogger("supplierIsNotCalledWhenDisabled"));
+        logger.setLevel(Level.INFO);
+        logger.fine(() -> {
+            throw new IllegalStateException("the message should not be built");
+        });
+        logger.exiting(() -> {
+            throw new IllegalStateException("the result should not be built");
+        });
+    }
+}
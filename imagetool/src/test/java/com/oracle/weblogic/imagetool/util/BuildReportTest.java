@@ -0,0 +1,77 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class BuildReportTest {
+
+    @AfterEach
+    void detach() {
+        BuildReport.attach(null);
+    }
+
+    @Test
+    void phasesAndCounters() {
+        BuildReport report = new BuildReport().attribute("buildId", "abc");
+        BuildReport.attach(report);
+        try (BuildReport.Phase phase = BuildReport.phase("copy")) {
+            phase.bytes(100);
+        }
+        try (BuildReport.Phase phase = BuildReport.phase("copy")) {
+            phase.bytes(20);
+        }
+        BuildReport.count("cacheHits", 1);
+        BuildReport.count("cacheHits", 2);
+
+        JSONObject json = report.toJson();
+        assertEquals("abc", json.getString("buildId"));
+        JSONObject copy = json.getJSONObject("phases").getJSONObject("copy");
+        assertEquals(2, copy.getLong("count"));
+        assertEquals(120, copy.getLong("bytes"));
+        assertEquals(3, json.getJSONObject("counters").getLong("cacheHits"));
+    }
+
+    @Test
+    void nothingRecordedWithoutReport() {
+        BuildReport report = new BuildReport();
+        // not attached to this thread
+        try (BuildReport.Phase phase = BuildReport.phase("copy")) {
+            phase.bytes(100);
+        }
+        BuildReport.count("cacheHits", 1);
+        JSONObject json = report.toJson();
+        assertFalse(json.getJSONObject("phases").has("copy"));
+        assertFalse(json.getJSONObject("counters").has("cacheHits"));
+    }
+
+    @Test
+    void tasksUseReportOfGraph(@TempDir Path tempDir) throws Exception {
+        BuildReport report = new BuildReport();
+        BuildReport.attach(report);
+        new TaskGraph()
+            .add("one", () -> BuildReport.count("tasks", 1))
+            .add("two", () -> BuildReport.count("tasks", 1), "one")
+            .run();
+
+        Path file = tempDir.resolve("reports").resolve("timing.json");
+        report.write(file);
+        JSONObject json = new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertEquals(2, json.getJSONObject("counters").getLong("tasks"));
+        assertTrue(json.has("totalMillis"));
+    }
+}
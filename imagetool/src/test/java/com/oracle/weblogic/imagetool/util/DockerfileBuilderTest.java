@@ -6,17 +6,23 @@ package com.oracle.weblogic.imagetool.util;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 import com.github.mustachejava.DefaultMustacheFactory;
 import com.github.mustachejava.Mustache;
 import com.github.mustachejava.MustacheFactory;
+import com.oracle.weblogic.imagetool.cachestore.CacheStoreTestImpl;
 import com.oracle.weblogic.imagetool.cli.menu.PackageManagerType;
 import com.oracle.weblogic.imagetool.installer.FmwInstallerType;
 import com.oracle.weblogic.imagetool.installer.MiddlewareInstall;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("unit")
@@ -58,4 +64,123 @@ class DockerfileBuilderTest {
         options = new DockerfileOptions("123").setPackageInstaller(PackageManagerType.ZYPPER);
         assertTrue(options.useZypper(), "Failed to set 'ZYPPER' installer");
     }
-}
\ No newline at end of file
+
+    @Test
+    void buildCacheLabels() throws IOException {
+        MiddlewareInstall install = new MiddlewareInstall(FmwInstallerType.WLS, "12.2.1.3", null);
+        DockerfileOptions dockerfileOptions = new DockerfileOptions("123")
+            .setPackageInstaller(PackageManagerType.YUM)
+            .setMiddlewareInstall(install)
+            .useBuildCache(true);
+
+        MustacheFactory mf = new DefaultMustacheFactory(new File("src/main/resources/docker-files"));
+        Mustache mustache = mf.compile("Create_Image.mustache");
+        StringWriter writer = new StringWriter();
+        mustache.execute(writer, dockerfileOptions).flush();
+        String dockerfile = writer.toString().trim();
+
+        String uniqueLabel = "LABEL com.oracle.weblogic.imagetool.buildid=\"123\"";
+        // intermediate stages use a stable label, and the unique build ID is only added at the end
+        assertTrue(dockerfile.contains("LABEL com.oracle.weblogic.imagetool.buildid=\"cached\""));
+        assertEquals(dockerfile.indexOf(uniqueLabel), dockerfile.lastIndexOf(uniqueLabel));
+        assertTrue(dockerfile.endsWith(uniqueLabel));
+    }
+
+    @Test
+    void buildKitMounts() throws IOException {
+        MiddlewareInstall install = new MiddlewareInstall(FmwInstallerType.WLS, "12.2.1.3", null);
+        DockerfileOptions dockerfileOptions = new DockerfileOptions("123")
+            .setPatchingEnabled()
+            .setOPatchPatchingEnabled()
+            .setPackageInstaller(PackageManagerType.YUM)
+            .setMiddlewareInstall(install)
+            .useBuildKit(true);
+        dockerfileOptions.setJavaInstaller("jdk.tar.gz");
+
+        MustacheFactory mf = new DefaultMustacheFactory(new File("src/main/resources/docker-files"));
+        Mustache mustache = mf.compile("Create_Image.mustache");
+        StringWriter writer = new StringWriter();
+        mustache.execute(writer, dockerfileOptions).flush();
+        String dockerfile = writer.toString();
+
+        // installers and patches are read from build context mounts, and never copied into a layer
+        assertTrue(dockerfile.contains("RUN --mount=type=bind,source=jdk.tar.gz,"
+            + "target=/tmp/imagetool-context/jdk.tar.gz tar xzf /tmp/imagetool-context/jdk.tar.gz"));
+        assertTrue(dockerfile.contains("--mount=type=bind,source=patches,target=/tmp/imagetool-context/patches"));
+        assertTrue(dockerfile.contains("cp -r /tmp/imagetool-context/patches /tmp/imagetool/"));
+        // the whole build context, with the Dockerfile, is never mounted
+        assertFalse(dockerfile.contains("--mount=type=bind,target="));
+        assertFalse(dockerfile.contains("COPY --chown=oracle:oracle jdk.tar.gz"));
+        assertFalse(dockerfile.contains("patches/* /tmp/imagetool/patches/"));
+        // package manager downloads are kept in a cache mount
+        assertTrue(dockerfile.contains("RUN --mount=type=cache,target=/var/cache/yum,sharing=locked"));
+        assertFalse(dockerfile.contains("rm -rf /var/cache/yum/*"));
+    }
+
+    private static String packageManagerBlock(PackageManagerType type) throws IOException {
+        DockerfileOptions dockerfileOptions = new DockerfileOptions("123")
+            .setPackageInstaller(type)
+            .useBuildKit(true);
+        MustacheFactory mf = new DefaultMustacheFactory(new File("src/main/resources/docker-files"));
+        Mustache mustache = mf.compile("package-managers.mustache");
+        StringWriter writer = new StringWriter();
+        mustache.execute(writer, dockerfileOptions).flush();
+        return writer.toString();
+    }
+
+    @Test
+    void buildKitAptCache() throws IOException {
+        String block = packageManagerBlock(PackageManagerType.APTGET);
+        // docker-clean is removed before the first apt-get command, in the same RUN as the cache mounts
+        assertTrue(block.contains("RUN --mount=type=cache,target=/var/cache/apt,sharing=locked \\\n"
+            + "    --mount=type=cache,target=/var/lib/apt/lists,sharing=locked \\\n"
+            + "    rm -f /etc/apt/apt.conf.d/docker-clean \\\n"
+            + "    && echo 'Binary::apt::APT::Keep-Downloaded-Packages \"true\";' > /etc/apt/apt.conf.d/keep-cache \\\n"
+            + "    && apt-get -y update"), block);
+        assertFalse(block.contains("apt-get -y clean"), block);
+    }
+
+    @Test
+    void buildKitRpmCaches() throws IOException {
+        assertTrue(packageManagerBlock(PackageManagerType.YUM).contains("yum -y --setopt=keepcache=1 install"));
+        assertTrue(packageManagerBlock(PackageManagerType.DNF).contains("dnf -y --setopt=keepcache=True install"));
+        String microdnf = packageManagerBlock(PackageManagerType.MICRODNF);
+        assertTrue(microdnf.contains("RUN --mount=type=cache,target=/var/cache/yum,sharing=locked"), microdnf);
+        assertTrue(microdnf.contains("microdnf --setopt=keepcache=1 update"), microdnf);
+        assertTrue(microdnf.contains("microdnf --setopt=keepcache=1 install"), microdnf);
+        assertFalse(microdnf.contains("microdnf clean all"), microdnf);
+    }
+
+    @Test
+    void buildKitMiddlewareInstall(@TempDir Path tempDir) throws IOException {
+        Path installer = Files.createFile(tempDir.resolve("fmw_12.2.1.3.0_wls.jar"));
+        CacheStoreTestImpl cacheStore = new CacheStoreTestImpl(tempDir);
+        cacheStore.addToCache("wls_12.2.1.3", installer.toString());
+        Path contextDir = Files.createDirectory(tempDir.resolve("context"));
+        MiddlewareInstall install = new MiddlewareInstall(FmwInstallerType.WLS, "12.2.1.3", null);
+        install.copyFiles(cacheStore, contextDir.toString());
+        DockerfileOptions dockerfileOptions = new DockerfileOptions("123")
+            .setPackageInstaller(PackageManagerType.YUM)
+            .setMiddlewareInstall(install)
+            .useBuildKit(true);
+
+        MustacheFactory mf = new DefaultMustacheFactory(new File("src/main/resources/docker-files"));
+        Mustache mustache = mf.compile("Create_Image.mustache");
+        StringWriter writer = new StringWriter();
+        mustache.execute(writer, dockerfileOptions).flush();
+        String dockerfile = writer.toString();
+        String wlsBuild = dockerfile.substring(dockerfile.indexOf("as wls_build"),
+            dockerfile.indexOf("as final_build"));
+
+        // only the installer and response file are mounted, and the installer is run from the mount
+        assertTrue(wlsBuild.contains("RUN --mount=type=bind,source=fmw_12.2.1.3.0_wls.jar,"
+            + "target=/tmp/imagetool-context/fmw_12.2.1.3.0_wls.jar --mount=type=bind,source=wls.rsp,"
+            + "target=/tmp/imagetool-context/wls.rsp "));
+        assertTrue(wlsBuild.contains("-jar /tmp/imagetool-context/fmw_12.2.1.3.0_wls.jar"));
+        assertTrue(wlsBuild.contains("-responseFile /tmp/imagetool-context/wls.rsp"));
+        // nothing is copied into the layer, and the temporary directory is removed in the same step
+        assertFalse(wlsBuild.contains("COPY --chown=oracle:oracle fmw_12.2.1.3.0_wls.jar"));
+        assertFalse(wlsBuild.contains("cp /tmp/imagetool-context/"));
+        assertTrue(wlsBuild.contains("&& rm -rf /tmp/imagetool \\"));
+    }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) 2022, Oracle and/or its affiliates.
+// Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+
+package com.oracle.weblogic.imagetool.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("unit")
+class TaskGraphTest {
+
+    @Test
+    void independentTasksRunConcurrently() throws Exception {
+        // each task waits for the other to start, which would time out if the tasks were run sequentially
+        CountDownLatch started = new CountDownLatch(2);
+        AtomicBoolean concurrent = new AtomicBoolean(true);
+        TaskGraph.Task task = () -> {
+            started.countDown();
+            if (!started.await(10, TimeUnit.SECONDS)) {
+                concurrent.set(false);
+            }
+        };
+
+        new TaskGraph().add("one", task).add("two", task).run();
+        assertTrue(concurrent.get());
+    }
+
+    @Test
+    void dependenciesRunFirst() throws Exception {
+        List<String> order = new CopyOnWriteArrayList<>();
+        new TaskGraph()
+            .add("a", () -> order.add("a"))
+            .add("b", () -> order.add("b"))
+            .add("c", () -> order.add("c"), "a", "b")
+            .run();
+
+        assertEquals(3, order.size());
+        assertEquals("c", order.get(2));
+    }
+
+    @Test
+    void failureCancelsOtherTasks() throws InterruptedException {
+        AtomicBoolean dependentRan = new AtomicBoolean(false);
+        CountDownLatch siblingStarted = new CountDownLatch(1);
+        CountDownLatch siblingInterrupted = new CountDownLatch(1);
+        IOException expected = new IOException("download failed");
+
+        TaskGraph graph = new TaskGraph()
+            .add("sibling", () -> {
+                siblingStarted.countDown();
+                try {
+                    Thread.sleep(30000);
+                } catch (InterruptedException e) {
+                    siblingInterrupted.countDown();
+                }
+            })
+            .add("failing", () -> {
+                siblingStarted.await(10, TimeUnit.SECONDS);
+                throw expected;
+            })
+            .add("dependent", () -> dependentRan.set(true), "failing");
+
+        IOException thrown = assertThrows(IOException.class, graph::run);
+        assertEquals(expected, thrown);
+        assertFalse(dependentRan.get());
+        assertTrue(siblingInterrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void unknownDependency() {
+        TaskGraph graph = new TaskGraph().add("a", () -> { });
+        assertThrows(IllegalArgumentException.class, () -> graph.add("b", () -> { }, "c"));
+        assertThrows(IllegalArgumentException.class, () -> graph.add("a", () -> { }));
+    }
+}
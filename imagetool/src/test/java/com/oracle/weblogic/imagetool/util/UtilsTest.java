@@ -5,6 +5,8 @@ package com.oracle.weblogic.imagetool.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -12,14 +14,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.Properties;
 import java.util.logging.Level;
 
 import com.oracle.weblogic.imagetool.api.model.CachedFile;
+import com.oracle.weblogic.imagetool.cachestore.CacheStoreFactory;
+import com.oracle.weblogic.imagetool.cachestore.FileCacheStore;
 import com.oracle.weblogic.imagetool.logging.LoggingFacade;
 import com.oracle.weblogic.imagetool.logging.LoggingFactory;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import uk.org.webcompere.systemstubs.environment.EnvironmentVariables;
@@ -230,4 +237,31 @@ class UtilsTest {
         assertEquals(oracleHome, output);
         assertEquals(1, Objects.requireNonNull(outputDir.toFile().list()).length);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void probeWithoutCacheStore(@TempDir Path tempDir) throws Exception {
+        // a fake docker command that reports an image ID, and runs the probe
+        Path docker = tempDir.resolve("docker");
+        Files.write(docker, ("#!/bin/sh\n"
+            + "case \"$1 $2\" in\n"
+            + "  'image inspect') echo 'sha256:1234 null null' ;;\n"
+            + "  'run --rm') echo javaHome=/u01/jdk ;;\n"
+            + "esac\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(docker.toFile().setExecutable(true));
+        // the cache directory is a file, so the cache store cannot be created
+        Path notADirectory = Files.createFile(tempDir.resolve("cache"));
+        environment.set(FileCacheStore.CACHEDIR, notADirectory.toString());
+        Field store = CacheStoreFactory.class.getDeclaredField("store");
+        store.setAccessible(true);
+        Object saved = store.get(null);
+        store.set(null, null);
+        try {
+            Properties result = Utils.getBaseImageProperties(docker.toString(), "myimage:1",
+                "/probe-env/inspect-image.sh", Files.createDirectory(tempDir.resolve("context")).toString());
+            assertEquals("/u01/jdk", result.getProperty("javaHome"));
+        } finally {
+            store.set(null, saved);
+        }
+    }
+}